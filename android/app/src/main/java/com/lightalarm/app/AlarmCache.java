@@ -0,0 +1,298 @@
+package com.lightalarm.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide, in-memory view of the saved alarms shared by the plugin, receivers and services.
+ *
+ * Readers get an immutable snapshot without touching disk or taking a lock. Writers swap in a
+ * new snapshot with compare-and-set, so the JS bridge thread and receivers can update concurrently,
+ * and the change is persisted to AlarmStore on a single background writer thread.
+ */
+public final class AlarmCache {
+    private static final String TAG = "AlarmCache";
+
+    private static volatile AlarmCache instance;
+
+    private final AlarmStore store;
+    private final AtomicReference<Snapshot> snapshot;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AlarmCache-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    AlarmCache(AlarmStore store) {
+        this.store = store;
+        this.snapshot = new AtomicReference<>(new Snapshot(store.getAll(), 0));
+    }
+
+    public static AlarmCache getInstance(Context context) {
+        AlarmCache cache = instance;
+        if (cache == null) {
+            synchronized (AlarmCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    cache = new AlarmCache(AlarmStore.getInstance(context));
+                    instance = cache;
+                    Log.d(TAG, "📦 Alarm cache loaded with " + cache.snapshot().size() + " alarms");
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Register for per-alarm change callbacks, delivered on the writing thread after the
+     * new snapshot is published
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Current immutable view of all alarms
+     */
+    public Snapshot snapshot() {
+        return snapshot.get();
+    }
+
+    public List<AlarmRecord> getAll() {
+        return snapshot.get().getAll();
+    }
+
+    public AlarmRecord get(String alarmId) {
+        return snapshot.get().get(alarmId);
+    }
+
+    public void put(AlarmRecord record) {
+        Snapshot current;
+        do {
+            current = snapshot.get();
+        } while (!snapshot.compareAndSet(current, current.with(record)));
+        persist(record.getId());
+        notifyChanged(record.getId());
+    }
+
+    public boolean remove(String alarmId) {
+        Snapshot current;
+        do {
+            current = snapshot.get();
+            if (current.get(alarmId) == null) {
+                return false;
+            }
+        } while (!snapshot.compareAndSet(current, current.without(alarmId)));
+        persist(alarmId);
+        notifyChanged(alarmId);
+        return true;
+    }
+
+    /**
+     * Flip the enabled flag of one alarm; returns the updated record or null if unknown
+     */
+    public AlarmRecord setEnabled(String alarmId, boolean enabled) {
+        Snapshot current;
+        AlarmRecord updated;
+        do {
+            current = snapshot.get();
+            AlarmRecord existing = current.get(alarmId);
+            if (existing == null) {
+                return null;
+            }
+            updated = existing.withEnabled(enabled);
+            if (updated == existing) {
+                return existing;
+            }
+        } while (!snapshot.compareAndSet(current, current.with(updated)));
+        persist(alarmId);
+        notifyChanged(alarmId);
+        return updated;
+    }
+
+    /**
+     * Insert or replace several alarms and remove others in one snapshot swap and one store
+     * commit. Listeners still hear about each id.
+     */
+    public void applyBatch(List<AlarmRecord> puts, List<String> removals) {
+        if (puts.isEmpty() && removals.isEmpty()) {
+            return;
+        }
+        Snapshot current;
+        do {
+            current = snapshot.get();
+        } while (!snapshot.compareAndSet(current, current.withBatch(puts, removals)));
+
+        List<String> ids = new ArrayList<>(puts.size() + removals.size());
+        for (AlarmRecord record : puts) {
+            ids.add(record.getId());
+        }
+        ids.addAll(removals);
+        persistBatch(ids);
+        for (String alarmId : ids) {
+            notifyChanged(alarmId);
+        }
+    }
+
+    /**
+     * Block until every queued write has reached the store. Receivers call this before
+     * returning so a process kill right after onReceive cannot drop a change.
+     */
+    public boolean flush(long timeoutMs) {
+        Future<?> marker = writer.submit(() -> { });
+        try {
+            marker.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ Alarm cache flush did not complete in " + timeoutMs + "ms", e);
+            return false;
+        }
+    }
+
+    /**
+     * Queue a write of the latest state of one alarm. The writer reads the snapshot at execution
+     * time, so the store converges on the newest value even if two writers enqueue out of order.
+     */
+    private void persist(String alarmId) {
+        writer.execute(() -> {
+            AlarmRecord latest = snapshot.get().get(alarmId);
+            try {
+                if (latest == null) {
+                    store.remove(alarmId);
+                } else if (latest != store.get(alarmId)) {
+                    store.put(latest);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Failed to persist alarm " + alarmId, e);
+            }
+        });
+    }
+
+    /**
+     * Queue one store batch holding the latest state of each id, resolved at execution time
+     * like persist()
+     */
+    private void persistBatch(List<String> alarmIds) {
+        writer.execute(() -> {
+            Snapshot latest = snapshot.get();
+            List<AlarmRecord> puts = new ArrayList<>();
+            List<String> removals = new ArrayList<>();
+            for (String alarmId : alarmIds) {
+                AlarmRecord record = latest.get(alarmId);
+                if (record == null) {
+                    if (store.get(alarmId) != null) {
+                        removals.add(alarmId);
+                    }
+                } else if (record != store.get(alarmId)) {
+                    puts.add(record);
+                }
+            }
+            try {
+                store.applyBatch(puts, removals);
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Failed to persist batch of " + alarmIds.size() + " alarms", e);
+            }
+        });
+    }
+
+    private void notifyChanged(String alarmId) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        // Deliver the latest value, like the writer, so a listener never regresses to an older one
+        AlarmRecord latest = snapshot.get().get(alarmId);
+        for (Listener listener : listeners) {
+            listener.onAlarmChanged(alarmId, latest);
+        }
+    }
+
+    /**
+     * Callback for alarm additions, edits and removals (record is null when removed)
+     */
+    public interface Listener {
+        void onAlarmChanged(String alarmId, AlarmRecord record);
+    }
+
+    /**
+     * Immutable copy-on-write view of the alarm set
+     */
+    public static final class Snapshot {
+        private final Map<String, AlarmRecord> byId;
+        private final List<AlarmRecord> all;
+        private final long version;
+
+        private Snapshot(Map<String, AlarmRecord> byId, long version) {
+            this.byId = Collections.unmodifiableMap(byId);
+            this.all = Collections.unmodifiableList(new ArrayList<>(byId.values()));
+            this.version = version;
+        }
+
+        private Snapshot(List<AlarmRecord> records, long version) {
+            this(indexById(records), version);
+        }
+
+        private static Map<String, AlarmRecord> indexById(List<AlarmRecord> records) {
+            Map<String, AlarmRecord> map = new LinkedHashMap<>();
+            for (AlarmRecord record : records) {
+                map.put(record.getId(), record);
+            }
+            return map;
+        }
+
+        Snapshot with(AlarmRecord record) {
+            Map<String, AlarmRecord> copy = new LinkedHashMap<>(byId);
+            copy.put(record.getId(), record);
+            return new Snapshot(copy, version + 1);
+        }
+
+        Snapshot withBatch(List<AlarmRecord> puts, List<String> removals) {
+            Map<String, AlarmRecord> copy = new LinkedHashMap<>(byId);
+            for (AlarmRecord record : puts) {
+                copy.put(record.getId(), record);
+            }
+            for (String alarmId : removals) {
+                copy.remove(alarmId);
+            }
+            return new Snapshot(copy, version + 1);
+        }
+
+        Snapshot without(String alarmId) {
+            Map<String, AlarmRecord> copy = new LinkedHashMap<>(byId);
+            copy.remove(alarmId);
+            return new Snapshot(copy, version + 1);
+        }
+
+        public AlarmRecord get(String alarmId) {
+            return byId.get(alarmId);
+        }
+
+        public List<AlarmRecord> getAll() {
+            return all;
+        }
+
+        public int size() {
+            return all.size();
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
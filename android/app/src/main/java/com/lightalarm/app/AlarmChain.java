@@ -0,0 +1,213 @@
+package com.lightalarm.app;
+
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Queue of pending light/sound triggers of which only the earliest is armed with the system.
+ *
+ * Each enabled alarm contributes a light event LIGHT_LEAD_MS before its sound event. The head of
+ * the queue is handed to a Sink (AlarmManager in the app, a fake in tests); when it fires, the
+ * event is acknowledged, a fired sound event re-queues the alarm's next Recurrence occurrence,
+ * and the new head is armed. A cursor of the last delivered event lets a fresh process rebuild the queue without
+ * replaying events that already fired.
+ */
+final class AlarmChain {
+    static final int PHASE_LIGHT = 0;
+    static final int PHASE_SOUND = 1;
+
+    /** How far back a rebuild still delivers triggers that were due while the process was gone */
+    static final long LATE_GRACE_MS = 10 * AlarmTimes.MINUTE_MS;
+
+    private final Sink sink;
+    private final OccurrenceHeap pending;
+    private final LongIntHashMap ruleById;
+    private TimeZone zone;
+
+    private long cursorTime;
+    private long cursorKey;
+    private long armedTime = OccurrenceHeap.NO_TIME;
+    private long armedKey;
+
+    AlarmChain(Sink sink, TimeZone zone, long cursorTime, long cursorKey) {
+        this.sink = sink;
+        this.zone = zone;
+        this.cursorTime = cursorTime;
+        this.cursorKey = cursorKey;
+        this.pending = new OccurrenceHeap(32);
+        this.ruleById = new LongIntHashMap(16);
+    }
+
+    static long eventKey(long alarmId, int phase) {
+        return (alarmId << 1) | phase;
+    }
+
+    static long alarmIdOf(long eventKey) {
+        return eventKey >> 1;
+    }
+
+    static int phaseOf(long eventKey) {
+        return (int) (eventKey & 1);
+    }
+
+    /**
+     * Replace the queue with the next occurrences of the given enabled alarms
+     */
+    synchronized void rebuild(List<AlarmRecord> alarms, long nowMillis) {
+        pending.clear();
+        ruleById.clear();
+        // Anything after the cursor is still owed, but do not resurrect long-missed triggers
+        long basis = Math.max(cursorTime, nowMillis - LATE_GRACE_MS);
+        for (AlarmRecord alarm : alarms) {
+            if (alarm.isEnabled()) {
+                long alarmId = NextAlarmEngine.parseId(alarm.getId());
+                int rule = Recurrence.rule(alarm);
+                ruleById.put(alarmId, rule);
+                // Start one milli early so a trigger tied with the cursor is still considered
+                long soundAt = Recurrence.nextTrigger(rule, basis - 1, zone);
+                if (!isAfterCursor(soundAt, eventKey(alarmId, PHASE_SOUND))) {
+                    soundAt = Recurrence.nextTrigger(rule, soundAt, zone);
+                }
+                queue(alarmId, soundAt);
+            }
+        }
+        if (pending.isEmpty()) {
+            // A previous process may have left the slot armed
+            armedTime = OccurrenceHeap.NO_TIME;
+            sink.disarm();
+        }
+        rearm();
+    }
+
+    /**
+     * Queue or move an alarm to the next occurrence of its Recurrence rule after now; returns
+     * the sound trigger time
+     */
+    synchronized long schedule(long alarmId, int rule, long nowMillis) {
+        long soundAt = Recurrence.nextTrigger(rule, nowMillis, zone);
+        ruleById.put(alarmId, rule);
+        pending.cancel(eventKey(alarmId, PHASE_LIGHT));
+        queue(alarmId, soundAt);
+        rearm();
+        return soundAt;
+    }
+
+    synchronized boolean cancel(long alarmId) {
+        ruleById.remove(alarmId);
+        boolean removed = pending.cancel(eventKey(alarmId, PHASE_LIGHT));
+        removed |= pending.cancel(eventKey(alarmId, PHASE_SOUND));
+        rearm();
+        return removed;
+    }
+
+    /**
+     * Acknowledge a delivered trigger and arm the next one. Returns false for a stale delivery
+     * (edited, cancelled or already acknowledged), which the caller must not act on.
+     */
+    synchronized boolean onFired(long alarmId, int phase, long triggerAt) {
+        long key = eventKey(alarmId, phase);
+        // The system slot is one-shot, so whatever was armed has been consumed either way
+        armedTime = OccurrenceHeap.NO_TIME;
+        if (pending.timeOf(key) != triggerAt) {
+            rearm();
+            return false;
+        }
+        pending.cancel(key);
+        cursorTime = triggerAt;
+        cursorKey = key;
+        if (phase == PHASE_SOUND) {
+            int rule = ruleById.get(alarmId);
+            if (rule != LongIntHashMap.MISSING) {
+                queue(alarmId, Recurrence.nextTrigger(rule, triggerAt, zone));
+            }
+        }
+        rearm();
+        return true;
+    }
+
+    /**
+     * Follow a wall-clock jump or zone change without rebuilding: triggers already due stay
+     * queued (AlarmManager delivers past RTC alarms at once too), every other alarm is moved to
+     * its next occurrence in the new zone only if that differs, and the slot is re-armed once.
+     * Returns how many alarms moved.
+     */
+    synchronized int onClockChanged(TimeZone newZone, long nowMillis) {
+        zone = newZone;
+        if (cursorTime > nowMillis) {
+            // The clock went back; occurrences in the replayed stretch are owed again
+            cursorTime = nowMillis;
+            cursorKey = Long.MAX_VALUE;
+        }
+        int[] moved = new int[1];
+        ruleById.forEach((alarmId, rule) -> {
+            long soundKey = eventKey(alarmId, PHASE_SOUND);
+            long current = pending.timeOf(soundKey);
+            if (current != OccurrenceHeap.NO_TIME && current <= nowMillis) {
+                return;
+            }
+            long soundAt = Recurrence.nextTrigger(rule, nowMillis, newZone);
+            if (soundAt != current) {
+                queue(alarmId, soundAt);
+                moved[0]++;
+            }
+        });
+        rearm();
+        return moved[0];
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    synchronized long getCursorTime() {
+        return cursorTime;
+    }
+
+    synchronized long getCursorKey() {
+        return cursorKey;
+    }
+
+    private void queue(long alarmId, long soundAt) {
+        long lightAt = soundAt - AlarmTimes.LIGHT_LEAD_MS;
+        long lightKey = eventKey(alarmId, PHASE_LIGHT);
+        // A light phase at or before the cursor has already run for this occurrence
+        if (isAfterCursor(lightAt, lightKey)) {
+            pending.upsert(lightKey, lightAt);
+        } else {
+            pending.cancel(lightKey);
+        }
+        pending.upsert(eventKey(alarmId, PHASE_SOUND), soundAt);
+    }
+
+    private boolean isAfterCursor(long time, long key) {
+        return time > cursorTime || (time == cursorTime && key > cursorKey);
+    }
+
+    private void rearm() {
+        if (pending.isEmpty()) {
+            if (armedTime != OccurrenceHeap.NO_TIME) {
+                armedTime = OccurrenceHeap.NO_TIME;
+                sink.disarm();
+            }
+            return;
+        }
+        long time = pending.peekTime();
+        long key = pending.peekKey();
+        if (time == armedTime && key == armedKey) {
+            return;
+        }
+        armedTime = time;
+        armedKey = key;
+        sink.arm(time, alarmIdOf(key), phaseOf(key));
+    }
+
+    /**
+     * The single system alarm slot the chain drives
+     */
+    interface Sink {
+        /** Replace whatever is armed with one trigger (a past time fires immediately) */
+        void arm(long triggerAt, long alarmId, int phase);
+
+        void disarm();
+    }
+}
@@ -0,0 +1,241 @@
+package com.lightalarm.app;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Warm-up stage a few minutes before the next light alarm.
+ *
+ * One AlarmManager slot is kept armed for the earliest upcoming alarm, leadMs ahead of its light
+ * phase. When it fires the process is already running, Chromium is loaded by building a throwaway
+ * WebView, and the alarm sound's raw resource is resolved and decoded into the PCM cache (or, if
+ * it cannot be cached, read once so it sits in the page cache). Readiness lives in memory only,
+ * so a process death before the alarm correctly reads as cold. The wake screen latency of warm
+ * and cold fires is kept apart to show what the stage saves.
+ */
+public final class AlarmPrewarm {
+    private static final String TAG = "AlarmPrewarm";
+
+    private static final String PREFS_NAME = "LightAlarmPrefs";
+    private static final String LEAD_KEY = "prewarm_lead_ms";
+    private static final String WARM_COUNT_KEY = "prewarm_warm_count";
+    private static final String WARM_TOTAL_KEY = "prewarm_warm_total_ms";
+    private static final String COLD_COUNT_KEY = "prewarm_cold_count";
+    private static final String COLD_TOTAL_KEY = "prewarm_cold_total_ms";
+
+    public static final String ACTION_PREWARM = "com.lightalarm.app.PREWARM";
+    public static final long DEFAULT_LEAD_MS = 3 * AlarmTimes.MINUTE_MS;
+
+    // Distinct from the per-alarm table, the chained slot (100) and snooze (200)
+    private static final int REQUEST_CODE = 300;
+
+    private static final long NONE = -1;
+
+    private static final ExecutorService WARM_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private static volatile long armedAt = NONE;
+    private static volatile long warmAlarmId = NONE;
+    private static volatile long warmElapsed = NONE;
+
+    private AlarmPrewarm() {
+    }
+
+    public static long getLeadMs(Context context) {
+        return prefs(context).getLong(LEAD_KEY, DEFAULT_LEAD_MS);
+    }
+
+    /**
+     * Change how long before the light phase the warm-up runs; 0 turns it off
+     */
+    public static void setLeadMs(Context context, long leadMs) {
+        prefs(context).edit().putLong(LEAD_KEY, Math.max(0, leadMs)).apply();
+        armedAt = NONE;
+        reschedule(context);
+    }
+
+    /**
+     * Arm the warm-up for the earliest upcoming alarm. Cheap to call after every schedule change:
+     * the system alarm is only touched when the warm-up time actually moves.
+     */
+    public static void reschedule(Context context) {
+        NextAlarmEngine engine = NextAlarmEngine.getInstance(context);
+        long soundAt = engine.peekTime();
+        long leadMs = getLeadMs(context);
+        long warmAt = soundAt == NextAlarmEngine.NO_ALARM || leadMs == 0
+            ? NONE
+            : soundAt - AlarmTimes.LIGHT_LEAD_MS - leadMs;
+        if (warmAt != NONE && warmAt <= System.currentTimeMillis()) {
+            // Too late for this one; the next alarm gets its warm-up once this one has fired
+            warmAt = NONE;
+        }
+        if (warmAt == armedAt) {
+            return;
+        }
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = pendingIntent(context.getApplicationContext());
+        if (warmAt == NONE) {
+            alarmManager.cancel(pendingIntent);
+            Log.d(TAG, "🧊 No warm-up pending");
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, warmAt, pendingIntent);
+            Log.d(TAG, "🔥 Warm-up for alarm " + engine.peekAlarmId() + " armed at " + new java.util.Date(warmAt));
+        }
+        armedAt = warmAt;
+    }
+
+    /**
+     * Run the warm-up; called by AlarmReceiver on the main thread for ACTION_PREWARM
+     */
+    public static void onPrewarm(Context context, BroadcastReceiver.PendingResult result) {
+        armedAt = NONE;
+        long startElapsed = SystemClock.elapsedRealtime();
+        NextAlarmEngine engine = NextAlarmEngine.getInstance(context);
+        final long alarmId = engine.peekAlarmId();
+        AlarmRecord record = alarmId != NextAlarmEngine.NO_ALARM
+            ? AlarmCache.getInstance(context).get(String.valueOf(alarmId))
+            : null;
+        if (record == null) {
+            Log.w(TAG, "⚠️ Warm-up fired with no upcoming alarm");
+            result.finish();
+            return;
+        }
+
+        // WebView needs the main thread and credential storage, so only once the user has unlocked
+        if (DirectBootStorage.isUserUnlocked(context)) {
+            try {
+                WebView webView = new WebView(context.getApplicationContext());
+                webView.destroy();
+            } catch (Exception e) {
+                Log.e(TAG, "❌ WebView warm-up failed", e);
+            }
+        }
+        long webViewMs = SystemClock.elapsedRealtime() - startElapsed;
+
+        final Context appContext = context.getApplicationContext();
+        final String sound = record.getSoundResourceName();
+        WARM_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int resourceId = SoundManager.resolveResourceId(sound);
+                    if (resourceId != 0 && AlarmSoundPreroll.pcmCache(appContext).decode(resourceId) == null) {
+                        readThrough(appContext, resourceId);
+                    }
+                    warmAlarmId = alarmId;
+                    warmElapsed = SystemClock.elapsedRealtime();
+                    Log.d(TAG, "✅ Alarm " + alarmId + " warm (WebView " + webViewMs + " ms, sound '" + sound + "')");
+                } finally {
+                    reschedule(appContext);
+                    result.finish();
+                }
+            }
+        });
+    }
+
+    /**
+     * True if the warm-up ran for this alarm in the current process
+     */
+    public static boolean isReady(long alarmId) {
+        return alarmId != NONE && warmAlarmId == alarmId;
+    }
+
+    /**
+     * Milliseconds since the warm-up finished, or -1 when not warm
+     */
+    public static long warmAgeMs() {
+        long at = warmElapsed;
+        return at == NONE ? -1 : SystemClock.elapsedRealtime() - at;
+    }
+
+    /**
+     * Record how long the wake screen took to come up for a fire, split by whether it was warm
+     */
+    public static void recordWakeScreen(Context context, long alarmId, long delayMs) {
+        boolean warm = isReady(alarmId);
+        if (warm) {
+            warmAlarmId = NONE;
+            warmElapsed = NONE;
+        }
+        SharedPreferences prefs = prefs(context);
+        String countKey = warm ? WARM_COUNT_KEY : COLD_COUNT_KEY;
+        String totalKey = warm ? WARM_TOTAL_KEY : COLD_TOTAL_KEY;
+        prefs.edit()
+            .putLong(countKey, prefs.getLong(countKey, 0) + 1)
+            .putLong(totalKey, prefs.getLong(totalKey, 0) + delayMs)
+            .apply();
+        Log.d(TAG, "⏱️ Wake screen for alarm " + alarmId + " after " + delayMs + " ms (" + (warm ? "warm" : "cold") + ")");
+    }
+
+    /**
+     * Warm/cold wake screen averages; savedMs is the cold mean minus the warm mean once both exist
+     */
+    public static Savings savings(Context context) {
+        SharedPreferences prefs = prefs(context);
+        return new Savings(prefs.getLong(WARM_COUNT_KEY, 0), prefs.getLong(WARM_TOTAL_KEY, 0),
+            prefs.getLong(COLD_COUNT_KEY, 0), prefs.getLong(COLD_TOTAL_KEY, 0));
+    }
+
+    public static void resetSavings(Context context) {
+        prefs(context).edit()
+            .remove(WARM_COUNT_KEY).remove(WARM_TOTAL_KEY)
+            .remove(COLD_COUNT_KEY).remove(COLD_TOTAL_KEY)
+            .apply();
+    }
+
+    public static final class Savings {
+        public final long warmCount;
+        public final long coldCount;
+        public final long warmMeanMs;
+        public final long coldMeanMs;
+
+        Savings(long warmCount, long warmTotalMs, long coldCount, long coldTotalMs) {
+            this.warmCount = warmCount;
+            this.coldCount = coldCount;
+            this.warmMeanMs = warmCount > 0 ? warmTotalMs / warmCount : 0;
+            this.coldMeanMs = coldCount > 0 ? coldTotalMs / coldCount : 0;
+        }
+
+        public long savedMs() {
+            return warmCount > 0 && coldCount > 0 ? coldMeanMs - warmMeanMs : 0;
+        }
+    }
+
+    private static void readThrough(Context context, int resourceId) {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = context.getResources().openRawResource(resourceId)) {
+            while (in.read(buffer) != -1) {
+                // Only pulling the file into the page cache
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "⚠️ Could not read sound resource " + resourceId, e);
+        }
+    }
+
+    private static PendingIntent pendingIntent(Context context) {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        intent.setAction(ACTION_PREWARM);
+        return PendingIntent.getBroadcast(
+            context,
+            REQUEST_CODE,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return DirectBootStorage.of(context).getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
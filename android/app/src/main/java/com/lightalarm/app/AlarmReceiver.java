@@ -27,6 +27,15 @@ public class AlarmReceiver extends BroadcastReceiver {
         Log.d(TAG, "📋 Intent: " + (intent != null ? intent.toString() : "null"));
         Log.d(TAG, "🎯 Intent action: " + (intent != null ? intent.getAction() : "null"));
 
+        // Before unlock the alarms may still be in credential storage; never bind the cache to an empty store
+        boolean alarmsReadable = DirectBootStorage.canReadAlarms(context);
+        if (intent != null && AlarmPrewarm.ACTION_PREWARM.equals(intent.getAction())) {
+            if (alarmsReadable) {
+                AlarmPrewarm.onPrewarm(context, goAsync());
+            }
+            return;
+        }
+
         String alarmType = intent.getStringExtra("alarm_type");
         String alarmSound = intent.getStringExtra("alarm_sound");
         long alarmId = intent.getLongExtra("alarm_id", -1);
@@ -38,6 +47,45 @@ public class AlarmReceiver extends BroadcastReceiver {
             return; // Reject invalid values
         }
 
+        // Chained mode: acknowledge the trigger so the next one gets armed, and drop stale deliveries
+        boolean chained = intent.getBooleanExtra(ChainedAlarmScheduler.EXTRA_CHAINED, false);
+        if (chained && alarmsReadable && !ChainedAlarmScheduler.onFired(context, intent)) {
+            Log.w(TAG, "⚠️ Chained trigger for alarm " + alarmId + " is stale - ignoring");
+            return;
+        }
+
+        // The shared alarm cache is the source of truth; intent extras may predate an edit
+        if (alarmId != -1 && alarmsReadable) {
+            AlarmRecord record = AlarmCache.getInstance(context).get(String.valueOf(alarmId));
+            if (record != null) {
+                if (!record.isEnabled()) {
+                    Log.w(TAG, "⚠️ Alarm " + alarmId + " is disabled - ignoring stale trigger");
+                    return;
+                }
+                alarmSound = record.getSoundResourceName();
+                alarmTheme = record.getTheme();
+
+                // Recurring alarms move straight on to their next repeat day from this record alone
+                if ("sound".equals(alarmType)) {
+                    long next = NextAlarmEngine.getInstance(context).advance(alarmId, System.currentTimeMillis());
+                    if (!chained) {
+                        AlarmService.scheduleAlarm(context, record);
+                    }
+                    Log.d(TAG, "🔁 Alarm " + alarmId + " re-armed for " + new java.util.Date(next));
+                    AlarmPrewarm.reschedule(context);
+                }
+            }
+        }
+
+        // Scheduled trigger time, carried through to the service and MainActivity for latency stats
+        long scheduledAt = intent.getLongExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, -1);
+        FireLatencyRecorder.stamp(context, FireLatencyRecorder.STAGE_RECEIVER, alarmId, scheduledAt);
+        if (AlarmPrewarm.isReady(alarmId)) {
+            Log.d(TAG, "🔥 Alarm " + alarmId + " was warmed up " + AlarmPrewarm.warmAgeMs() + " ms ago");
+        } else {
+            Log.d(TAG, "🧊 Alarm " + alarmId + " fires cold");
+        }
+
         Log.d(TAG, "🔥 ALARM TYPE: " + alarmType);
         Log.d(TAG, "🆔 ALARM ID: " + alarmId);
         Log.d(TAG, "🎵 ALARM SOUND: " + alarmSound);
@@ -79,11 +127,11 @@ public class AlarmReceiver extends BroadcastReceiver {
             if ("light".equals(alarmType)) {
                 Log.d(TAG, "🌅 LIGHT ALARM: Starting SunriseService for 20-minute light progression");
                 Log.d(TAG, "🎯 ATTEMPTING TO START LIGHT STIMULATION SERVICE");
-                startDirectLightSimulation(context, alarmSound, alarmId, alarmTheme);
+                startDirectLightSimulation(context, alarmSound, alarmId, alarmTheme, scheduledAt);
                 Log.d(TAG, "✅ LIGHT STIMULATION SERVICE STARTED");
             } else {
                 Log.d(TAG, "🔊 SOUND ALARM: Starting AlarmService for sound alarm");
-                startDirectSoundAlarm(context, alarmSound, alarmId, alarmTheme);
+                startDirectSoundAlarm(context, alarmSound, alarmId, alarmTheme, scheduledAt);
             }
 
             // CRITICAL: Always create fullscreen intent notification
@@ -111,6 +159,8 @@ public class AlarmReceiver extends BroadcastReceiver {
         fullscreenIntent.putExtra("launch_fullscreen", true);
         fullscreenIntent.putExtra("alarm_sound", alarmSound);
         fullscreenIntent.putExtra("fromAlarm", true);
+        fullscreenIntent.putExtra("alarm_id", alarmId);
+        fullscreenIntent.putExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, scheduledAt);
 
         PendingIntent fullscreenPendingIntent = PendingIntent.getActivity(
             context, 
@@ -129,7 +179,7 @@ public class AlarmReceiver extends BroadcastReceiver {
                 Log.e(TAG, "Launching MainActivity directly without notification");
                 
                 // Launch MainActivity directly without notification as fallback
-                launchMainActivityDirectly(context, alarmType, alarmSound);
+                launchMainActivityDirectly(context, alarmType, alarmSound, alarmId, scheduledAt);
                 return;
             }
         }
@@ -157,7 +207,7 @@ public class AlarmReceiver extends BroadcastReceiver {
             Log.e(TAG, "Launching MainActivity directly without notification");
             
             // Fallback: Launch MainActivity directly
-            launchMainActivityDirectly(context, alarmType, alarmSound);
+            launchMainActivityDirectly(context, alarmType, alarmSound, alarmId, scheduledAt);
         } finally {
             // Always release wake lock after processing
             if (wakeLock.isHeld()) {
@@ -168,7 +218,7 @@ public class AlarmReceiver extends BroadcastReceiver {
     }
     
     // Direct light simulation like Gentle Wakeup
-    private void startDirectLightSimulation(Context context, String alarmSound, long alarmId, String alarmTheme) {
+    private void startDirectLightSimulation(Context context, String alarmSound, long alarmId, String alarmTheme, long scheduledAt) {
         Log.d(TAG, "🌅 STARTING DIRECT LIGHT SIMULATION");
         Log.d(TAG, "📋 Alarm sound for light simulation: " + alarmSound);
         Log.d(TAG, "🆔 Alarm ID: " + alarmId);
@@ -181,6 +231,7 @@ public class AlarmReceiver extends BroadcastReceiver {
             serviceIntent.putExtra("alarm_sound", alarmSound);
             serviceIntent.putExtra("alarm_id", alarmId);
             serviceIntent.putExtra("alarm_theme", alarmTheme);
+            serviceIntent.putExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, scheduledAt);
 
             Log.d(TAG, "🚀 Starting SunriseService...");
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -204,7 +255,7 @@ public class AlarmReceiver extends BroadcastReceiver {
     }
     
     // Direct sound alarm like Gentle Wakeup
-    private void startDirectSoundAlarm(Context context, String alarmSound, long alarmId, String alarmTheme) {
+    private void startDirectSoundAlarm(Context context, String alarmSound, long alarmId, String alarmTheme, long scheduledAt) {
         Log.d(TAG, "Starting AlarmService for sound alarm");
         Log.d(TAG, "🆔 Alarm ID: " + alarmId);
         Log.d(TAG, "🎨 Alarm theme: " + alarmTheme);
@@ -215,6 +266,7 @@ public class AlarmReceiver extends BroadcastReceiver {
         serviceIntent.putExtra("alarm_sound", alarmSound);
         serviceIntent.putExtra("alarm_id", alarmId);
         serviceIntent.putExtra("alarm_theme", alarmTheme);
+        serviceIntent.putExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, scheduledAt);
         
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             context.startForegroundService(serviceIntent);
@@ -227,7 +279,7 @@ public class AlarmReceiver extends BroadcastReceiver {
         Log.d(TAG, "AlarmService will handle sound alarm and launch MainActivity");
     }
 
-    private void launchMainActivityDirectly(Context context, String alarmType, String alarmSound) {
+    private void launchMainActivityDirectly(Context context, String alarmType, String alarmSound, long alarmId, long scheduledAt) {
         Intent directLaunch = new Intent(context, MainActivity.class);
         directLaunch.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK
             | Intent.FLAG_ACTIVITY_SINGLE_TOP
@@ -238,6 +290,8 @@ public class AlarmReceiver extends BroadcastReceiver {
         directLaunch.putExtra("launch_fullscreen", true);
         directLaunch.putExtra("alarm_sound", alarmSound);
         directLaunch.putExtra("fromAlarm", true);
+        directLaunch.putExtra("alarm_id", alarmId);
+        directLaunch.putExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, scheduledAt);
         context.startActivity(directLaunch);
         Log.d(TAG, "MainActivity launched directly for alarm: " + alarmType);
     }
@@ -0,0 +1,159 @@
+package com.lightalarm.app;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable snapshot of one saved alarm as the JS side created it
+ */
+public final class AlarmRecord {
+    private static final String[] NO_DAYS = new String[0];
+
+    private final String id;
+    private final int hour;
+    private final int minute;
+    private final String amPm;
+    private final String soundResourceName;
+    private final String theme;
+    private final boolean enabled;
+    private final String[] repeatDays;
+    private final int repeatMask;
+
+    public AlarmRecord(String id, int hour, int minute, String amPm, String soundResourceName,
+                       String theme, boolean enabled, String[] repeatDays) {
+        this.id = id;
+        this.hour = hour;
+        this.minute = minute;
+        this.amPm = amPm;
+        this.soundResourceName = soundResourceName;
+        this.theme = theme;
+        this.enabled = enabled;
+        this.repeatDays = repeatDays != null ? repeatDays.clone() : NO_DAYS;
+        this.repeatMask = Recurrence.compile(this.repeatDays);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getHour() {
+        return hour;
+    }
+
+    public int getMinute() {
+        return minute;
+    }
+
+    public String getAmPm() {
+        return amPm;
+    }
+
+    public String getSoundResourceName() {
+        return soundResourceName;
+    }
+
+    public String getTheme() {
+        return theme;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String[] getRepeatDays() {
+        return repeatDays.clone();
+    }
+
+    public int getRepeatDayCount() {
+        return repeatDays.length;
+    }
+
+    public String getRepeatDay(int index) {
+        return repeatDays[index];
+    }
+
+    /**
+     * repeatDays compiled to a Recurrence day mask (every day when none are selected)
+     */
+    public int getRepeatMask() {
+        return repeatMask;
+    }
+
+    /**
+     * Copy of this record with a different enabled flag
+     */
+    public AlarmRecord withEnabled(boolean enabled) {
+        if (enabled == this.enabled) {
+            return this;
+        }
+        return new AlarmRecord(id, hour, minute, amPm, soundResourceName, theme, enabled, repeatDays);
+    }
+
+    /**
+     * Serialize in the compact binary layout used by AlarmStore
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(id);
+        out.writeByte(hour);
+        out.writeByte(minute);
+        out.writeUTF(amPm != null ? amPm : "");
+        out.writeUTF(soundResourceName != null ? soundResourceName : "");
+        out.writeUTF(theme != null ? theme : "");
+        out.writeBoolean(enabled);
+        out.writeByte(repeatDays.length);
+        for (String day : repeatDays) {
+            out.writeUTF(day);
+        }
+    }
+
+    static AlarmRecord readFrom(DataInput in) throws IOException {
+        String id = in.readUTF();
+        int hour = in.readUnsignedByte();
+        int minute = in.readUnsignedByte();
+        String amPm = in.readUTF();
+        String soundResourceName = in.readUTF();
+        String theme = in.readUTF();
+        boolean enabled = in.readBoolean();
+        int dayCount = in.readUnsignedByte();
+        String[] repeatDays = dayCount == 0 ? NO_DAYS : new String[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            repeatDays[i] = in.readUTF();
+        }
+        return new AlarmRecord(id, hour, minute, amPm, soundResourceName, theme, enabled, repeatDays);
+    }
+
+    /**
+     * Parse one entry of the legacy saved_alarms JSON array (migration only)
+     */
+    static AlarmRecord fromLegacyJson(JSONObject json) throws JSONException {
+        JSONArray daysJson = json.optJSONArray("repeatDays");
+        String[] repeatDays = NO_DAYS;
+        if (daysJson != null && daysJson.length() > 0) {
+            repeatDays = new String[daysJson.length()];
+            for (int i = 0; i < daysJson.length(); i++) {
+                repeatDays[i] = daysJson.getString(i);
+            }
+        }
+        return new AlarmRecord(
+            json.getString("id"),
+            json.getInt("hour"),
+            json.getInt("minute"),
+            json.getString("amPm"),
+            json.optString("soundResourceName", "classicalarm_digital_alarm"),
+            json.optString("theme", "sunrise"),
+            json.optBoolean("enabled", true),
+            repeatDays
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "AlarmRecord{" + id + " " + hour + ":" + String.format("%02d", minute) + " " + amPm
+            + ", sound=" + soundResourceName + ", theme=" + theme + ", enabled=" + enabled + "}";
+    }
+}
@@ -8,26 +8,30 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
-import android.media.AudioManager;
+import android.media.AudioAttributes;
 import android.media.MediaPlayer;
-import android.media.RingtoneManager;
 import android.net.Uri;
 import android.os.Build;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
 import android.os.PowerManager;
 import android.os.Vibrator;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 
-import java.util.Calendar;
+import com.lightalarm.shared.PcmCache;
+import com.lightalarm.shared.PcmPlayer;
+import com.lightalarm.shared.VolumeRamp;
+
+import java.io.IOException;
+import java.util.List;
 
 public class AlarmService extends Service {
     private static final String TAG = "AlarmService";
     private static final String CHANNEL_ID = "LIGHT_ALARM_CHANNEL";
     private static final int NOTIFICATION_ID = 1;
+    private static final String PREFS_NAME = "LightAlarmPrefs";
+    private static final String VOLUME_RAMP_KEY = "volume_ramp";
     
     private PowerManager.WakeLock wakeLock;
     private Vibrator vibrator;
@@ -35,8 +39,9 @@ public class AlarmService extends Service {
     private String soundUrl;
     private android.media.Ringtone alarmRingtone;
     private MediaPlayer mediaPlayer;
-    private Handler volumeHandler;
-    private float currentVolume = 0.5f;
+    private PcmPlayer pcmPlayer;
+    private VolumeRamp.Handle volumeRamp;
+    private long alarmId = -1;
     
     @Override
     public void onCreate() {
@@ -58,6 +63,16 @@ public class AlarmService extends Service {
             if (intent != null) {
                 String alarmType = intent.getStringExtra("alarm_type");
                 this.soundUrl = intent.getStringExtra("alarm_sound"); // Store soundUrl
+                alarmId = intent.getLongExtra("alarm_id", -1);
+                FireLatencyRecorder.stamp(this, FireLatencyRecorder.STAGE_SERVICE, alarmId,
+                    intent.getLongExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, -1));
+                if ((this.soundUrl == null || this.soundUrl.isEmpty()) && alarmId != -1
+                        && DirectBootStorage.canReadAlarms(this)) {
+                    AlarmRecord record = AlarmCache.getInstance(this).get(String.valueOf(alarmId));
+                    if (record != null) {
+                        this.soundUrl = record.getSoundResourceName();
+                    }
+                }
                 Log.d(TAG, "Alarm type: " + alarmType);
                 Log.d(TAG, "🎵 Sound URL: " + this.soundUrl);
             }
@@ -174,51 +189,35 @@ public class AlarmService extends Service {
             vibrator.vibrate(vibratePattern, 0);
         }
 
-        // Play alarm sound with gradual volume increase
-        try {
-            mediaPlayer = new MediaPlayer();
-            mediaPlayer.setAudioStreamType(AudioManager.STREAM_ALARM);
-            mediaPlayer.setLooping(true);
-
-            // Try to play from resource name, fallback to default
-            if (this.soundUrl != null && !this.soundUrl.isEmpty() && !this.soundUrl.equals("default")) {
-                try {
-                    // Get the resource ID from its name (String)
-                    int resourceId = getResources().getIdentifier(this.soundUrl, "raw", getPackageName());
-
-                    if (resourceId != 0) {
-                        Log.d(TAG, "Attempting to play from resource ID: " + resourceId + " for name: " + this.soundUrl);
-                        mediaPlayer.setDataSource(getApplicationContext(),
-                            android.net.Uri.parse("android.resource://" + getPackageName() + "/" + resourceId));
-                    } else {
-                        // Fallback if the resource name is invalid
-                        Log.w(TAG, "Could not find resource ID for name: " + this.soundUrl + ". Falling back to default.");
-                        mediaPlayer.setDataSource(getApplicationContext(), RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM));
-                    }
+        // Play alarm sound with gradual volume increase, levelled to the other sounds
+        Sound sound = alarmSound();
+        VolumeRamp ramp = getVolumeRamp(this).withGain(sound != null ? sound.getGain() : 1f);
+        if (startPcmSound(sound, ramp)) {
+            // The MediaPlayer pre-roll is not needed when the decoded sound is cached
+            AlarmSoundPreroll.getInstance().release();
+        } else {
+            try {
+                // SunriseService normally pre-rolls the player during the light phase, so the sound
+                // starts within one buffer; after a process death it is built from scratch here
+                mediaPlayer = AlarmSoundPreroll.getInstance().take(alarmId, this.soundUrl);
+                boolean prerolled = mediaPlayer != null;
+                if (!prerolled) {
+                    mediaPlayer = AlarmSoundPreroll.createPlayer(this, this.soundUrl);
+                }
 
-                } catch (Exception e) {
-                    Log.e(TAG, "❌ Failed to set data source from resource name. Falling back to default.", e);
-                    mediaPlayer.setDataSource(getApplicationContext(), RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM));
+                if (!prerolled) {
+                    mediaPlayer.prepare();
                 }
-            } else {
-                Log.d(TAG, "No valid sound resource. Playing default alarm sound.");
-                mediaPlayer.setDataSource(getApplicationContext(), RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM));
+
+                // Fade in along the configured ramp, applied inside the audio framework where available
+                volumeRamp = ramp.start(mediaPlayer);
+                mediaPlayer.start();
+                Log.d(TAG, "🔔 Playing alarm sound, ramp " + ramp + " (" + (prerolled ? "pre-rolled" : "cold start") + ")");
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Error playing alarm sound", e);
             }
-            
-            // Start at 50% volume
-            currentVolume = 0.5f;
-            mediaPlayer.setVolume(currentVolume, currentVolume);
-            
-            mediaPlayer.prepare();
-            mediaPlayer.start();
-            Log.d(TAG, "🔔 Playing alarm sound at 50% volume");
-            
-            // Gradually increase volume over 60 seconds
-            volumeHandler = new Handler(Looper.getMainLooper());
-            startVolumeIncrease();
-            
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Error playing alarm sound", e);
+            // Decode it now so the next alarm with this sound plays from the PCM cache
+            AlarmSoundPreroll.pcmCache(this).decodeAsync(SoundManager.resolveResourceId(this.soundUrl));
         }
 
         // Launch the main app to show full screen alarm
@@ -235,24 +234,46 @@ public class AlarmService extends Service {
         sendBroadcast(broadcastIntent);
     }
     
-    private void startVolumeIncrease() {
-        volumeHandler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                if (mediaPlayer != null && mediaPlayer.isPlaying() && currentVolume < 1.0f) {
-                    currentVolume += 0.015f; // Increase by 1.5% every second
-                    if (currentVolume > 1.0f) currentVolume = 1.0f;
-                    
-                    mediaPlayer.setVolume(currentVolume, currentVolume);
-                    Log.d(TAG, "🔊 Volume: " + (int)(currentVolume * 100) + "%");
-                    
-                    // Continue increasing
-                    volumeHandler.postDelayed(this, 1000); // Every 1 second
-                }
+    /**
+     * The alarm sound's catalog entry, with the gain and loop points found at build time; null for
+     * the default sound
+     */
+    private Sound alarmSound() {
+        if (SoundManager.resolveResourceId(this.soundUrl) == 0) {
+            return null;
+        }
+        return SoundManager.getInstance().findSoundByResourceName(this.soundUrl);
+    }
+
+    /**
+     * Loop the alarm sound from the decoded PCM cache; false if it is not cached yet
+     */
+    private boolean startPcmSound(Sound sound, VolumeRamp ramp) {
+        PcmCache.Clip clip = AlarmSoundPreroll.pcmCache(this).open(SoundManager.resolveResourceId(this.soundUrl));
+        if (clip == null) {
+            return false;
+        }
+        try {
+            pcmPlayer = new PcmPlayer(clip, AudioAttributes.USAGE_ALARM, true);
+            if (sound != null) {
+                // Skips the trailing silence on every pass
+                pcmPlayer.setLoop(sound.getLoopStartUs(), sound.getLoopEndUs());
             }
-        }, 1000);
+            volumeRamp = ramp.start(pcmPlayer.getTrack());
+            pcmPlayer.start();
+            Log.d(TAG, "🔔 Playing alarm sound from PCM cache, ramp " + ramp);
+            return true;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "❌ PCM playback failed, falling back to MediaPlayer", e);
+            if (pcmPlayer != null) {
+                pcmPlayer.release();
+                pcmPlayer = null;
+            }
+            volumeRamp = null;
+            return false;
+        }
     }
-    
+
     private void triggerLegacyAlarm() {
         // Vibrate pattern: [vibrate 500ms, pause 200ms] x3, then pause 1s, repeat
         long[] vibratePattern = {0, 500, 200, 500, 200, 500, 1000};
@@ -286,10 +307,14 @@ public class AlarmService extends Service {
             vibrator.cancel();
         }
         
-        if (volumeHandler != null) {
-            volumeHandler.removeCallbacksAndMessages(null);
+        if (volumeRamp != null) {
+            volumeRamp.cancel();
+            volumeRamp = null;
         }
         
+        // A pre-roll nobody took (e.g. the alarm was stopped first) is not needed any more
+        AlarmSoundPreroll.getInstance().release();
+
         if (mediaPlayer != null) {
             if (mediaPlayer.isPlaying()) {
                 mediaPlayer.stop();
@@ -298,6 +323,12 @@ public class AlarmService extends Service {
             mediaPlayer = null;
             Log.d(TAG, "🔇 Stopped and released MediaPlayer");
         }
+
+        if (pcmPlayer != null) {
+            pcmPlayer.release();
+            pcmPlayer = null;
+            Log.d(TAG, "🔇 Stopped and released PCM player");
+        }
         
         if (alarmRingtone != null && alarmRingtone.isPlaying()) {
             alarmRingtone.stop();
@@ -312,8 +343,46 @@ public class AlarmService extends Service {
         return null;
     }
     
-    // Static method to schedule dual alarms (20min light + exact time sound)
+    // Alarm fade-in, stored device-protected so a locked-boot alarm uses it too
+    public static VolumeRamp getVolumeRamp(Context context) {
+        return VolumeRamp.parse(DirectBootStorage.of(context)
+            .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+            .getString(VOLUME_RAMP_KEY, null));
+    }
+
+    public static void setVolumeRamp(Context context, VolumeRamp ramp) {
+        DirectBootStorage.of(context)
+            .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+            .edit().putString(VOLUME_RAMP_KEY, ramp.toString()).apply();
+        Log.d(TAG, "🔊 Volume ramp set to " + ramp);
+    }
+
+    // Static method to schedule a saved alarm's next occurrence, honouring its repeat days
+    public static void scheduleAlarm(Context context, AlarmRecord alarm) {
+        scheduleAlarm(context, Long.parseLong(alarm.getId()), alarm.getHour(), alarm.getMinute(), alarm.getAmPm(),
+            alarm.getRepeatMask(), alarm.getSoundResourceName(), alarm.getTheme());
+    }
+
+    // Static method to schedule dual alarms (20min light + exact time sound); repeat days come from the saved alarm
     public static void scheduleAlarm(Context context, long alarmId, int hour, int minute, String amPm, String soundResourceName, String theme) {
+        AlarmRecord saved = AlarmCache.getInstance(context).get(String.valueOf(alarmId));
+        int repeatMask = saved != null ? saved.getRepeatMask() : Recurrence.EVERY_DAY;
+        scheduleAlarm(context, alarmId, hour, minute, amPm, repeatMask, soundResourceName, theme);
+    }
+
+    // Static method to schedule dual alarms (20min light + exact time sound) on the days in repeatMask
+    public static void scheduleAlarm(Context context, long alarmId, int hour, int minute, String amPm, int repeatMask, String soundResourceName, String theme) {
+        registerAlarm(context, alarmId, hour, minute, amPm, repeatMask, soundResourceName, theme);
+        AlarmPrewarm.reschedule(context);
+    }
+
+    // Register a saved alarm without moving the warm-up; bulk callers reschedule it once at the end
+    static void registerAlarm(Context context, AlarmRecord alarm) {
+        registerAlarm(context, Long.parseLong(alarm.getId()), alarm.getHour(), alarm.getMinute(), alarm.getAmPm(),
+            alarm.getRepeatMask(), alarm.getSoundResourceName(), alarm.getTheme());
+    }
+
+    private static void registerAlarm(Context context, long alarmId, int hour, int minute, String amPm, int repeatMask, String soundResourceName, String theme) {
         Log.d(TAG, "🔥 scheduleAlarm called from AlarmServicePlugin!");
         Log.d(TAG, "🆔 Alarm ID: " + alarmId);
         Log.d(TAG, "🕐 Time: " + hour + ":" + String.format("%02d", minute) + " " + amPm);
@@ -322,41 +391,33 @@ public class AlarmService extends Service {
 
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
 
-        // Convert to 24-hour format and calculate alarm time
-        int targetHour = hour;
-        if (amPm.equals("PM") && hour != 12) {
-            targetHour += 12;
-        } else if (amPm.equals("AM") && hour == 12) {
-            targetHour = 0;
-        }
-
-        // Calculate next occurrence of this alarm time
-        java.util.Calendar alarmCal = java.util.Calendar.getInstance();
-        alarmCal.set(java.util.Calendar.HOUR_OF_DAY, targetHour);
-        alarmCal.set(java.util.Calendar.MINUTE, minute);
-        alarmCal.set(java.util.Calendar.SECOND, 0);
-        alarmCal.set(java.util.Calendar.MILLISECOND, 0);
+        // Convert to 24-hour format and calculate the next occurrence on a repeat day without a Calendar
+        int targetHour = AlarmTimes.to24Hour(hour, amPm);
+        int rule = Recurrence.rule(repeatMask, AlarmTimes.minuteOfDay(targetHour, minute));
 
-        // If the time has passed today, set for tomorrow
-        if (alarmCal.getTimeInMillis() <= System.currentTimeMillis()) {
-            alarmCal.add(java.util.Calendar.DAY_OF_MONTH, 1);
+        // Chained mode keeps a single system alarm for the earliest trigger of all alarms
+        if (ChainedAlarmScheduler.isEnabled(context)) {
+            ChainedAlarmScheduler.schedule(context, alarmId, rule);
+            return;
         }
 
-        long alarmTimeMillis = alarmCal.getTimeInMillis();
+        long alarmTimeMillis = Recurrence.nextTrigger(rule, System.currentTimeMillis(), java.util.TimeZone.getDefault());
         Log.d(TAG, "📅 Alarm time: " + new java.util.Date(alarmTimeMillis));
 
-        // Generate unique request codes based on alarm ID
-        int lightRequestCode = (int) (alarmId * 2);
-        int soundRequestCode = (int) (alarmId * 2 + 1);
+        // Dense request codes from the alarm's slot in the persistent table
+        int slot = acquireSlot(context, alarmId);
+        int lightRequestCode = RequestCodeTable.lightRequestCode(slot);
+        int soundRequestCode = RequestCodeTable.soundRequestCode(slot);
 
         // 1) Schedule 20-minute pre-alarm for light sequence
-        long lightAlarmTime = alarmTimeMillis - (20 * 60 * 1000); // 20 minutes before
+        long lightAlarmTime = alarmTimeMillis - AlarmTimes.LIGHT_LEAD_MS; // 20 minutes before
         Intent lightIntent = new Intent(context, AlarmReceiver.class);
         lightIntent.setAction("com.lightalarm.app.LIGHT_ALARM");
         lightIntent.putExtra("alarm_type", "light");
         lightIntent.putExtra("alarm_id", alarmId);
         lightIntent.putExtra("alarm_sound", soundResourceName);
         lightIntent.putExtra("alarm_theme", theme);
+        lightIntent.putExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, lightAlarmTime);
         
         PendingIntent lightPendingIntent = PendingIntent.getBroadcast(
             context, 
@@ -372,6 +433,7 @@ public class AlarmService extends Service {
         soundIntent.putExtra("alarm_id", alarmId);
         soundIntent.putExtra("alarm_sound", soundResourceName);
         soundIntent.putExtra("alarm_theme", theme);
+        soundIntent.putExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, alarmTimeMillis);
         
         PendingIntent soundPendingIntent = PendingIntent.getBroadcast(
             context, 
@@ -398,16 +460,57 @@ public class AlarmService extends Service {
         Log.d(TAG, "Request codes: Light=" + lightRequestCode + ", Sound=" + soundRequestCode);
     }
     
-    // Static method to cancel specific alarm by ID
-    public static void cancelAlarm(Context context, long alarmId) {
-        Log.d(TAG, "🚫 Cancelling alarm ID: " + alarmId);
-        
+    // Slot for an alarm's request codes; the first assignment also clears pre-table registrations
+    private static int acquireSlot(Context context, long alarmId) {
+        RequestCodeTable codes = RequestCodeTable.getInstance(context);
+        if (codes.slotOf(alarmId) == LongIntHashMap.MISSING) {
+            cancelLegacyRegistrations(context, (AlarmManager) context.getSystemService(Context.ALARM_SERVICE), alarmId);
+        }
+        try {
+            return codes.acquire(alarmId);
+        } catch (IOException e) {
+            // The slot is still held in memory, it just may not survive a process kill
+            Log.e(TAG, "❌ Failed to persist request code slot for alarm " + alarmId, e);
+            return codes.slotOf(alarmId);
+        }
+    }
+
+    // Assign request code slots for a batch of alarms with one table write
+    public static void reserveRequestCodes(Context context, List<AlarmRecord> alarms) {
+        RequestCodeTable codes = RequestCodeTable.getInstance(context);
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        
-        // Generate unique request codes based on alarm ID
-        int lightRequestCode = (int) (alarmId * 2);
-        int soundRequestCode = (int) (alarmId * 2 + 1);
-        
+        long[] alarmIds = new long[alarms.size()];
+        for (int i = 0; i < alarmIds.length; i++) {
+            alarmIds[i] = Long.parseLong(alarms.get(i).getId());
+            if (codes.slotOf(alarmIds[i]) == LongIntHashMap.MISSING) {
+                cancelLegacyRegistrations(context, alarmManager, alarmIds[i]);
+            }
+        }
+        try {
+            codes.acquireAll(alarmIds);
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to persist request code slots for " + alarmIds.length + " alarms", e);
+        }
+    }
+
+    // A deleted alarm gives its slot back; a disabled one keeps it for when it is re-enabled
+    private static void releaseSlotIfDeleted(Context context, RequestCodeTable codes, long alarmId) {
+        if (AlarmCache.getInstance(context).get(String.valueOf(alarmId)) == null) {
+            try {
+                codes.release(alarmId);
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to persist request code release for alarm " + alarmId, e);
+            }
+        }
+    }
+
+    // Older builds derived request codes from the id itself, (int) (alarmId * 2) and + 1
+    private static void cancelLegacyRegistrations(Context context, AlarmManager alarmManager, long alarmId) {
+        cancelRegistrations(context, alarmManager, alarmId, (int) (alarmId * 2), (int) (alarmId * 2 + 1));
+    }
+
+    private static void cancelRegistrations(Context context, AlarmManager alarmManager, long alarmId,
+                                            int lightRequestCode, int soundRequestCode) {
         // Cancel light alarm
         Intent lightIntent = new Intent(context, AlarmReceiver.class);
         lightIntent.setAction("com.lightalarm.app.LIGHT_ALARM");
@@ -433,6 +536,34 @@ public class AlarmService extends Service {
         );
         alarmManager.cancel(soundPendingIntent);
         Log.d(TAG, "✅ Sound alarm cancelled (request code " + soundRequestCode + ")");
+    }
+
+    // Static method to cancel specific alarm by ID
+    public static void cancelAlarm(Context context, long alarmId) {
+        Log.d(TAG, "🚫 Cancelling alarm ID: " + alarmId);
+
+        if (ChainedAlarmScheduler.isEnabled(context)) {
+            ChainedAlarmScheduler.cancel(context, alarmId);
+            releaseSlotIfDeleted(context, RequestCodeTable.getInstance(context), alarmId);
+            AlarmPrewarm.reschedule(context);
+            return;
+        }
+        
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        RequestCodeTable codes = RequestCodeTable.getInstance(context);
+        int slot = codes.slotOf(alarmId);
+        if (slot == LongIntHashMap.MISSING) {
+            // Never scheduled since request codes moved to the table
+            cancelLegacyRegistrations(context, alarmManager, alarmId);
+            Log.d(TAG, "🎯 Alarm " + alarmId + " had no request code slot, legacy codes cancelled");
+            AlarmPrewarm.reschedule(context);
+            return;
+        }
+        cancelRegistrations(context, alarmManager, alarmId,
+            RequestCodeTable.lightRequestCode(slot), RequestCodeTable.soundRequestCode(slot));
+
+        releaseSlotIfDeleted(context, codes, alarmId);
+        AlarmPrewarm.reschedule(context);
         
         Log.d(TAG, "🎯 Alarm " + alarmId + " cancelled successfully");
     }
@@ -459,6 +590,7 @@ public class AlarmService extends Service {
             soundIntent.setAction("com.lightalarm.app.SOUND_ALARM");
             soundIntent.putExtra("alarm_type", "sound");
             soundIntent.putExtra("alarm_sound", "");
+            soundIntent.putExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, snoozeAt);
 
             PendingIntent soundPendingIntent = PendingIntent.getBroadcast(
                 context,
@@ -9,37 +9,143 @@ import com.getcapacitor.annotation.ActivityCallback;
 
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.provider.Settings;
 import android.util.Log;
+import android.view.Choreographer;
 import android.app.NotificationManager;
 import android.app.Activity;
 import androidx.activity.result.ActivityResult;
 
 import com.getcapacitor.JSArray;
 
+import com.lightalarm.shared.VolumeRamp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import java.util.Set;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @CapacitorPlugin(name = "AlarmService")
 public class AlarmServicePlugin extends Plugin {
     private static final String TAG = "AlarmServicePlugin";
 
     private static final String PREFS_NAME = "LightAlarmPrefs";
-    private static final String ALARMS_KEY = "saved_alarms";
     private static final String ALARM_TIME_KEY = "alarm_time";
     private static final String ALARM_ENABLED_KEY = "alarm_enabled";
     private static final String ALARM_SOUND_KEY = "alarm_sound";
 
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean progressFramePending = new AtomicBoolean(false);
+    private int deliveredProgress = SunriseProgressChannel.IDLE;
+
+    // Any number of progress updates between two display frames collapse into one frame callback
+    // that sends whatever is current by then; intermediate values are dropped
+    private final SunriseProgressChannel.Listener sunriseListener = new SunriseProgressChannel.Listener() {
+        @Override
+        public void onSunriseProgress(int progress) {
+            if (progressFramePending.compareAndSet(false, true)) {
+                mainHandler.post(postProgressFrame);
+            }
+        }
+    };
+
+    private final Runnable postProgressFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(progressFrame);
+        }
+    };
+
+    private final Choreographer.FrameCallback progressFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            progressFramePending.set(false);
+            int progress = SunriseProgressChannel.getInstance().current();
+            if (progress == deliveredProgress) {
+                return;
+            }
+            deliveredProgress = progress;
+            WebEventBus.getInstance().post(WebEventBus.Event.sunriseProgress(progress));
+        }
+    };
+
+    // Each batch reaches JS as one "nativeEvents" notification; the page re-dispatches the
+    // entries as window events
+    private final WebEventBus.Sink eventSink = new WebEventBus.Sink() {
+        @Override
+        public void deliver(List<WebEventBus.Event> batch) {
+            JSArray events = new JSArray();
+            for (WebEventBus.Event event : batch) {
+                JSObject detail = new JSObject();
+                for (Map.Entry<String, Object> entry : event.detail.entrySet()) {
+                    detail.put(entry.getKey(), entry.getValue());
+                }
+                JSObject item = new JSObject();
+                item.put("type", event.type.jsName);
+                item.put("detail", detail);
+                events.put(item);
+            }
+            JSObject data = new JSObject();
+            data.put("events", events);
+            notifyListeners("nativeEvents", data);
+
+            for (WebEventBus.Event event : batch) {
+                if (event.type == WebEventBus.Type.ALARM_FIRED) {
+                    long alarmId = (Long) event.detail.get("alarmId");
+                    long scheduledAt = (Long) event.detail.get("scheduledAt");
+                    FireLatencyRecorder.stamp(getContext(), FireLatencyRecorder.STAGE_JS_EVENT, alarmId, scheduledAt);
+                    if (scheduledAt > 0) {
+                        AlarmPrewarm.recordWakeScreen(getContext(), alarmId,
+                            Math.max(0, System.currentTimeMillis() - scheduledAt));
+                    }
+                }
+            }
+            Log.d(TAG, "📨 Delivered " + batch.size() + " native event(s) to JavaScript");
+        }
+    };
+
+    @Override
+    public void load() {
+        super.load();
+        SunriseProgressChannel.getInstance().addListener(sunriseListener);
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        SunriseProgressChannel.getInstance().removeListener(sunriseListener);
+        WebEventBus.getInstance().detach(eventSink);
+        mainHandler.removeCallbacks(postProgressFrame);
+        Choreographer.getInstance().removeFrameCallback(progressFrame);
+        progressFramePending.set(false);
+        super.handleOnDestroy();
+    }
+
+    /**
+     * Called by the page once its nativeEvents listener is in place; flushes queued events
+     */
+    @PluginMethod
+    public void markEventsReady(PluginCall call) {
+        WebEventBus.getInstance().markReady(eventSink);
+        Log.d(TAG, "✅ JavaScript ready for native events");
+        call.resolve();
+    }
+
     @PluginMethod
     public void scheduleAlarm(PluginCall call) {
         Log.d(TAG, "🔔 scheduleAlarm called from JavaScript!");
@@ -68,27 +174,11 @@ public class AlarmServicePlugin extends Plugin {
             Log.d(TAG, "   🎨 Theme: " + theme);
             Log.d(TAG, "   🔄 Repeat days: " + repeatDays.toString());
 
-            // Convert to 24-hour format and calculate alarm time
-            int targetHour = hour;
-            if (amPm.equals("PM") && hour != 12) {
-                targetHour += 12;
-            } else if (amPm.equals("AM") && hour == 12) {
-                targetHour = 0;
-            }
-
-            // Calculate next occurrence of this alarm time
-            Calendar alarmCal = Calendar.getInstance();
-            alarmCal.set(Calendar.HOUR_OF_DAY, targetHour);
-            alarmCal.set(Calendar.MINUTE, minute);
-            alarmCal.set(Calendar.SECOND, 0);
-            alarmCal.set(Calendar.MILLISECOND, 0);
-
-            // If the time has passed today, set for tomorrow
-            if (alarmCal.getTimeInMillis() <= System.currentTimeMillis()) {
-                alarmCal.add(Calendar.DAY_OF_MONTH, 1);
-            }
+            // Save alarm to the alarm store (multiple alarms support); the shared
+            // NextAlarmEngine picks the change up from the alarm cache
+            saveAlarmToPrefs(alarmId, hour, minute, amPm, soundResourceName, theme, repeatDays);
 
-            long alarmTime = alarmCal.getTimeInMillis();
+            long alarmTime = NextAlarmEngine.getInstance(getContext()).timeOf(NextAlarmEngine.parseId(alarmId));
             Date alarmDate = new Date(alarmTime);
             Date now = new Date();
 
@@ -97,15 +187,14 @@ public class AlarmServicePlugin extends Plugin {
             Log.d(TAG, "   🎯 Alarm timestamp (ms): " + alarmTime);
             Log.d(TAG, "   📊 Time difference: " + (alarmTime - now.getTime()) + "ms (" + ((alarmTime - now.getTime()) / 1000 / 60) + " minutes)");
 
-            // Save alarm to SharedPreferences (multiple alarms support)
-            saveAlarmToPrefs(alarmId, hour, minute, amPm, soundResourceName, theme, repeatDays);
-
-            // Call our native AlarmService with new parameters
-            AlarmService.scheduleAlarm(getContext(), Long.parseLong(alarmId), targetHour, minute, amPm, soundResourceName, theme);
+            // Call our native AlarmService with new parameters (12-hour clock, it converts itself);
+            // repeat days are read back from the record just saved
+            AlarmService.scheduleAlarm(getContext(), Long.parseLong(alarmId), hour, minute, amPm, soundResourceName, theme);
             
             JSObject result = new JSObject();
             result.put("success", true);
             result.put("message", "Alarm scheduled successfully");
+            result.put("triggerAt", alarmTime);
             result.put("hasFullScreenPermission", canUseFullScreenIntent());
             Log.d(TAG, "✅ Alarm scheduled successfully, resolving call");
             call.resolve(result);
@@ -116,80 +205,52 @@ public class AlarmServicePlugin extends Plugin {
         }
     }
     
-    // Helper method to save alarm to SharedPreferences (multiple alarms support)
+    // Helper method to save alarm to the alarm store (multiple alarms support)
     private void saveAlarmToPrefs(String alarmId, int hour, int minute, String amPm, String soundResourceName, String theme, JSArray repeatDays) {
         try {
-            SharedPreferences prefs = getContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            String alarmsJson = prefs.getString(ALARMS_KEY, "[]");
-            JSONArray alarmsArray = new JSONArray(alarmsJson);
-            
-            // Create alarm object
-            JSONObject alarmObj = new JSONObject();
-            alarmObj.put("id", alarmId);
-            alarmObj.put("hour", hour);
-            alarmObj.put("minute", minute);
-            alarmObj.put("amPm", amPm);
-            alarmObj.put("soundResourceName", soundResourceName);
-            alarmObj.put("theme", theme);
-            alarmObj.put("enabled", true);
-            
-            // Convert JSArray to JSONArray for repeatDays
-            JSONArray repeatDaysJson = new JSONArray();
-            for (int i = 0; i < repeatDays.length(); i++) {
-                repeatDaysJson.put(repeatDays.getString(i));
-            }
-            alarmObj.put("repeatDays", repeatDaysJson);
-            
-            // Remove existing alarm with same ID if it exists
-            for (int i = 0; i < alarmsArray.length(); i++) {
-                JSONObject existingAlarm = alarmsArray.getJSONObject(i);
-                if (existingAlarm.getString("id").equals(alarmId)) {
-                    alarmsArray.remove(i);
-                    break;
-                }
+            String[] days = new String[repeatDays.length()];
+            for (int i = 0; i < days.length; i++) {
+                days[i] = repeatDays.getString(i);
             }
-            
-            // Add new alarm
-            alarmsArray.put(alarmObj);
-            
-            // Save back to SharedPreferences
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putString(ALARMS_KEY, alarmsArray.toString());
-            editor.apply();
-            
-            Log.d(TAG, "💾 Alarm saved to SharedPreferences: " + alarmObj.toString());
+            AlarmRecord record = new AlarmRecord(alarmId, hour, minute, amPm, soundResourceName, theme, true, days);
+
+            // Visible to every reader immediately; the store append happens write-behind
+            AlarmCache.getInstance(getContext()).put(record);
+
+            Log.d(TAG, "💾 Alarm saved to alarm store: " + record);
         } catch (Exception e) {
-            Log.e(TAG, "❌ Error saving alarm to preferences", e);
+            Log.e(TAG, "❌ Error saving alarm to store", e);
         }
     }
     
-    // Helper method to remove alarm from SharedPreferences
+    // Helper method to remove alarm from the alarm store
     private void removeAlarmFromPrefs(String alarmId) {
         try {
-            SharedPreferences prefs = getContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            String alarmsJson = prefs.getString(ALARMS_KEY, "[]");
-            JSONArray alarmsArray = new JSONArray(alarmsJson);
-            
-            // Remove alarm with matching ID
-            for (int i = 0; i < alarmsArray.length(); i++) {
-                JSONObject alarm = alarmsArray.getJSONObject(i);
-                if (alarm.getString("id").equals(alarmId)) {
-                    alarmsArray.remove(i);
-                    break;
-                }
-            }
-            
-            // Save back to SharedPreferences
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putString(ALARMS_KEY, alarmsArray.toString());
-            editor.apply();
-            
-            Log.d(TAG, "🗑️ Alarm removed from SharedPreferences: " + alarmId);
+            AlarmCache.getInstance(getContext()).remove(alarmId);
+            Log.d(TAG, "🗑️ Alarm removed from alarm store: " + alarmId);
         } catch (Exception e) {
-            Log.e(TAG, "❌ Error removing alarm from preferences", e);
+            Log.e(TAG, "❌ Error removing alarm from store", e);
         }
     }
 
+    private static JSObject toJSObject(AlarmRecord record) {
+        JSObject alarmJS = new JSObject();
+        alarmJS.put("id", record.getId());
+        alarmJS.put("hour", record.getHour());
+        alarmJS.put("minute", record.getMinute());
+        alarmJS.put("amPm", record.getAmPm());
+        alarmJS.put("soundResourceName", record.getSoundResourceName());
+        alarmJS.put("theme", record.getTheme());
+        alarmJS.put("enabled", record.isEnabled());
+
+        JSArray repeatDaysJS = new JSArray();
+        for (int i = 0; i < record.getRepeatDayCount(); i++) {
+            repeatDaysJS.put(record.getRepeatDay(i));
+        }
+        alarmJS.put("repeatDays", repeatDaysJS);
+        return alarmJS;
+    }
+
     @PluginMethod
     public void checkFullScreenPermission(PluginCall call) {
         try {
@@ -319,44 +380,440 @@ public class AlarmServicePlugin extends Plugin {
         try {
             Log.d(TAG, "Getting all saved alarms");
             
-            SharedPreferences prefs = getContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            String alarmsJson = prefs.getString(ALARMS_KEY, "[]");
-            JSONArray alarmsArray = new JSONArray(alarmsJson);
+            List<AlarmRecord> alarms = AlarmCache.getInstance(getContext()).getAll();
             
             JSArray alarmsJS = new JSArray();
-            for (int i = 0; i < alarmsArray.length(); i++) {
-                JSONObject alarmJson = alarmsArray.getJSONObject(i);
-                JSObject alarmJS = new JSObject();
-                alarmJS.put("id", alarmJson.getString("id"));
-                alarmJS.put("hour", alarmJson.getInt("hour"));
-                alarmJS.put("minute", alarmJson.getInt("minute"));
-                alarmJS.put("amPm", alarmJson.getString("amPm"));
-                alarmJS.put("soundResourceName", alarmJson.getString("soundResourceName"));
-                alarmJS.put("theme", alarmJson.getString("theme"));
-                alarmJS.put("enabled", alarmJson.getBoolean("enabled"));
-                
-                // Convert repeatDays JSONArray to JSArray
-                JSONArray repeatDaysJson = alarmJson.getJSONArray("repeatDays");
-                JSArray repeatDaysJS = new JSArray();
-                for (int j = 0; j < repeatDaysJson.length(); j++) {
-                    repeatDaysJS.put(repeatDaysJson.getString(j));
-                }
-                alarmJS.put("repeatDays", repeatDaysJS);
-                
-                alarmsJS.put(alarmJS);
+            for (AlarmRecord alarm : alarms) {
+                alarmsJS.put(toJSObject(alarm));
             }
             
             JSObject result = new JSObject();
             result.put("alarms", alarmsJS);
             call.resolve(result);
             
-            Log.d(TAG, "Returned " + alarmsArray.length() + " saved alarms");
+            Log.d(TAG, "Returned " + alarms.size() + " saved alarms");
         } catch (Exception e) {
             Log.e(TAG, "Error getting all alarms", e);
             call.reject("Failed to get alarms: " + e.getMessage());
         }
     }
 
+    @PluginMethod
+    public void getUpcomingAlarms(PluginCall call) {
+        try {
+            int count = Math.max(0, call.getInt("count", 5));
+            long[] times = new long[count];
+            long[] ids = new long[count];
+            int found = NextAlarmEngine.getInstance(getContext()).nextOccurrences(count, times, ids);
+
+            JSArray upcomingJS = new JSArray();
+            for (int i = 0; i < found; i++) {
+                JSObject occurrence = new JSObject();
+                occurrence.put("id", String.valueOf(ids[i]));
+                occurrence.put("soundAt", times[i]);
+                occurrence.put("lightAt", times[i] - AlarmTimes.LIGHT_LEAD_MS);
+                upcomingJS.put(occurrence);
+            }
+
+            JSObject result = new JSObject();
+            result.put("upcoming", upcomingJS);
+            call.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting upcoming alarms", e);
+            call.reject("Failed to get upcoming alarms: " + e.getMessage());
+        }
+    }
+
+    /**
+     * How late alarms reach each firing stage: per-stage percentiles from the latency histograms
+     * plus the most recent firings. Pass reset: true to clear the stats after reading them.
+     */
+    @PluginMethod
+    public void getFireLatencyStats(PluginCall call) {
+        try {
+            FireLatencyRecorder recorder = FireLatencyRecorder.getInstance(getContext());
+            JSObject stagesJS = new JSObject();
+            for (int stage = 0; stage < FireLatencyRecorder.STAGE_COUNT; stage++) {
+                JSObject stageJS = new JSObject();
+                stageJS.put("count", recorder.count(stage));
+                stageJS.put("p50", recorder.percentile(stage, 50));
+                stageJS.put("p90", recorder.percentile(stage, 90));
+                stageJS.put("p99", recorder.percentile(stage, 99));
+                stageJS.put("max", recorder.max(stage));
+                stagesJS.put(FireLatencyRecorder.STAGE_NAMES[stage], stageJS);
+            }
+
+            JSArray recentJS = new JSArray();
+            for (int i = 0; i < recorder.recentCount(); i++) {
+                long[] firing = recorder.recent(i);
+                JSObject firingJS = new JSObject();
+                firingJS.put("id", String.valueOf(firing[0]));
+                firingJS.put("scheduledAt", firing[1]);
+                for (int stage = 0; stage < FireLatencyRecorder.STAGE_COUNT; stage++) {
+                    // Stages a firing never reached (e.g. the app was not opened) are left out
+                    if (firing[2 + stage] != FireLatencyRecorder.NOT_STAMPED) {
+                        firingJS.put(FireLatencyRecorder.STAGE_NAMES[stage], firing[2 + stage]);
+                    }
+                }
+                recentJS.put(firingJS);
+            }
+
+            // Wake screen latency split by whether the warm-up stage ran before the fire
+            AlarmPrewarm.Savings savings = AlarmPrewarm.savings(getContext());
+            JSObject prewarmJS = new JSObject();
+            prewarmJS.put("leadMs", AlarmPrewarm.getLeadMs(getContext()));
+            prewarmJS.put("warmCount", savings.warmCount);
+            prewarmJS.put("warmMeanMs", savings.warmMeanMs);
+            prewarmJS.put("coldCount", savings.coldCount);
+            prewarmJS.put("coldMeanMs", savings.coldMeanMs);
+            prewarmJS.put("savedMs", savings.savedMs());
+
+            if (call.getBoolean("reset", false)) {
+                recorder.reset();
+                AlarmPrewarm.resetSavings(getContext());
+            }
+
+            JSObject result = new JSObject();
+            result.put("unit", "ms");
+            result.put("stages", stagesJS);
+            result.put("recent", recentJS);
+            result.put("prewarm", prewarmJS);
+            call.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting fire latency stats", e);
+            call.reject("Failed to get fire latency stats: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void setAlarmEnabled(PluginCall call) {
+        try {
+            String alarmId = call.getString("id");
+            Boolean enabled = call.getBoolean("enabled");
+            if (alarmId == null || enabled == null) {
+                call.reject("Alarm ID and enabled flag are required");
+                return;
+            }
+
+            Log.d(TAG, (enabled ? "Enabling" : "Disabling") + " alarm: " + alarmId);
+
+            AlarmRecord record = AlarmCache.getInstance(getContext()).setEnabled(alarmId, enabled);
+            if (record == null) {
+                call.reject("Unknown alarm ID: " + alarmId);
+                return;
+            }
+
+            if (enabled) {
+                AlarmService.scheduleAlarm(getContext(), record);
+            } else {
+                AlarmService.cancelAlarm(getContext(), Long.parseLong(alarmId));
+            }
+
+            JSObject result = new JSObject();
+            result.put("success", true);
+            result.put("alarm", toJSObject(record));
+            call.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error toggling alarm", e);
+            call.reject("Failed to toggle alarm: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Save many alarms at once: each item is validated on its own, every valid one is persisted
+     * in a single store commit, and AlarmManager is only touched for alarms whose registration
+     * actually changes. Resolves with one result per input item, in order.
+     */
+    @PluginMethod
+    public void scheduleAlarms(PluginCall call) {
+        try {
+            JSArray alarmsJS = call.getArray("alarms");
+            if (alarmsJS == null) {
+                call.reject("alarms array is required");
+                return;
+            }
+            Log.d(TAG, "📦 scheduleAlarms called with " + alarmsJS.length() + " alarms");
+
+            AlarmCache cache = AlarmCache.getInstance(getContext());
+            AlarmCache.Snapshot before = cache.snapshot();
+            JSObject[] results = new JSObject[alarmsJS.length()];
+            List<AlarmRecord> valid = new ArrayList<>();
+            List<Integer> validIndexes = new ArrayList<>();
+            Set<String> seenIds = new HashSet<>();
+
+            for (int i = 0; i < alarmsJS.length(); i++) {
+                JSObject result = new JSObject();
+                results[i] = result;
+                JSONObject item = alarmsJS.optJSONObject(i);
+                String alarmId = item != null ? item.optString("id", null) : null;
+                result.put("id", alarmId);
+                try {
+                    AlarmRecord record = parseAlarm(item);
+                    if (!seenIds.add(record.getId())) {
+                        throw new IllegalArgumentException("Duplicate alarm ID in batch: " + record.getId());
+                    }
+                    valid.add(record);
+                    validIndexes.add(i);
+                } catch (Exception e) {
+                    result.put("success", false);
+                    result.put("error", e.getMessage());
+                }
+            }
+
+            // One snapshot swap and one store commit for the whole batch
+            cache.applyBatch(valid, Collections.<String>emptyList());
+
+            boolean chained = ChainedAlarmScheduler.isEnabled(getContext());
+            if (!chained) {
+                // New alarms get their request codes in one table write rather than one each
+                AlarmService.reserveRequestCodes(getContext(), valid);
+            }
+            NextAlarmEngine engine = NextAlarmEngine.getInstance(getContext());
+            int changed = 0;
+            for (int i = 0; i < valid.size(); i++) {
+                AlarmRecord record = valid.get(i);
+                boolean registrationChanged = registrationChanged(before.get(record.getId()), record);
+                if (registrationChanged) {
+                    changed++;
+                    if (!chained) {
+                        if (record.isEnabled()) {
+                            AlarmService.scheduleAlarm(getContext(), record);
+                        } else {
+                            AlarmService.cancelAlarm(getContext(), Long.parseLong(record.getId()));
+                        }
+                    }
+                }
+
+                JSObject result = results[validIndexes.get(i)];
+                result.put("success", true);
+                result.put("changed", registrationChanged);
+                if (record.isEnabled()) {
+                    result.put("triggerAt", engine.timeOf(NextAlarmEngine.parseId(record.getId())));
+                }
+            }
+            if (chained && changed > 0) {
+                // The chain re-arms its single slot once for the whole batch
+                ChainedAlarmScheduler.rebuild(getContext());
+            }
+
+            Log.d(TAG, "✅ Batch saved " + valid.size() + "/" + results.length + " alarms, " + changed + " registrations changed");
+            call.resolve(batchResult(results, valid.size(), changed));
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error scheduling alarm batch", e);
+            call.reject("Failed to schedule alarms: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Remove many alarms at once with a single store commit. Resolves with one result per id.
+     */
+    @PluginMethod
+    public void cancelAlarms(PluginCall call) {
+        try {
+            JSArray idsJS = call.getArray("ids");
+            if (idsJS == null) {
+                call.reject("ids array is required");
+                return;
+            }
+            Log.d(TAG, "📦 cancelAlarms called with " + idsJS.length() + " ids");
+
+            AlarmCache cache = AlarmCache.getInstance(getContext());
+            AlarmCache.Snapshot before = cache.snapshot();
+            JSObject[] results = new JSObject[idsJS.length()];
+            List<String> removals = new ArrayList<>();
+
+            for (int i = 0; i < idsJS.length(); i++) {
+                String alarmId = idsJS.optString(i, null);
+                JSObject result = new JSObject();
+                result.put("id", alarmId);
+                results[i] = result;
+                if (alarmId == null || before.get(alarmId) == null) {
+                    result.put("success", false);
+                    result.put("error", "Unknown alarm ID: " + alarmId);
+                } else if (removals.contains(alarmId)) {
+                    result.put("success", false);
+                    result.put("error", "Duplicate alarm ID in batch: " + alarmId);
+                } else {
+                    removals.add(alarmId);
+                    result.put("success", true);
+                }
+            }
+
+            cache.applyBatch(Collections.<AlarmRecord>emptyList(), removals);
+
+            int changed = 0;
+            boolean chained = ChainedAlarmScheduler.isEnabled(getContext());
+            for (String alarmId : removals) {
+                // Disabled alarms have nothing registered with AlarmManager
+                if (before.get(alarmId).isEnabled()) {
+                    changed++;
+                    if (!chained) {
+                        AlarmService.cancelAlarm(getContext(), Long.parseLong(alarmId));
+                    }
+                }
+            }
+            if (chained && changed > 0) {
+                ChainedAlarmScheduler.rebuild(getContext());
+            }
+
+            Log.d(TAG, "✅ Batch removed " + removals.size() + "/" + results.length + " alarms");
+            call.resolve(batchResult(results, removals.size(), changed));
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error cancelling alarm batch", e);
+            call.reject("Failed to cancel alarms: " + e.getMessage());
+        }
+    }
+
+    // Build and validate one alarm of a batch; throws IllegalArgumentException with a message for JS
+    private static AlarmRecord parseAlarm(JSONObject item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Alarm must be an object");
+        }
+        String alarmId = item.optString("id", null);
+        if (alarmId == null) {
+            throw new IllegalArgumentException("Alarm ID is required");
+        }
+        try {
+            NextAlarmEngine.parseId(alarmId);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Alarm ID must be numeric: " + alarmId);
+        }
+        int hour = item.optInt("hour", -1);
+        int minute = item.optInt("minute", -1);
+        String amPm = item.optString("amPm", null);
+        if (hour < 1 || hour > 12) {
+            throw new IllegalArgumentException("hour must be 1-12");
+        }
+        if (minute < 0 || minute > 59) {
+            throw new IllegalArgumentException("minute must be 0-59");
+        }
+        if (!"AM".equals(amPm) && !"PM".equals(amPm)) {
+            throw new IllegalArgumentException("amPm must be AM or PM");
+        }
+
+        JSONArray repeatDaysJS = item.optJSONArray("repeatDays");
+        String[] repeatDays = new String[repeatDaysJS != null ? repeatDaysJS.length() : 0];
+        for (int i = 0; i < repeatDays.length; i++) {
+            repeatDays[i] = repeatDaysJS.optString(i);
+        }
+        return new AlarmRecord(alarmId, hour, minute, amPm,
+            item.optString("soundResourceName", "classicalarm_digital_alarm"),
+            item.optString("theme", "sunrise"),
+            item.optBoolean("enabled", true),
+            repeatDays);
+    }
+
+    // A saved alarm needs new AlarmManager registrations if its firing schedule changed, or the
+    // sound or theme its PendingIntents carry as extras
+    private static boolean registrationChanged(AlarmRecord previous, AlarmRecord updated) {
+        if (previous == null || previous.isEnabled() != updated.isEnabled()) {
+            return previous != null || updated.isEnabled();
+        }
+        return updated.isEnabled() && (Recurrence.rule(previous) != Recurrence.rule(updated)
+            || !Objects.equals(previous.getSoundResourceName(), updated.getSoundResourceName())
+            || !Objects.equals(previous.getTheme(), updated.getTheme()));
+    }
+
+    private static JSObject batchResult(JSObject[] results, int succeeded, int changed) {
+        JSArray resultsJS = new JSArray();
+        for (JSObject result : results) {
+            resultsJS.put(result);
+        }
+        JSObject batch = new JSObject();
+        batch.put("results", resultsJS);
+        batch.put("succeeded", succeeded);
+        batch.put("failed", results.length - succeeded);
+        batch.put("registrationsChanged", changed);
+        return batch;
+    }
+
+    @PluginMethod
+    public void setSchedulingMode(PluginCall call) {
+        try {
+            String mode = call.getString("mode");
+            if (!"chained".equals(mode) && !"perAlarm".equals(mode)) {
+                call.reject("Mode must be 'chained' or 'perAlarm'");
+                return;
+            }
+
+            Log.d(TAG, "Switching scheduling mode to: " + mode);
+            ChainedAlarmScheduler.setEnabled(getContext(), "chained".equals(mode));
+
+            JSObject result = new JSObject();
+            result.put("success", true);
+            result.put("mode", mode);
+            call.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error switching scheduling mode", e);
+            call.reject("Failed to switch scheduling mode: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void getSchedulingMode(PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("mode", ChainedAlarmScheduler.isEnabled(getContext()) ? "chained" : "perAlarm");
+        call.resolve(result);
+    }
+
+    /**
+     * How many minutes before the light phase to warm the app up; 0 turns the warm-up off
+     */
+    @PluginMethod
+    public void setPrewarmLead(PluginCall call) {
+        Integer minutes = call.getInt("minutes");
+        if (minutes == null || minutes < 0 || minutes > 60) {
+            call.reject("minutes must be between 0 and 60");
+            return;
+        }
+        AlarmPrewarm.setLeadMs(getContext(), minutes * AlarmTimes.MINUTE_MS);
+        JSObject result = new JSObject();
+        result.put("minutes", minutes);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void getPrewarmLead(PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("minutes", AlarmPrewarm.getLeadMs(getContext()) / AlarmTimes.MINUTE_MS);
+        call.resolve(result);
+    }
+
+    /**
+     * Alarm sound fade-in: curve ("linear", "exponential" or "s_curve"), startVolume and
+     * endVolume 0..1, durationMs
+     */
+    @PluginMethod
+    public void setVolumeRamp(PluginCall call) {
+        VolumeRamp current = AlarmService.getVolumeRamp(getContext());
+        try {
+            String curve = call.getString("curve", current.curve.name());
+            VolumeRamp ramp = new VolumeRamp(
+                VolumeRamp.Curve.valueOf(curve.toUpperCase(Locale.ROOT).replace('-', '_')),
+                call.getFloat("startVolume", current.startVolume),
+                call.getFloat("endVolume", current.endVolume),
+                call.getLong("durationMs", current.durationMs));
+            AlarmService.setVolumeRamp(getContext(), ramp);
+            call.resolve(volumeRampToJS(ramp));
+        } catch (IllegalArgumentException e) {
+            call.reject("Invalid volume ramp: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void getVolumeRamp(PluginCall call) {
+        call.resolve(volumeRampToJS(AlarmService.getVolumeRamp(getContext())));
+    }
+
+    private static JSObject volumeRampToJS(VolumeRamp ramp) {
+        JSObject result = new JSObject();
+        result.put("curve", ramp.curve.name().toLowerCase(Locale.ROOT));
+        result.put("startVolume", ramp.startVolume);
+        result.put("endVolume", ramp.endVolume);
+        result.put("durationMs", ramp.durationMs);
+        return result;
+    }
+
     @PluginMethod
     public void cancelAlarm(PluginCall call) {
         try {
@@ -368,7 +825,7 @@ public class AlarmServicePlugin extends Plugin {
             
             Log.d(TAG, "Cancelling alarm: " + alarmId);
 
-            // Remove alarm from SharedPreferences
+            // Remove alarm from the alarm store
             removeAlarmFromPrefs(alarmId);
 
             // Call our native AlarmService to cancel specific alarm
@@ -389,7 +846,7 @@ public class AlarmServicePlugin extends Plugin {
     public void getSoundCategories(PluginCall call) {
         try {
             Log.d(TAG, "Getting sound categories");
-            SoundManager sm = SoundManager.getInstance(getContext());
+            SoundManager sm = SoundManager.getInstance();
             List<String> categories = sm.getCategories();
 
             JSArray categoriesJS = new JSArray();
@@ -418,7 +875,7 @@ public class AlarmServicePlugin extends Plugin {
             }
 
             Log.d(TAG, "Getting sounds for category: " + category);
-            SoundManager sm = SoundManager.getInstance(getContext());
+            SoundManager sm = SoundManager.getInstance();
             List<Sound> sounds = sm.getSoundsForCategory(category);
 
             JSArray soundsJS = new JSArray();
@@ -426,6 +883,8 @@ public class AlarmServicePlugin extends Plugin {
                 JSObject soundObj = new JSObject();
                 soundObj.put("displayName", sound.getDisplayName());
                 soundObj.put("resourceName", sound.getResourceName());
+                soundObj.put("durationMs", sound.getDurationMs());
+                soundObj.put("gain", sound.getGain());
                 soundsJS.put(soundObj);
             }
 
@@ -440,6 +899,45 @@ public class AlarmServicePlugin extends Plugin {
         }
     }
 
+    @PluginMethod
+    public void searchSounds(PluginCall call) {
+        try {
+            String query = call.getString("query", "");
+            int offset = call.getInt("offset", 0);
+            int limit = call.getInt("limit", 20);
+            if (offset < 0 || limit < 1 || limit > 200) {
+                call.reject("offset must be >= 0 and limit between 1 and 200");
+                return;
+            }
+
+            long startedAt = System.nanoTime();
+            SoundSearchIndex.Page page = SoundManager.getInstance().search(query, offset, limit);
+            long searchMicros = (System.nanoTime() - startedAt) / 1000;
+
+            JSArray soundsJS = new JSArray();
+            for (SoundSearchIndex.Result result : page.results) {
+                JSObject soundObj = new JSObject();
+                soundObj.put("displayName", result.sound.getDisplayName());
+                soundObj.put("resourceName", result.sound.getResourceName());
+                soundObj.put("category", result.sound.getCategory());
+                soundObj.put("durationMs", result.sound.getDurationMs());
+                soundObj.put("gain", result.sound.getGain());
+                soundObj.put("score", result.score);
+                soundsJS.put(soundObj);
+            }
+
+            JSObject result = new JSObject();
+            result.put("sounds", soundsJS);
+            result.put("total", page.total);
+            result.put("offset", offset);
+            result.put("searchMicros", searchMicros);
+            call.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error searching sounds", e);
+            call.reject("Failed to search sounds: " + e.getMessage());
+        }
+    }
+
     @PluginMethod
     public void openSoundSelection(PluginCall call) {
         // Save the call to use it later when the activity returns a result
@@ -0,0 +1,167 @@
+package com.lightalarm.app;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.media.RingtoneManager;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.lightalarm.shared.PcmCache;
+
+import java.io.IOException;
+
+/**
+ * Alarm player prepared during the last minutes of the sunrise and handed to AlarmService.
+ *
+ * SunriseService calls prepare() while the light phase still has time to spare, so the data
+ * source is opened and the codec primed off the critical path with prepareAsync. At the sound
+ * trigger AlarmService takes the paused player and only has to call start(). The player lives
+ * in memory only; if the process died in between, or the preroll is for another alarm or is
+ * still preparing, take() returns null and AlarmService builds its player the old way. Sounds
+ * already in the PCM cache need no pre-roll at all; AlarmService streams those directly.
+ */
+public final class AlarmSoundPreroll {
+    private static final String TAG = "AlarmSoundPreroll";
+
+    private static final AlarmSoundPreroll INSTANCE = new AlarmSoundPreroll();
+
+    private MediaPlayer player;
+    private long alarmId = -1;
+    private String sound;
+    private boolean prepared = false;
+
+    private AlarmSoundPreroll() {
+    }
+
+    public static AlarmSoundPreroll getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Decoded alarm sounds, kept in device-protected storage so they play before the first unlock
+     */
+    public static PcmCache pcmCache(Context context) {
+        return PcmCache.getInstance(DirectBootStorage.of(context));
+    }
+
+    /**
+     * New looping alarm-stream player with the sound (or the system alarm tone) as data source
+     */
+    public static MediaPlayer createPlayer(Context context, String sound) throws IOException {
+        MediaPlayer mediaPlayer = new MediaPlayer();
+        mediaPlayer.setAudioStreamType(AudioManager.STREAM_ALARM);
+        mediaPlayer.setLooping(true);
+        Context appContext = context.getApplicationContext();
+        int resourceId = SoundManager.resolveResourceId(sound);
+        try {
+            if (resourceId != 0) {
+                mediaPlayer.setDataSource(appContext, Uri.parse("android.resource://" + context.getPackageName() + "/" + resourceId));
+            } else {
+                Log.w(TAG, "No raw resource for '" + sound + "', using the default alarm tone");
+                mediaPlayer.setDataSource(appContext, RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM));
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "❌ Failed to set data source for '" + sound + "', using the default alarm tone", e);
+            mediaPlayer.reset();
+            mediaPlayer.setAudioStreamType(AudioManager.STREAM_ALARM);
+            mediaPlayer.setLooping(true);
+            mediaPlayer.setDataSource(appContext, RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM));
+        }
+        return mediaPlayer;
+    }
+
+    /**
+     * Start preparing the player for an alarm; must be called on a thread with a Looper
+     */
+    public synchronized void prepare(Context context, long alarmId, String sound) {
+        if (player != null && this.alarmId == alarmId && equalsSound(sound)) {
+            return;
+        }
+        release();
+        PcmCache cache = pcmCache(context);
+        int resourceId = SoundManager.resolveResourceId(sound);
+        if (cache.isCached(resourceId)) {
+            Log.d(TAG, "🎼 '" + sound + "' is in the PCM cache, no pre-roll needed");
+            return;
+        }
+        // Decode in the background too, for the alarms after this one
+        cache.decodeAsync(resourceId);
+        final MediaPlayer mediaPlayer;
+        try {
+            mediaPlayer = createPlayer(context, sound);
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Pre-roll failed for alarm " + alarmId, e);
+            return;
+        }
+        player = mediaPlayer;
+        this.alarmId = alarmId;
+        this.sound = sound;
+        prepared = false;
+        final long startedAt = SystemClock.elapsedRealtime();
+        mediaPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+            @Override
+            public void onPrepared(MediaPlayer mp) {
+                synchronized (AlarmSoundPreroll.this) {
+                    if (player == mp) {
+                        prepared = true;
+                        Log.d(TAG, "🎵 Alarm sound pre-rolled in " + (SystemClock.elapsedRealtime() - startedAt) + " ms");
+                    }
+                }
+            }
+        });
+        mediaPlayer.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+            @Override
+            public boolean onError(MediaPlayer mp, int what, int extra) {
+                Log.e(TAG, "❌ Pre-roll player error " + what + "/" + extra);
+                synchronized (AlarmSoundPreroll.this) {
+                    if (player == mp) {
+                        release();
+                    }
+                }
+                return true;
+            }
+        });
+        mediaPlayer.prepareAsync();
+        Log.d(TAG, "⏳ Pre-rolling '" + sound + "' for alarm " + alarmId);
+    }
+
+    /**
+     * Hand over the prepared, paused player for this alarm, or null to fall back to a cold start.
+     * The caller owns the returned player.
+     */
+    public synchronized MediaPlayer take(long alarmId, String sound) {
+        if (player == null) {
+            return null;
+        }
+        if (!prepared || this.alarmId != alarmId || !equalsSound(sound)) {
+            Log.w(TAG, "⚠️ Pre-roll not usable (prepared=" + prepared + ", alarm " + this.alarmId + ")");
+            release();
+            return null;
+        }
+        MediaPlayer taken = player;
+        taken.setOnPreparedListener(null);
+        taken.setOnErrorListener(null);
+        player = null;
+        this.alarmId = -1;
+        this.sound = null;
+        prepared = false;
+        return taken;
+    }
+
+    public synchronized void release() {
+        if (player != null) {
+            player.release();
+            player = null;
+            Log.d(TAG, "🗑️ Pre-rolled player released");
+        }
+        alarmId = -1;
+        sound = null;
+        prepared = false;
+    }
+
+    private boolean equalsSound(String other) {
+        return sound == null ? other == null : sound.equals(other);
+    }
+}
@@ -0,0 +1,461 @@
+package com.lightalarm.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent alarm repository backed by an append-only binary log.
+ *
+ * Every change appends a single framed record ([length][op][payload][crc]) so add,
+ * remove and toggle cost one small write regardless of how many alarms are saved, and a
+ * bulk import is one frame and one fsync.
+ * The log is replayed into an id-keyed index on first use and compacted once dead
+ * records outnumber live ones. Replaces the saved_alarms JSON string in LightAlarmPrefs,
+ * which is migrated the first time the store is opened. Both live in device-protected storage
+ * (see DirectBootStorage).
+ */
+public class AlarmStore {
+    private static final String TAG = "AlarmStore";
+
+    static final String LOG_FILE_NAME = "alarms.log";
+    static final String PREFS_NAME = "LightAlarmPrefs";
+    static final String LEGACY_ALARMS_KEY = "saved_alarms";
+    // Where the legacy JSON is kept when some of it could not be migrated
+    static final String LEGACY_BACKUP_KEY = "saved_alarms_unmigrated";
+
+    private static final int MAGIC = 0x4C414C31; // "LAL1"
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_BATCH = 3;
+    private static final int MAX_RECORD_LENGTH = 8 * 1024 * 1024;
+    private static final int MIN_DEAD_RECORDS_FOR_COMPACTION = 64;
+
+    private static AlarmStore instance;
+
+    private final File logFile;
+    private final Map<String, AlarmRecord> index = new LinkedHashMap<>();
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(128);
+    private final CRC32 crc = new CRC32();
+    private FileOutputStream appendStream;
+    private int deadRecords = 0;
+    private int replayedOps = 0;
+    // Writes before open() would append frames to a log with no header
+    private boolean opened = false;
+
+    AlarmStore(File logFile) {
+        this.logFile = logFile;
+    }
+
+    public static synchronized AlarmStore getInstance(Context context) {
+        if (instance == null) {
+            // Device-protected, so a locked boot can still read the alarms
+            Context storageContext = DirectBootStorage.of(context);
+            AlarmStore store = new AlarmStore(new File(storageContext.getFilesDir(), LOG_FILE_NAME));
+            if (!isReadable(store.logFile.exists(), DirectBootStorage.isUserUnlocked(context))) {
+                // The alarms are still in credential storage; callers check DirectBootStorage.canReadAlarms
+                throw new IllegalStateException("Alarm log not readable before unlock");
+            }
+            store.open(storageContext);
+            instance = store;
+        }
+        return instance;
+    }
+
+    /**
+     * Before unlock only a log already in device-protected storage may be opened
+     */
+    static boolean isReadable(boolean logExists, boolean userUnlocked) {
+        return logExists || userUnlocked;
+    }
+
+    /**
+     * Replay the log, or start an empty one when none exists yet
+     */
+    synchronized void open() throws IOException {
+        if (logFile.exists()) {
+            load();
+        } else {
+            compact();
+        }
+        opened = true;
+    }
+
+    /**
+     * Replay the log, or migrate the legacy JSON prefs when no log exists yet
+     */
+    private synchronized void open(Context context) {
+        opened = true;
+        if (logFile.exists()) {
+            load();
+            return;
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String legacyJson = prefs.getString(LEGACY_ALARMS_KEY, null);
+        boolean complete = legacyJson == null || migrateLegacy(legacyJson);
+
+        try {
+            compact();
+            if (legacyJson != null) {
+                // Only drop the legacy key once the binary log is safely on disk, and keep a copy
+                // of it if anything in it could not be migrated
+                SharedPreferences.Editor editor = prefs.edit().remove(LEGACY_ALARMS_KEY);
+                if (!complete) {
+                    editor.putString(LEGACY_BACKUP_KEY, legacyJson);
+                }
+                editor.commit();
+                Log.d(TAG, complete
+                    ? "✅ Legacy alarm migration complete"
+                    : "⚠️ Legacy alarm migration incomplete, original kept as " + LEGACY_BACKUP_KEY);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to create alarm log", e);
+        }
+    }
+
+    /**
+     * Add every alarm of the legacy JSON to the index, skipping entries that do not parse;
+     * false if any were skipped
+     */
+    private boolean migrateLegacy(String legacyJson) {
+        JSONArray alarmsArray;
+        try {
+            alarmsArray = new JSONArray(legacyJson);
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Could not parse legacy alarms", e);
+            return false;
+        }
+        int skipped = 0;
+        for (int i = 0; i < alarmsArray.length(); i++) {
+            try {
+                AlarmRecord record = AlarmRecord.fromLegacyJson(alarmsArray.getJSONObject(i));
+                index.put(record.getId(), record);
+            } catch (Exception e) {
+                Log.w(TAG, "⚠️ Skipping legacy alarm " + i + " that does not parse", e);
+                skipped++;
+            }
+        }
+        Log.d(TAG, "📦 Migrating " + index.size() + " alarms from " + LEGACY_ALARMS_KEY
+            + (skipped > 0 ? ", " + skipped + " skipped" : ""));
+        return skipped == 0;
+    }
+
+    private void load() {
+        long validLength = 0;
+        int totalRecords = 0;
+        boolean badHeader = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            if (logFile.length() < 4 || in.readInt() != MAGIC) {
+                badHeader = true;
+                throw new IOException("Bad alarm log header");
+            }
+            validLength = 4;
+
+            byte[] buffer = new byte[256];
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException end) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    Log.w(TAG, "⚠️ Corrupt record length " + length + " at offset " + validLength);
+                    break;
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                int storedCrc;
+                try {
+                    in.readFully(buffer, 0, length);
+                    storedCrc = in.readInt();
+                } catch (EOFException torn) {
+                    Log.w(TAG, "⚠️ Torn record at end of alarm log, discarding");
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer, 0, length);
+                if ((int) crc.getValue() != storedCrc) {
+                    Log.w(TAG, "⚠️ Checksum mismatch at offset " + validLength + ", discarding tail");
+                    break;
+                }
+
+                applyRecord(new DataInputStream(new ByteArrayInputStream(buffer, 0, length)));
+                validLength += 8 + length;
+                totalRecords++;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to read alarm log", e);
+        }
+
+        if (badHeader) {
+            resetLog();
+            return;
+        }
+        deadRecords = Math.max(0, replayedOps - index.size());
+
+        // Drop any torn tail so later appends start on a record boundary
+        if (validLength > 0 && validLength < logFile.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to truncate alarm log", e);
+            }
+        }
+        Log.d(TAG, "📂 Loaded " + index.size() + " alarms (" + totalRecords + " log records)");
+    }
+
+    /**
+     * Move an unreadable log aside and start a fresh one, so later appends can be replayed again
+     */
+    private void resetLog() {
+        File backup = new File(logFile.getPath() + ".corrupt");
+        backup.delete();
+        if (!logFile.renameTo(backup)) {
+            Log.w(TAG, "⚠️ Could not keep unreadable alarm log as " + backup.getName());
+        }
+        index.clear();
+        replayedOps = 0;
+        try {
+            compact();
+            Log.w(TAG, "⚠️ Alarm log had a bad header, started a fresh one");
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to reset alarm log", e);
+        }
+    }
+
+    private void applyRecord(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        if (op == OP_BATCH) {
+            // A batch shares one frame and checksum, so it replays all-or-nothing
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                applyRecord(in);
+            }
+            return;
+        }
+        replayedOps++;
+        if (op == OP_PUT) {
+            AlarmRecord record = AlarmRecord.readFrom(in);
+            index.put(record.getId(), record);
+        } else if (op == OP_DELETE) {
+            index.remove(in.readUTF());
+        } else {
+            throw new IOException("Unknown alarm log op " + op);
+        }
+    }
+
+    public synchronized List<AlarmRecord> getAll() {
+        return new ArrayList<>(index.values());
+    }
+
+    public synchronized AlarmRecord get(String alarmId) {
+        return index.get(alarmId);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Insert or replace an alarm. A replaced alarm keeps its position so replay yields the same order.
+     */
+    public synchronized void put(AlarmRecord record) throws IOException {
+        checkOpen();
+        // Log first, so a failed write leaves the index as it was
+        appendPut(record);
+        if (index.put(record.getId(), record) != null) {
+            deadRecords++;
+        }
+        maybeCompact();
+    }
+
+    public synchronized boolean remove(String alarmId) throws IOException {
+        checkOpen();
+        if (!index.containsKey(alarmId)) {
+            return false;
+        }
+        appendDelete(alarmId);
+        index.remove(alarmId);
+        // The delete marker and the put it shadows are both dead once compacted
+        deadRecords += 2;
+        maybeCompact();
+        return true;
+    }
+
+    /**
+     * Insert or replace several alarms and remove others as one atomic log record with a
+     * single fsync, however many alarms are involved
+     */
+    public synchronized void applyBatch(List<AlarmRecord> puts, List<String> removals) throws IOException {
+        checkOpen();
+        if (puts.isEmpty() && removals.isEmpty()) {
+            return;
+        }
+        scratch.reset();
+        DataOutputStream payload = new DataOutputStream(scratch);
+        payload.writeByte(OP_BATCH);
+        payload.writeInt(puts.size() + removals.size());
+        for (AlarmRecord record : puts) {
+            payload.writeByte(OP_PUT);
+            record.writeTo(payload);
+        }
+        for (String alarmId : removals) {
+            payload.writeByte(OP_DELETE);
+            payload.writeUTF(alarmId);
+        }
+        appendFrame();
+
+        // Applied in the same order as a replay would
+        for (AlarmRecord record : puts) {
+            if (index.put(record.getId(), record) != null) {
+                deadRecords++;
+            }
+        }
+        for (String alarmId : removals) {
+            // Deleting an unknown id replays as a no-op, so it is only counted as dead weight
+            deadRecords += index.remove(alarmId) != null ? 2 : 1;
+        }
+        maybeCompact();
+    }
+
+    /**
+     * Flip the enabled flag of one alarm; returns the updated record or null if unknown
+     */
+    public synchronized AlarmRecord setEnabled(String alarmId, boolean enabled) throws IOException {
+        checkOpen();
+        AlarmRecord current = index.get(alarmId);
+        if (current == null) {
+            return null;
+        }
+        AlarmRecord updated = current.withEnabled(enabled);
+        if (updated != current) {
+            appendPut(updated);
+            index.put(alarmId, updated);
+            deadRecords++;
+            maybeCompact();
+        }
+        return updated;
+    }
+
+    private void checkOpen() {
+        if (!opened) {
+            throw new IllegalStateException("Alarm log " + logFile.getName() + " was never opened");
+        }
+    }
+
+    private void appendPut(AlarmRecord record) throws IOException {
+        scratch.reset();
+        DataOutputStream payload = new DataOutputStream(scratch);
+        payload.writeByte(OP_PUT);
+        record.writeTo(payload);
+        appendFrame();
+    }
+
+    private void appendDelete(String alarmId) throws IOException {
+        scratch.reset();
+        DataOutputStream payload = new DataOutputStream(scratch);
+        payload.writeByte(OP_DELETE);
+        payload.writeUTF(alarmId);
+        appendFrame();
+    }
+
+    private void appendFrame() throws IOException {
+        if (appendStream == null) {
+            appendStream = new FileOutputStream(logFile, true);
+        }
+        long start = appendStream.getChannel().size();
+        try {
+            writeFrame(new DataOutputStream(appendStream), scratch);
+            appendStream.flush();
+            appendStream.getFD().sync();
+        } catch (IOException e) {
+            // Cut off any partial frame so the next append does not land behind it
+            try {
+                appendStream.getChannel().truncate(start);
+            } catch (IOException truncateFailure) {
+                Log.e(TAG, "❌ Failed to drop partial alarm log record", truncateFailure);
+            }
+            throw e;
+        }
+    }
+
+    private void writeFrame(DataOutputStream out, ByteArrayOutputStream frame) throws IOException {
+        byte[] bytes = frame.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private void maybeCompact() {
+        if (deadRecords >= MIN_DEAD_RECORDS_FOR_COMPACTION && deadRecords > index.size()) {
+            try {
+                compact();
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Alarm log compaction failed", e);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the log with one put per live alarm, then atomically swap it in
+     */
+    private void compact() throws IOException {
+        closeAppendStream();
+        File tmpFile = new File(logFile.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmpFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            ByteArrayOutputStream frame = new ByteArrayOutputStream(128);
+            DataOutputStream payload = new DataOutputStream(frame);
+            for (AlarmRecord record : index.values()) {
+                frame.reset();
+                payload.writeByte(OP_PUT);
+                record.writeTo(payload);
+                writeFrame(out, frame);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!tmpFile.renameTo(logFile)) {
+            throw new IOException("Could not replace " + logFile);
+        }
+        deadRecords = 0;
+        Log.d(TAG, "🗜️ Alarm log compacted to " + index.size() + " records");
+    }
+
+    private void closeAppendStream() {
+        if (appendStream != null) {
+            try {
+                appendStream.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close alarm log", e);
+            }
+            appendStream = null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.lightalarm.app;
+
+import java.util.TimeZone;
+
+/**
+ * Allocation-free wall-clock arithmetic for alarm trigger times.
+ *
+ * Works on epoch milliseconds and epoch days with TimeZone offsets instead of building a
+ * java.util.Calendar per alarm. Local times that fall into a DST gap are pushed forward by
+ * the gap and ambiguous times resolve to standard time, matching the lenient Calendar code
+ * this replaces.
+ */
+public final class AlarmTimes {
+    public static final long MINUTE_MS = 60 * 1000L;
+    public static final long HOUR_MS = 60 * MINUTE_MS;
+    public static final long DAY_MS = 24 * HOUR_MS;
+
+    /** The light phase starts this long before the sound alarm */
+    public static final long LIGHT_LEAD_MS = 20 * MINUTE_MS;
+
+    private AlarmTimes() {
+    }
+
+    /**
+     * Convert a 12-hour clock value from the JS side to 0-23
+     */
+    public static int to24Hour(int hour, String amPm) {
+        if ("PM".equals(amPm) && hour != 12) {
+            return hour + 12;
+        } else if ("AM".equals(amPm) && hour == 12) {
+            return 0;
+        }
+        return hour;
+    }
+
+    public static int minuteOfDay(int hour24, int minute) {
+        return hour24 * 60 + minute;
+    }
+
+    /**
+     * Days since 1970-01-01 in the given zone at the given instant
+     */
+    public static long localEpochDay(long utcMillis, TimeZone zone) {
+        return Math.floorDiv(utcMillis + zone.getOffset(utcMillis), DAY_MS);
+    }
+
+    /**
+     * Instant at which the wall clock in the zone reads the given local millis
+     */
+    public static long localToUtc(long localMillis, TimeZone zone) {
+        int offset = zone.getOffset(localMillis - zone.getRawOffset());
+        long utc = localMillis - offset;
+        int actual = zone.getOffset(utc);
+        if (actual != offset) {
+            // The guess straddled a transition: re-resolve with the real offset, and if that is
+            // not self-consistent either the wall time is in a gap, so shift it forward by
+            // resolving with the earlier (smaller) offset
+            utc = zone.getOffset(localMillis - actual) == actual
+                ? localMillis - actual
+                : localMillis - Math.min(offset, actual);
+        }
+        return utc;
+    }
+
+    /**
+     * Instant of the given minute-of-day on the given local epoch day
+     */
+    public static long atMinuteOfDay(long epochDay, int minuteOfDay, TimeZone zone) {
+        return localToUtc(epochDay * DAY_MS + minuteOfDay * MINUTE_MS, zone);
+    }
+
+    /**
+     * Next instant strictly after now at which the wall clock reads hour24:minute (today or tomorrow)
+     */
+    public static long nextDailyTrigger(int minuteOfDay, long nowMillis, TimeZone zone) {
+        long today = localEpochDay(nowMillis, zone);
+        long trigger = atMinuteOfDay(today, minuteOfDay, zone);
+        if (trigger <= nowMillis) {
+            trigger = atMinuteOfDay(today + 1, minuteOfDay, zone);
+        }
+        return trigger;
+    }
+}
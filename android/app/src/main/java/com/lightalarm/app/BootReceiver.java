@@ -3,52 +3,107 @@ package com.lightalarm.app;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.os.SystemClock;
 import android.util.Log;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Re-arms saved alarms after a reboot, off the main thread.
+ *
+ * Runs on LOCKED_BOOT_COMPLETED from device-protected storage and again on BOOT_COMPLETED, which
+ * is skipped when the locked pass already restored everything. Alarms are registered in order of
+ * their next trigger, so an imminent alarm never waits behind the rest, and the warm-up is moved
+ * once at the end.
+ */
 public class BootReceiver extends BroadcastReceiver {
     private static final String TAG = "BootReceiver";
-    private static final String PREFS_NAME = "LightAlarmPrefs";
-    private static final String ALARMS_KEY = "saved_alarms";
-    
+
+    private static final ExecutorService BOOT_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static volatile boolean restoredThisBoot = false;
+
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
-            Log.d(TAG, "Boot completed, checking for scheduled alarms");
-            
+        String action = intent.getAction();
+        boolean locked = Intent.ACTION_LOCKED_BOOT_COMPLETED.equals(action);
+        if (!locked && !Intent.ACTION_BOOT_COMPLETED.equals(action)
+                && !"android.intent.action.QUICKBOOT_POWERON".equals(action)) {
+            return;
+        }
+        if (restoredThisBoot) {
+            Log.d(TAG, "Alarms already restored during locked boot, nothing to do for " + action);
+            return;
+        }
+        Log.d(TAG, "Boot completed (" + action + "), restoring alarms in the background");
+
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+        BOOT_EXECUTOR.execute(() -> {
             try {
-                // Get saved alarms from SharedPreferences
-                SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-                String alarmsJson = prefs.getString(ALARMS_KEY, "[]");
-                JSONArray alarmsArray = new JSONArray(alarmsJson);
-                
-                if (alarmsArray.length() > 0) {
-                    Log.d(TAG, "Rescheduling " + alarmsArray.length() + " alarms after boot");
-                    
-                    // Reschedule each saved alarm
-                    for (int i = 0; i < alarmsArray.length(); i++) {
-                        JSONObject alarmJson = alarmsArray.getJSONObject(i);
-                        if (alarmJson.getBoolean("enabled")) {
-                            long alarmId = Long.parseLong(alarmJson.getString("id"));
-                            int hour = alarmJson.getInt("hour");
-                            int minute = alarmJson.getInt("minute");
-                            String amPm = alarmJson.getString("amPm");
-                            String soundResourceName = alarmJson.getString("soundResourceName");
-                            String theme = alarmJson.getString("theme");
-                            
-                            Log.d(TAG, "Rescheduling alarm ID: " + alarmId + " at " + hour + ":" + minute + " " + amPm);
-                            AlarmService.scheduleAlarm(context, alarmId, hour, minute, amPm, soundResourceName, theme);
-                        }
-                    }
-                } else {
-                    Log.d(TAG, "No alarms to reschedule");
-                }
+                restore(appContext, locked);
             } catch (Exception e) {
                 Log.e(TAG, "Error rescheduling alarms after boot", e);
+            } finally {
+                result.finish();
             }
+        });
+    }
+
+    private static void restore(Context context, boolean locked) {
+        long started = SystemClock.elapsedRealtime();
+        if (locked && !DirectBootStorage.hasAlarmData(context)) {
+            // Alarms not yet migrated out of credential storage; BOOT_COMPLETED will handle them
+            Log.d(TAG, "No device-protected alarms yet, waiting for unlock");
+            return;
+        }
+
+        // Replays the alarm log on this thread rather than the main one
+        AlarmCache.Snapshot cache = AlarmCache.getInstance(context).snapshot();
+        if (ChainedAlarmScheduler.isEnabled(context)) {
+            // One rebuild arms the earliest trigger across all alarms
+            Log.d(TAG, "Rebuilding alarm chain after boot");
+            ChainedAlarmScheduler.rebuild(context);
+            finish(locked, started, cache.size(), 1);
+            return;
+        }
+
+        // Enabled alarms in order of their next trigger
+        NextAlarmEngine engine = NextAlarmEngine.getInstance(context);
+        int count = engine.size();
+        if (count == 0) {
+            Log.d(TAG, "No alarms to reschedule");
+            finish(locked, started, 0, 0);
+            return;
         }
+        long[] times = new long[count];
+        long[] ids = new long[count];
+        count = engine.nextOccurrences(count, times, ids);
+        Log.d(TAG, "Rescheduling " + count + " alarms after boot, soonest at " + new java.util.Date(times[0]));
+
+        for (int i = 0; i < count; i++) {
+            try {
+                register(context, cache, ids[i]);
+            } catch (Exception e) {
+                Log.e(TAG, "Error rescheduling alarm " + ids[i], e);
+            }
+        }
+        // Once for the whole batch rather than after every registration
+        AlarmPrewarm.reschedule(context);
+        finish(locked, started, cache.size(), count);
     }
-}
 
+    private static void register(Context context, AlarmCache.Snapshot cache, long alarmId) {
+        AlarmRecord alarm = cache.get(String.valueOf(alarmId));
+        if (alarm != null && alarm.isEnabled()) {
+            AlarmService.registerAlarm(context, alarm);
+        }
+    }
+
+    private static void finish(boolean locked, long started, int saved, int registered) {
+        restoredThisBoot = locked;
+        Log.d(TAG, "⏱️ Boot restore took " + (SystemClock.elapsedRealtime() - started) + " ms: "
+            + registered + " registrations for " + saved + " saved alarms"
+            + (locked ? " (before unlock)" : ""));
+    }
+}
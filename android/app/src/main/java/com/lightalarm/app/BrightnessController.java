@@ -0,0 +1,110 @@
+package com.lightalarm.app;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Routes sunrise brightness to the cheapest sink available.
+ *
+ * SunriseService owns the sunrise and its position on the curve (start time on the
+ * elapsedRealtime clock). While MainActivity is visible it attaches a window sink that follows
+ * the same curve every frame through WindowManager.LayoutParams.screenBrightness, and the
+ * service stops writing the global setting. When the window goes away the service is poked to
+ * write the current level at once, so neither handoff loses the curve position.
+ */
+public final class BrightnessController {
+    private static final String TAG = "BrightnessController";
+
+    /**
+     * Something that can show the sunrise brightness
+     */
+    public interface Sink {
+        /** Start following the curve from the given sunrise start (elapsedRealtime) */
+        void start(SunriseCurve curve, long startElapsed);
+
+        /** Stop and hand the screen back to the system brightness */
+        void stop();
+    }
+
+    private static final BrightnessController INSTANCE = new BrightnessController();
+
+    private SunriseCurve curve;
+    private long startElapsed;
+    private Runnable onHeadless;
+    private Sink windowSink;
+
+    private BrightnessController() {
+    }
+
+    public static BrightnessController getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Called by SunriseService when a sunrise starts; onHeadless runs whenever the window sink
+     * goes away mid-sunrise and the global setting has to take over again
+     */
+    public synchronized void startSunrise(SunriseCurve curve, long startElapsed, Runnable onHeadless) {
+        this.curve = curve;
+        this.startElapsed = startElapsed;
+        this.onHeadless = onHeadless;
+        if (windowSink != null) {
+            windowSink.start(curve, startElapsed);
+            Log.d(TAG, "🪟 Sunrise started with the window sink attached");
+        }
+    }
+
+    public synchronized void stopSunrise() {
+        curve = null;
+        onHeadless = null;
+        if (windowSink != null) {
+            windowSink.stop();
+        }
+    }
+
+    public synchronized boolean isSunriseActive() {
+        return curve != null;
+    }
+
+    /**
+     * True while a visible window is applying the brightness, so Settings writes can be skipped
+     */
+    public synchronized boolean isWindowDriven() {
+        return curve != null && windowSink != null;
+    }
+
+    /**
+     * Milliseconds into the current sunrise, or -1 when none is running
+     */
+    public synchronized long elapsed() {
+        return curve != null ? SystemClock.elapsedRealtime() - startElapsed : -1;
+    }
+
+    public synchronized void attachWindow(Sink sink) {
+        if (windowSink != null && windowSink != sink) {
+            windowSink.stop();
+        }
+        windowSink = sink;
+        if (curve != null) {
+            sink.start(curve, startElapsed);
+            Log.d(TAG, "🪟 Window sink took over the sunrise at " + elapsed() + " ms");
+        }
+    }
+
+    public void detachWindow(Sink sink) {
+        Runnable resume;
+        synchronized (this) {
+            if (windowSink != sink) {
+                return;
+            }
+            windowSink = null;
+            resume = curve != null ? onHeadless : null;
+        }
+        if (resume != null) {
+            // Bring the global setting up to the current level before the window override drops
+            Log.d(TAG, "⚙️ Window gone, Settings sink resumes the sunrise");
+            resume.run();
+        }
+        sink.stop();
+    }
+}
@@ -0,0 +1,198 @@
+package com.lightalarm.app;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.TimeZone;
+
+/**
+ * Chained scheduling mode: one AlarmManager slot holding only the earliest pending trigger.
+ *
+ * Instead of two exact alarms per saved alarm, AlarmChain keeps the queue in memory and this
+ * class arms its head through a single PendingIntent. AlarmReceiver acknowledges each delivery
+ * here, which arms the next trigger. The mode is off by default and toggled from JS.
+ */
+public final class ChainedAlarmScheduler {
+    private static final String TAG = "ChainedAlarmScheduler";
+
+    private static final String PREFS_NAME = "LightAlarmPrefs";
+    private static final String MODE_KEY = "chained_scheduling";
+    private static final String CURSOR_TIME_KEY = "chain_cursor_time";
+    private static final String CURSOR_KEY_KEY = "chain_cursor_key";
+
+    public static final String ACTION_NEXT_ALARM = "com.lightalarm.app.NEXT_ALARM";
+    public static final String EXTRA_CHAINED = "chained";
+    public static final String EXTRA_TRIGGER_AT = "trigger_at";
+
+    // Distinct action from the per-alarm intents, so this slot can never alias one of them
+    private static final int REQUEST_CODE = 100;
+
+    private static volatile AlarmChain instance;
+
+    private ChainedAlarmScheduler() {
+    }
+
+    public static boolean isEnabled(Context context) {
+        return prefs(context).getBoolean(MODE_KEY, false);
+    }
+
+    /**
+     * Switch modes, moving every enabled alarm from the old registrations to the new ones
+     */
+    public static void setEnabled(Context context, boolean enabled) {
+        if (isEnabled(context) == enabled) {
+            return;
+        }
+        AlarmCache cache = AlarmCache.getInstance(context);
+        if (enabled) {
+            for (AlarmRecord alarm : cache.getAll()) {
+                AlarmService.cancelAlarm(context, Long.parseLong(alarm.getId()));
+            }
+            prefs(context).edit().putBoolean(MODE_KEY, true).commit();
+            get(context).rebuild(cache.getAll(), System.currentTimeMillis());
+        } else {
+            prefs(context).edit().putBoolean(MODE_KEY, false).commit();
+            synchronized (ChainedAlarmScheduler.class) {
+                if (instance != null) {
+                    instance.rebuild(Collections.<AlarmRecord>emptyList(), System.currentTimeMillis());
+                    instance = null;
+                } else {
+                    new AlarmManagerSink(context.getApplicationContext()).disarm();
+                }
+            }
+            for (AlarmRecord alarm : cache.getAll()) {
+                if (alarm.isEnabled()) {
+                    AlarmService.scheduleAlarm(context, alarm);
+                }
+            }
+        }
+        Log.d(TAG, "🔗 Chained scheduling " + (enabled ? "enabled" : "disabled"));
+    }
+
+    /**
+     * Queue an alarm's next Recurrence occurrence in the chain; returns its sound trigger time
+     */
+    public static long schedule(Context context, long alarmId, int rule) {
+        long soundAt = get(context).schedule(alarmId, rule, System.currentTimeMillis());
+        Log.d(TAG, "🔗 Alarm " + alarmId + " queued, sound at " + new java.util.Date(soundAt));
+        return soundAt;
+    }
+
+    public static void cancel(Context context, long alarmId) {
+        get(context).cancel(alarmId);
+        Log.d(TAG, "🔗 Alarm " + alarmId + " removed from chain");
+    }
+
+    /**
+     * Rebuild the queue from the saved alarms, e.g. after boot when the slot has been cleared
+     */
+    public static void rebuild(Context context) {
+        get(context).rebuild(AlarmCache.getInstance(context).getAll(), System.currentTimeMillis());
+        AlarmPrewarm.reschedule(context);
+    }
+
+    /**
+     * Move queued triggers after a clock or zone change; returns how many alarms moved
+     */
+    public static int onClockChanged(Context context, TimeZone zone) {
+        AlarmChain chain = get(context);
+        int moved = chain.onClockChanged(zone, System.currentTimeMillis());
+        prefs(context).edit()
+            .putLong(CURSOR_TIME_KEY, chain.getCursorTime())
+            .putLong(CURSOR_KEY_KEY, chain.getCursorKey())
+            .commit();
+        return moved;
+    }
+
+    /**
+     * Acknowledge a chained delivery from AlarmReceiver; false means the trigger is stale
+     */
+    public static boolean onFired(Context context, Intent intent) {
+        long alarmId = intent.getLongExtra("alarm_id", -1);
+        int phase = "light".equals(intent.getStringExtra("alarm_type")) ? AlarmChain.PHASE_LIGHT : AlarmChain.PHASE_SOUND;
+        long triggerAt = intent.getLongExtra(EXTRA_TRIGGER_AT, -1);
+
+        AlarmChain chain = get(context);
+        boolean accepted = chain.onFired(alarmId, phase, triggerAt);
+        if (accepted) {
+            // Commit synchronously: a rebuild after a process kill must not replay this trigger
+            prefs(context).edit()
+                .putLong(CURSOR_TIME_KEY, chain.getCursorTime())
+                .putLong(CURSOR_KEY_KEY, chain.getCursorKey())
+                .commit();
+        }
+        Log.d(TAG, (accepted ? "✅ Chained trigger accepted: " : "⚠️ Stale chained trigger ignored: ")
+            + alarmId + " phase " + phase + " at " + triggerAt);
+        return accepted;
+    }
+
+    private static AlarmChain get(Context context) {
+        AlarmChain chain = instance;
+        if (chain == null) {
+            synchronized (ChainedAlarmScheduler.class) {
+                chain = instance;
+                if (chain == null) {
+                    Context appContext = context.getApplicationContext();
+                    SharedPreferences prefs = prefs(appContext);
+                    chain = new AlarmChain(new AlarmManagerSink(appContext), TimeZone.getDefault(),
+                        prefs.getLong(CURSOR_TIME_KEY, 0L), prefs.getLong(CURSOR_KEY_KEY, 0L));
+                    chain.rebuild(AlarmCache.getInstance(appContext).getAll(), System.currentTimeMillis());
+                    instance = chain;
+                    Log.d(TAG, "🔗 Alarm chain built with " + chain.size() + " pending triggers");
+                }
+            }
+        }
+        return chain;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        // Device-protected so the cursor and mode survive into a locked boot
+        return DirectBootStorage.of(context).getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static final class AlarmManagerSink implements AlarmChain.Sink {
+        private final Context context;
+
+        AlarmManagerSink(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public void arm(long triggerAt, long alarmId, int phase) {
+            String type = phase == AlarmChain.PHASE_LIGHT ? "light" : "sound";
+            Intent intent = new Intent(context, AlarmReceiver.class);
+            intent.setAction(ACTION_NEXT_ALARM);
+            intent.putExtra("alarm_type", type);
+            intent.putExtra("alarm_id", alarmId);
+            intent.putExtra(EXTRA_TRIGGER_AT, triggerAt);
+            intent.putExtra(EXTRA_CHAINED, true);
+
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent(intent));
+            Log.d(TAG, "⏰ Armed " + type + " trigger for alarm " + alarmId + " at " + new java.util.Date(triggerAt));
+        }
+
+        @Override
+        public void disarm() {
+            Intent intent = new Intent(context, AlarmReceiver.class);
+            intent.setAction(ACTION_NEXT_ALARM);
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarmManager.cancel(pendingIntent(intent));
+            Log.d(TAG, "🚫 Chained alarm slot cleared");
+        }
+
+        private PendingIntent pendingIntent(Intent intent) {
+            return PendingIntent.getBroadcast(
+                context,
+                REQUEST_CODE,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+            );
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.lightalarm.app;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.UserManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Device-protected home for the alarm log and LightAlarmPrefs, so alarms can be re-armed on
+ * LOCKED_BOOT_COMPLETED before the user unlocks.
+ *
+ * Older installs keep both in credential-protected storage; they are moved across the first time
+ * the store is opened while the user is unlocked. Until then a locked boot finds nothing here and
+ * restoration waits for BOOT_COMPLETED. If the move fails, the process keeps using credential
+ * storage, so nothing is created here that would shadow the alarms still waiting to move, and the
+ * next process tries again.
+ */
+final class DirectBootStorage {
+    private static final String TAG = "DirectBootStorage";
+
+    // One attempt per process, so files are never moved from under an open store
+    private static volatile boolean migrationTried = false;
+    private static volatile boolean migrated = false;
+
+    private DirectBootStorage() {
+    }
+
+    /**
+     * Context whose files and prefs live in device-protected storage (the app context before N,
+     * or after a failed move)
+     */
+    static Context of(Context context) {
+        Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return appContext;
+        }
+        Context deviceContext = appContext.createDeviceProtectedStorageContext();
+        if (!migrationTried && isUserUnlocked(appContext)) {
+            migrate(appContext, deviceContext);
+        }
+        return migrationTried && !migrated ? appContext : deviceContext;
+    }
+
+    static boolean isUserUnlocked(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return true;
+        }
+        UserManager userManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
+        return userManager == null || userManager.isUserUnlocked();
+    }
+
+    /**
+     * Whether alarms have been saved where a locked boot can read them
+     */
+    static boolean hasAlarmData(Context context) {
+        Context deviceContext = of(context);
+        return new File(deviceContext.getFilesDir(), AlarmStore.LOG_FILE_NAME).exists();
+    }
+
+    /**
+     * Whether the alarm store can be opened now. Before unlock that needs a device-protected log;
+     * without one the alarms are still in credential storage, and opening an empty store in their
+     * place would hide them for the life of the process.
+     */
+    static boolean canReadAlarms(Context context) {
+        return isUserUnlocked(context) || hasAlarmData(context);
+    }
+
+    private static synchronized void migrate(Context appContext, Context deviceContext) {
+        if (migrationTried) {
+            return;
+        }
+        // The prefs go first: if they cannot move, nothing has, and credential storage stays whole
+        if (!deviceContext.moveSharedPreferencesFrom(appContext, AlarmStore.PREFS_NAME)) {
+            Log.w(TAG, "⚠️ Could not move " + AlarmStore.PREFS_NAME + " to device-protected storage,"
+                + " staying in credential storage until the next start");
+            migrationTried = true;
+            return;
+        }
+        File source = new File(appContext.getFilesDir(), AlarmStore.LOG_FILE_NAME);
+        File target = new File(deviceContext.getFilesDir(), AlarmStore.LOG_FILE_NAME);
+        try {
+            if (source.exists() && !target.exists()) {
+                moveFile(source, target);
+                Log.d(TAG, "📦 Moved " + AlarmStore.LOG_FILE_NAME + " to device-protected storage");
+            }
+            migrated = true;
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Alarm log migration failed, staying in credential storage until the next start", e);
+            // Put the prefs back so the log and the prefs stay together
+            if (!appContext.moveSharedPreferencesFrom(deviceContext, AlarmStore.PREFS_NAME)) {
+                Log.e(TAG, "❌ Could not move " + AlarmStore.PREFS_NAME + " back to credential storage");
+            }
+        }
+        migrationTried = true;
+    }
+
+    private static void moveFile(File source, File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        if (source.renameTo(target)) {
+            return;
+        }
+        // Credential and device storage may sit on different mounts; copy, sync, then swap in
+        File tmp = new File(target.getPath() + ".tmp");
+        try (InputStream in = new FileInputStream(source); FileOutputStream out = new FileOutputStream(tmp)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + target);
+        }
+        source.delete();
+    }
+}
@@ -0,0 +1,280 @@
+package com.lightalarm.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * How late each alarm firing reaches every stage, relative to its scheduled trigger time.
+ *
+ * Stages are stamped as the firing moves from AlarmReceiver through the service and
+ * MainActivity to the alarmFired JS event. The last RING_SIZE firings are kept in fixed arrays,
+ * and every stamp also lands in a per-stage log-linear histogram (HDR style: 8 sub-buckets per
+ * power of two, so values are within 12.5%). A stamp is a few array writes; the state is saved
+ * to a small file on a background thread because firings usually start in a fresh process.
+ */
+public final class FireLatencyRecorder {
+    private static final String TAG = "FireLatencyRecorder";
+
+    public static final int STAGE_RECEIVER = 0;
+    public static final int STAGE_SERVICE = 1;
+    public static final int STAGE_ACTIVITY = 2;
+    public static final int STAGE_JS_EVENT = 3;
+    static final int STAGE_COUNT = 4;
+    static final String[] STAGE_NAMES = { "receiver", "service", "activity", "jsEvent" };
+
+    static final String FILE_NAME = "fire_latency.bin";
+    static final int RING_SIZE = 64;
+    static final long NOT_STAMPED = -1;
+
+    private static final int MAGIC = 0x464C5431; // "FLT1"
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_MAGNITUDE = 25; // clamps at about 18 hours
+    static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BITS + 2) * SUB_COUNT;
+    private static final long MAX_TRACKED_MS = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    private static FireLatencyRecorder instance;
+
+    private final File file;
+    private final ExecutorService writer;
+
+    // Ring of recent firings, identified by alarm id and scheduled trigger time
+    private final long[] ringAlarmIds = new long[RING_SIZE];
+    private final long[] ringScheduledAt = new long[RING_SIZE];
+    private final long[] ringDelays = new long[RING_SIZE * STAGE_COUNT];
+    private int ringHead = 0;
+    private int ringSize = 0;
+
+    private final int[][] buckets = new int[STAGE_COUNT][BUCKET_COUNT];
+    private final long[] counts = new long[STAGE_COUNT];
+    private final long[] maxDelays = new long[STAGE_COUNT];
+
+    FireLatencyRecorder(File file) {
+        this.file = file;
+        this.writer = file != null ? Executors.newSingleThreadExecutor() : null;
+        Arrays.fill(ringDelays, NOT_STAMPED);
+        if (file != null && file.exists()) {
+            load();
+        }
+    }
+
+    public static synchronized FireLatencyRecorder getInstance(Context context) {
+        if (instance == null) {
+            instance = new FireLatencyRecorder(new File(DirectBootStorage.of(context).getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Stamp a stage of the firing scheduled for scheduledAt. Ignored without a scheduled time or
+     * when the stage was already stamped for this firing (e.g. a second launch intent).
+     */
+    public static void stamp(Context context, int stage, long alarmId, long scheduledAt) {
+        if (scheduledAt <= 0) {
+            return;
+        }
+        long delay = getInstance(context).record(stage, alarmId, scheduledAt, System.currentTimeMillis());
+        if (delay != NOT_STAMPED) {
+            Log.d(TAG, "⏱️ Alarm " + alarmId + " " + STAGE_NAMES[stage] + " +" + delay + " ms after trigger");
+        }
+    }
+
+    /**
+     * Record one stage; returns the recorded delay in ms or NOT_STAMPED if it was a duplicate
+     */
+    synchronized long record(int stage, long alarmId, long scheduledAt, long nowMillis) {
+        int slot = findFiring(alarmId, scheduledAt);
+        if (slot < 0) {
+            slot = ringHead;
+            ringHead = (ringHead + 1) % RING_SIZE;
+            ringSize = Math.min(ringSize + 1, RING_SIZE);
+            ringAlarmIds[slot] = alarmId;
+            ringScheduledAt[slot] = scheduledAt;
+            Arrays.fill(ringDelays, slot * STAGE_COUNT, (slot + 1) * STAGE_COUNT, NOT_STAMPED);
+        } else if (ringDelays[slot * STAGE_COUNT + stage] != NOT_STAMPED) {
+            return NOT_STAMPED;
+        }
+
+        // Deliveries are never early, but a clock change in between can make it look that way
+        long delay = Math.max(0, nowMillis - scheduledAt);
+        ringDelays[slot * STAGE_COUNT + stage] = delay;
+        buckets[stage][bucketOf(delay)]++;
+        counts[stage]++;
+        maxDelays[stage] = Math.max(maxDelays[stage], delay);
+        save();
+        return delay;
+    }
+
+    synchronized long count(int stage) {
+        return counts[stage];
+    }
+
+    synchronized long max(int stage) {
+        return maxDelays[stage];
+    }
+
+    /**
+     * Delay at the given percentile (0-100) for a stage, as the top of its bucket; 0 if empty
+     */
+    synchronized long percentile(int stage, double percentile) {
+        if (counts[stage] == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(counts[stage] * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets[stage][bucket];
+            if (seen >= rank) {
+                return Math.min(highestInBucket(bucket), maxDelays[stage]);
+            }
+        }
+        return maxDelays[stage];
+    }
+
+    synchronized int recentCount() {
+        return ringSize;
+    }
+
+    /**
+     * The i-th most recent firing: its alarm id, scheduled time and per-stage delays
+     */
+    synchronized long[] recent(int i) {
+        int slot = Math.floorMod(ringHead - 1 - i, RING_SIZE);
+        long[] firing = new long[2 + STAGE_COUNT];
+        firing[0] = ringAlarmIds[slot];
+        firing[1] = ringScheduledAt[slot];
+        System.arraycopy(ringDelays, slot * STAGE_COUNT, firing, 2, STAGE_COUNT);
+        return firing;
+    }
+
+    synchronized void reset() {
+        clear();
+        save();
+    }
+
+    private void clear() {
+        ringHead = 0;
+        ringSize = 0;
+        Arrays.fill(ringDelays, NOT_STAMPED);
+        for (int[] stageBuckets : buckets) {
+            Arrays.fill(stageBuckets, 0);
+        }
+        Arrays.fill(counts, 0);
+        Arrays.fill(maxDelays, 0);
+    }
+
+    static int bucketOf(long value) {
+        long clamped = Math.min(value, MAX_TRACKED_MS);
+        if (clamped < SUB_COUNT) {
+            return (int) clamped;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(clamped);
+        int shift = magnitude - SUB_BITS;
+        int sub = (int) (clamped >>> shift) - SUB_COUNT;
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    static long highestInBucket(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_COUNT - 1;
+        long lowest = (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private int findFiring(long alarmId, long scheduledAt) {
+        // Newest first: the stages of one firing arrive close together
+        for (int i = 0; i < ringSize; i++) {
+            int slot = Math.floorMod(ringHead - 1 - i, RING_SIZE);
+            if (ringAlarmIds[slot] == alarmId && ringScheduledAt[slot] == scheduledAt) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void save() {
+        if (writer == null) {
+            return;
+        }
+        final byte[] bytes;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(MAGIC);
+            out.writeInt(ringHead);
+            out.writeInt(ringSize);
+            for (int i = 0; i < RING_SIZE; i++) {
+                out.writeLong(ringAlarmIds[i]);
+                out.writeLong(ringScheduledAt[i]);
+            }
+            for (long delay : ringDelays) {
+                out.writeLong(delay);
+            }
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                out.writeLong(counts[stage]);
+                out.writeLong(maxDelays[stage]);
+                for (int count : buckets[stage]) {
+                    out.writeInt(count);
+                }
+            }
+            bytes = buffer.toByteArray();
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to encode latency stats", e);
+            return;
+        }
+        writer.execute(() -> {
+            File tmpFile = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+                out.write(bytes);
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to write latency stats", e);
+                return;
+            }
+            if (!tmpFile.renameTo(file)) {
+                Log.e(TAG, "❌ Could not replace " + file);
+            }
+        });
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                Log.w(TAG, "⚠️ Unrecognised latency stats, starting fresh");
+                return;
+            }
+            ringHead = in.readInt();
+            ringSize = in.readInt();
+            for (int i = 0; i < RING_SIZE; i++) {
+                ringAlarmIds[i] = in.readLong();
+                ringScheduledAt[i] = in.readLong();
+            }
+            for (int i = 0; i < ringDelays.length; i++) {
+                ringDelays[i] = in.readLong();
+            }
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                counts[stage] = in.readLong();
+                maxDelays[stage] = in.readLong();
+                for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                    buckets[stage][bucket] = in.readInt();
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to read latency stats, starting fresh", e);
+            clear();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.lightalarm.app;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing long -> int map with linear probing and no boxing.
+ *
+ * Values must be non-negative; get() returns -1 for a missing key. Deletion uses backward
+ * shifting so lookups never have to skip tombstones.
+ */
+class LongIntHashMap {
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    int get(long key) {
+        int slot = mix(key) & mask;
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Insert or overwrite; returns the previous value or MISSING
+     */
+    int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        int slot = mix(key) & mask;
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 4 > keys.length * 3) {
+            rehash(keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Remove a key; returns its value or MISSING
+     */
+    int remove(long key) {
+        int slot = mix(key) & mask;
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    /**
+     * Visit every entry in table order
+     */
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != MISSING) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == MISSING) {
+                break;
+            }
+            int home = mix(keys[slot]) & mask;
+            // Move the entry into the hole unless its home lies cyclically in (hole, slot]
+            boolean stays = hole <= slot ? (hole < home && home <= slot) : (hole < home || home <= slot);
+            if (!stays) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = MISSING;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    interface Visitor {
+        void visit(long key, int value);
+    }
+}
@@ -1,10 +1,8 @@
 package com.lightalarm.app;
 
 import android.app.NotificationManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
@@ -14,13 +12,11 @@ import android.webkit.WebView;
 import android.content.pm.ApplicationInfo;
 import android.widget.Toast;
 import com.getcapacitor.BridgeActivity;
-import com.getcapacitor.Bridge;
 
 public class MainActivity extends BridgeActivity {
     private static final int REQUEST_CODE_POST_NOTIFICATIONS = 100;
-    private BroadcastReceiver sunriseUpdateReceiver;
-    private boolean receiverRegistered = false;
-    private boolean wakeScreenShown = false;
+    private SunriseProgressChannel.Listener sunriseListener;
+    private WindowBrightnessSink brightnessSink;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -33,6 +29,8 @@ public class MainActivity extends BridgeActivity {
         
         super.onCreate(savedInstanceState);
 
+        // Build the sound catalog in the background before anything asks for it
+        SoundManager.getInstance().preload();
         
         // Register our custom AlarmService plugin (backup method)
         try {
@@ -51,7 +49,7 @@ public class MainActivity extends BridgeActivity {
         // Check overlay permission for fullscreen over lockscreen
         checkOverlayPermission();
 
-        // Register sunrise progress receiver in onStart() when bridge is ready
+        // Register sunrise progress listener in onStart() when bridge is ready
 
         // Note: We don't hide system UI on normal app launch
         // Fullscreen only happens when alarm triggers or sleep mode starts
@@ -61,14 +59,34 @@ public class MainActivity extends BridgeActivity {
     public void onStart() {
         super.onStart();
 
-        // Register sunrise progress receiver when bridge is ready
-        registerSunriseReceiver();
+        // Listen for sunrise progress when bridge is ready
+        registerSunriseListener();
+    }
 
-        // Reset wake overlay flag when activity restarts
-        wakeScreenShown = false;
+    @Override
+    public void onResume() {
+        super.onResume();
+        // While visible, a running sunrise drives this window's brightness instead of Settings
+        if (brightnessSink == null) {
+            brightnessSink = new WindowBrightnessSink(getWindow());
+        }
+        BrightnessController.getInstance().attachWindow(brightnessSink);
+    }
 
+    @Override
+    public void onPause() {
+        if (brightnessSink != null) {
+            BrightnessController.getInstance().detachWindow(brightnessSink);
+        }
+        super.onPause();
     }
 
+    @Override
+    public void onStop() {
+        // Show the wake overlay again if the activity comes back during the same sunrise
+        WebEventBus.getInstance().resetWakeScreen();
+        super.onStop();
+    }
 
     @Override
     protected void onNewIntent(Intent intent) {
@@ -84,6 +102,9 @@ public class MainActivity extends BridgeActivity {
             boolean launchFullscreen = intent.getBooleanExtra("launch_fullscreen", false);
             String alarmSound = intent.getStringExtra("alarm_sound");
             boolean fromAlarm = intent.getBooleanExtra("fromAlarm", false);
+            final long alarmId = intent.getLongExtra("alarm_id", -1);
+            final long scheduledAt = intent.getLongExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, -1);
+            FireLatencyRecorder.stamp(this, FireLatencyRecorder.STAGE_ACTIVITY, alarmId, scheduledAt);
 
             android.util.Log.d("MainActivity", "🔍 DEBUG: ALARM INTENT RECEIVED");
             android.util.Log.d("MainActivity", "🔍 DEBUG: Intent: " + intent.toString());
@@ -126,48 +147,17 @@ public class MainActivity extends BridgeActivity {
                 notificationManager.cancel(999); // Cancel the alarm notification
                 android.util.Log.d("MainActivity", "Alarm notification cancelled");
 
+                // A fresh alarm is a new wake episode; the bus queues both events until the page is
+                // listening, so no WebView-ready delay is needed
+                WebEventBus bus = WebEventBus.getInstance();
+                bus.resetWakeScreen();
                 // If launched directly from alarm (not via notification), trigger JS event
                 if (fromAlarm) {
-                    new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            try {
-                                Bridge bridge = getBridge();
-                                if (bridge != null && bridge.getWebView() != null) {
-                                    bridge.triggerWindowJSEvent("alarmFired");
-                                    android.util.Log.d("MainActivity", "alarmFired event dispatched to JavaScript");
-                                }
-                            } catch (Exception e) {
-                                android.util.Log.e("MainActivity", "Failed to send alarmFired event", e);
-                            }
-                        }
-                    }, 500);
+                    bus.post(WebEventBus.Event.alarmFired(alarmId, scheduledAt));
                 }
-
                 // Notify WebView to present wake overlay (Gentle Wakeup style)
-                // Use a delayed dispatch to ensure WebView is ready
-                new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            Bridge bridge = getBridge();
-                            if (bridge != null && bridge.getWebView() != null) {
-                                String jsCode = "try { " +
-                                        "if (window.dispatchEvent) { " +
-                                        "window.dispatchEvent(new CustomEvent('showWakeScreen', { detail: { type: '" + alarmTriggered + "' } })); " +
-                                        "console.log('showWakeScreen event dispatched'); " +
-                                        "} " +
-                                        "} catch(e) { console.log('Error sending showWakeScreen:', e); }";
-                                bridge.eval(jsCode, null);
-                                android.util.Log.d("MainActivity", "🔍 DEBUG: showWakeScreen event sent to JavaScript (delayed)");
-                            } else {
-                                android.util.Log.w("MainActivity", "Bridge not ready to send showWakeScreen event (delayed)");
-                            }
-                        } catch (Exception e) {
-                            android.util.Log.e("MainActivity", "Failed to send showWakeScreen event (delayed)", e);
-                        }
-                    }
-                }, 1000); // 1 second delay to ensure WebView is ready
+                bus.post(WebEventBus.Event.showWakeScreen(alarmTriggered));
+                android.util.Log.d("MainActivity", "🔍 DEBUG: Alarm events posted to JavaScript");
             } else {
                 android.util.Log.w("MainActivity", "Not launching fullscreen - launchFullscreen: " + launchFullscreen + ", alarmTriggered: " + alarmTriggered);
             }
@@ -223,117 +213,55 @@ public class MainActivity extends BridgeActivity {
         }
     }
 
-    private void registerSunriseReceiver() {
-        if (receiverRegistered || isFinishing()) {
-            android.util.Log.d("MainActivity", "Receiver already registered or activity finishing, skipping");
+    private void registerSunriseListener() {
+        if (sunriseListener != null || isFinishing()) {
+            android.util.Log.d("MainActivity", "Sunrise listener already registered or activity finishing, skipping");
             return;
         }
-        
-        sunriseUpdateReceiver = new BroadcastReceiver() {
+
+        // Progress itself reaches JS through AlarmServicePlugin; the activity only needs to know
+        // that a sunrise is running so it can bring up the wake overlay once
+        sunriseListener = new SunriseProgressChannel.Listener() {
             @Override
-            public void onReceive(Context context, Intent intent) {
-                int progress = intent.getIntExtra("progress", 0);
-                android.util.Log.d("MainActivity", "Received sunrise progress: " + progress);
-                
-                // Send to JavaScript via bridge
-                try {
-                    Bridge bridge = getBridge();
-                    if (bridge != null && bridge.getWebView() != null) {
-                        // Check if WebView is ready with safer JavaScript
-                        String jsCode = "try { " +
-                            "if (window.dispatchEvent) { " +
-                            "window.dispatchEvent(new CustomEvent('sunriseProgress', " +
-                            "{ detail: { progress: " + progress + " } })); " +
-                            "} " +
-                            "} catch(e) { console.log('Error sending sunrise progress:', e); }";
-                        bridge.eval(jsCode, null);
-                        android.util.Log.d("MainActivity", "🔍 DEBUG: Sent progress to JavaScript: " + progress);
-
-                        // Ensure wake overlay is shown once when progress starts
-                        if (!wakeScreenShown) {
-                            // Use delayed dispatch to ensure WebView is ready
-                            new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(new Runnable() {
-                                @Override
-                                public void run() {
-                                    try {
-                                        Bridge delayedBridge = getBridge();
-                                        if (delayedBridge != null && delayedBridge.getWebView() != null) {
-                                            String showJs = "try { if (window.dispatchEvent) {" +
-                                                "window.dispatchEvent(new CustomEvent('showWakeScreen', { detail: { type: 'light' } }));" +
-                                                "console.log('showWakeScreen dispatched on first progress');" +
-                                                "} } catch(e) { console.log('Error sending showWakeScreen:', e); }";
-                                            delayedBridge.eval(showJs, null);
-                                            android.util.Log.d("MainActivity", "🔍 DEBUG: showWakeScreen dispatched on first progress (delayed)");
-                                        }
-                                    } catch (Exception e) {
-                                        android.util.Log.e("MainActivity", "Failed to dispatch showWakeScreen on progress", e);
-                                    }
-                                }
-                            }, 500); // 500ms delay
-                            wakeScreenShown = true;
-                        }
-                    } else {
-                        android.util.Log.w("MainActivity", "Bridge or WebView not ready, skipping progress update");
-                    }
-                } catch (Exception e) {
-                    android.util.Log.e("MainActivity", "Failed to send progress to JavaScript", e);
+            public void onSunriseProgress(int progress) {
+                if (progress == SunriseProgressChannel.IDLE) {
+                    return;
                 }
+                showWakeScreenOnce();
             }
         };
-        
-        try {
-            IntentFilter filter = new IntentFilter("com.lightalarm.app.SUNRISE_UPDATE");
-            registerReceiver(sunriseUpdateReceiver, filter);
-            receiverRegistered = true;
-            android.util.Log.d("MainActivity", "Sunrise receiver registered");
-        } catch (Exception e) {
-            android.util.Log.e("MainActivity", "Failed to register sunrise receiver", e);
-            receiverRegistered = false;
+        SunriseProgressChannel.getInstance().addListener(sunriseListener);
+        android.util.Log.d("MainActivity", "Sunrise listener registered");
+
+        // Sunrise may already be running when the activity comes up
+        if (SunriseProgressChannel.getInstance().current() != SunriseProgressChannel.IDLE) {
+            showWakeScreenOnce();
         }
     }
 
+    private void unregisterSunriseListener() {
+        if (sunriseListener != null) {
+            SunriseProgressChannel.getInstance().removeListener(sunriseListener);
+            sunriseListener = null;
+            android.util.Log.d("MainActivity", "Sunrise listener unregistered");
+        }
+    }
+
+    private void showWakeScreenOnce() {
+        // Deduped by the bus, so every progress tick can ask
+        WebEventBus.getInstance().post(WebEventBus.Event.showWakeScreen("light"));
+    }
+
     // Send light simulation event to JavaScript (like Gentle Wakeup)
     public void sendLightSimulationEvent(String alarmSound) {
         android.util.Log.d("MainActivity", "Sending light simulation event to JavaScript");
-        try {
-            Bridge bridge = getBridge();
-            if (bridge != null && bridge.getWebView() != null) {
-                String jsCode = "try { " +
-                    "if (window.dispatchEvent) { " +
-                    "window.dispatchEvent(new CustomEvent('com.lightalarm.app.DIRECT_LIGHT_SIMULATION', " +
-                    "{ detail: { alarmSound: '" + alarmSound + "' } })); " +
-                    "} " +
-                    "} catch(e) { console.log('Error sending light simulation event:', e); }";
-                bridge.eval(jsCode, null);
-                android.util.Log.d("MainActivity", "Light simulation event sent to JavaScript");
-            } else {
-                android.util.Log.w("MainActivity", "Bridge not ready for light simulation event");
-            }
-        } catch (Exception e) {
-            android.util.Log.e("MainActivity", "Failed to send light simulation event", e);
-        }
+        WebEventBus.getInstance().post(WebEventBus.Event.lightSimulation(alarmSound));
     }
 
     // Send sound alarm event to JavaScript (like Gentle Wakeup)
     public void sendSoundAlarmEvent(String alarmSound) {
         android.util.Log.d("MainActivity", "Sending sound alarm event to JavaScript");
-        try {
-            Bridge bridge = getBridge();
-            if (bridge != null && bridge.getWebView() != null) {
-                String jsCode = "try { " +
-                    "if (window.dispatchEvent) { " +
-                    "window.dispatchEvent(new CustomEvent('com.lightalarm.app.DIRECT_SOUND_ALARM', " +
-                    "{ detail: { alarmSound: '" + alarmSound + "' } })); " +
-                    "} " +
-                    "} catch(e) { console.log('Error sending sound alarm event:', e); }";
-                bridge.eval(jsCode, null);
-                android.util.Log.d("MainActivity", "Sound alarm event sent to JavaScript");
-            } else {
-                android.util.Log.w("MainActivity", "Bridge not ready for sound alarm event");
-            }
-        } catch (Exception e) {
-            android.util.Log.e("MainActivity", "Failed to send sound alarm event", e);
-        }
+        WebEventBus.getInstance().post(WebEventBus.Event.soundAlarm(alarmSound));
     }
 
     private void checkOverlayPermission() {
@@ -349,11 +277,7 @@ public class MainActivity extends BridgeActivity {
 
     @Override
     public void onDestroy() {
-        if (sunriseUpdateReceiver != null && receiverRegistered) {
-            unregisterReceiver(sunriseUpdateReceiver);
-            receiverRegistered = false;
-            android.util.Log.d("MainActivity", "Sunrise receiver unregistered");
-        }
+        unregisterSunriseListener();
         super.onDestroy();
     }
 }
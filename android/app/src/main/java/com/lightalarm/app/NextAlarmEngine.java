@@ -0,0 +1,190 @@
+package com.lightalarm.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Single source of next-fire times for all enabled alarms.
+ *
+ * Keeps one heap entry per enabled alarm holding its next sound trigger in epoch millis.
+ * The light trigger is always LIGHT_LEAD_MS earlier, so the heap order is the same for both
+ * phases. The shared instance follows AlarmCache changes incrementally instead of rebuilding
+ * a Calendar per alarm on every query, and each alarm's compiled Recurrence rule is kept so a
+ * fired alarm moves to its next occurrence without going back to the store.
+ */
+public final class NextAlarmEngine implements AlarmCache.Listener {
+    private static final String TAG = "NextAlarmEngine";
+
+    public static final long NO_ALARM = Long.MIN_VALUE;
+
+    private static volatile NextAlarmEngine instance;
+
+    private final OccurrenceHeap heap;
+    private final LongIntHashMap ruleById;
+    private TimeZone zone;
+    private AlarmCache source;
+
+    public NextAlarmEngine(int expectedSize, TimeZone zone) {
+        this.heap = new OccurrenceHeap(expectedSize);
+        this.ruleById = new LongIntHashMap(expectedSize);
+        this.zone = zone;
+    }
+
+    public static NextAlarmEngine getInstance(Context context) {
+        NextAlarmEngine engine = instance;
+        if (engine == null) {
+            synchronized (NextAlarmEngine.class) {
+                engine = instance;
+                if (engine == null) {
+                    AlarmCache cache = AlarmCache.getInstance(context);
+                    engine = new NextAlarmEngine(Math.max(16, cache.snapshot().size()), TimeZone.getDefault());
+                    // Listen before the initial build so no change can slip between the two
+                    engine.source = cache;
+                    cache.addListener(engine);
+                    engine.rebuild(cache.getAll(), System.currentTimeMillis());
+                    instance = engine;
+                    Log.d(TAG, "⏱️ Engine built with " + engine.size() + " enabled alarms");
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Parse a JS alarm id; the engine keys alarms by their numeric id
+     */
+    public static long parseId(String alarmId) {
+        return Long.parseLong(alarmId);
+    }
+
+    public synchronized void rebuild(List<AlarmRecord> alarms, long nowMillis) {
+        heap.clear();
+        ruleById.clear();
+        for (AlarmRecord alarm : alarms) {
+            if (alarm.isEnabled()) {
+                upsert(alarm, nowMillis);
+            }
+        }
+    }
+
+    /**
+     * Queue or move an alarm to the next occurrence of a Recurrence rule; returns the sound
+     * trigger time
+     */
+    public synchronized long upsert(long alarmId, int rule, long nowMillis) {
+        long trigger = Recurrence.nextTrigger(rule, nowMillis, zone);
+        ruleById.put(alarmId, rule);
+        heap.upsert(alarmId, trigger);
+        return trigger;
+    }
+
+    public synchronized long upsert(AlarmRecord alarm, long nowMillis) {
+        return upsert(parseId(alarm.getId()), Recurrence.rule(alarm), nowMillis);
+    }
+
+    public synchronized boolean cancel(long alarmId) {
+        ruleById.remove(alarmId);
+        return heap.cancel(alarmId);
+    }
+
+    /**
+     * Move a fired alarm to its next occurrence after firedAt using the stored rule: one
+     * hash lookup and one heap update. Returns the new trigger, or NO_ALARM if unknown.
+     */
+    public synchronized long advance(long alarmId, long firedAt) {
+        int rule = ruleById.get(alarmId);
+        if (rule == LongIntHashMap.MISSING) {
+            return NO_ALARM;
+        }
+        long trigger = Recurrence.nextTrigger(rule, firedAt, zone);
+        heap.upsert(alarmId, trigger);
+        return trigger;
+    }
+
+    /**
+     * Follow a wall-clock jump (TIME_SET) or a zone change: recompute every alarm's next trigger
+     * in the given zone from now and move only those whose trigger changed. Returns the ids that
+     * moved, i.e. the system registrations that need replacing.
+     */
+    public synchronized long[] onClockChanged(TimeZone newZone, long nowMillis) {
+        zone = newZone;
+        long[] changed = new long[ruleById.size()];
+        int[] count = new int[1];
+        ruleById.forEach((alarmId, rule) -> {
+            long trigger = Recurrence.nextTrigger(rule, nowMillis, newZone);
+            if (heap.timeOf(alarmId) != trigger) {
+                heap.upsert(alarmId, trigger);
+                changed[count[0]++] = alarmId;
+            }
+        });
+        return Arrays.copyOf(changed, count[0]);
+    }
+
+    public synchronized int size() {
+        return heap.size();
+    }
+
+    /**
+     * Next sound trigger of one alarm, or NO_ALARM if it is not scheduled
+     */
+    public synchronized long timeOf(long alarmId) {
+        long time = heap.timeOf(alarmId);
+        return time == OccurrenceHeap.NO_TIME ? NO_ALARM : time;
+    }
+
+    /**
+     * Earliest sound trigger across all alarms, or NO_ALARM
+     */
+    public synchronized long peekTime() {
+        return heap.isEmpty() ? NO_ALARM : heap.peekTime();
+    }
+
+    public synchronized long peekAlarmId() {
+        return heap.isEmpty() ? NO_ALARM : heap.peekKey();
+    }
+
+    /**
+     * Return the earliest alarm if its sound trigger is at or before now, moving it on to its
+     * next occurrence; NO_ALARM if nothing is due
+     */
+    public synchronized long popDue(long nowMillis) {
+        if (heap.isEmpty() || heap.peekTime() > nowMillis) {
+            return NO_ALARM;
+        }
+        long alarmId = heap.peekKey();
+        advance(alarmId, heap.peekTime());
+        return alarmId;
+    }
+
+    /**
+     * Copy the next k sound triggers (and their alarm ids) in order; returns the count written
+     */
+    public synchronized int nextOccurrences(int k, long[] outTimes, long[] outIds) {
+        return heap.peekFirst(k, outTimes, outIds);
+    }
+
+    public synchronized TimeZone getZone() {
+        return zone;
+    }
+
+    @Override
+    public synchronized void onAlarmChanged(String alarmId, AlarmRecord record) {
+        if (source != null) {
+            // Re-read under the engine lock so racing writers cannot leave an older value queued
+            record = source.get(alarmId);
+        }
+        try {
+            if (record != null && record.isEnabled()) {
+                upsert(record, System.currentTimeMillis());
+            } else {
+                cancel(parseId(alarmId));
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "⚠️ Ignoring non-numeric alarm id: " + alarmId);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.lightalarm.app;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed binary min-heap of upcoming alarm occurrences keyed by epoch millis.
+ *
+ * Each alarm key appears at most once. Insert, reschedule, cancel and pop are O(log n),
+ * peek is O(1), and the next k occurrences can be listed in O(k log k) without disturbing
+ * the heap. Storage is parallel primitive arrays, so steady-state operations do not allocate.
+ */
+public final class OccurrenceHeap {
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private long[] times;
+    private long[] keys;
+    private int size;
+    private final LongIntHashMap positions;
+    private int[] scratch = new int[16];
+
+    public OccurrenceHeap(int expectedSize) {
+        int capacity = Math.max(8, expectedSize);
+        times = new long[capacity];
+        keys = new long[capacity];
+        positions = new LongIntHashMap(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(long key) {
+        return positions.containsKey(key);
+    }
+
+    /**
+     * Scheduled time for a key, or NO_TIME if it is not queued
+     */
+    public long timeOf(long key) {
+        int slot = positions.get(key);
+        return slot == LongIntHashMap.MISSING ? NO_TIME : times[slot];
+    }
+
+    /**
+     * Queue a key at the given time, or move it if already queued
+     */
+    public void upsert(long key, long time) {
+        int slot = positions.get(key);
+        if (slot != LongIntHashMap.MISSING) {
+            long previous = times[slot];
+            times[slot] = time;
+            if (time < previous) {
+                siftUp(slot);
+            } else if (time > previous) {
+                siftDown(slot);
+            }
+            return;
+        }
+        if (size == times.length) {
+            int capacity = size << 1;
+            times = Arrays.copyOf(times, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        times[size] = time;
+        keys[size] = key;
+        positions.put(key, size);
+        siftUp(size++);
+    }
+
+    /**
+     * Remove a key; returns false if it was not queued
+     */
+    public boolean cancel(long key) {
+        int slot = positions.remove(key);
+        if (slot == LongIntHashMap.MISSING) {
+            return false;
+        }
+        int last = --size;
+        if (slot != last) {
+            times[slot] = times[last];
+            keys[slot] = keys[last];
+            positions.put(keys[slot], slot);
+            siftDown(slot);
+            siftUp(slot);
+        }
+        return true;
+    }
+
+    public long peekTime() {
+        if (size == 0) {
+            throw new NoSuchElementException("No queued occurrences");
+        }
+        return times[0];
+    }
+
+    public long peekKey() {
+        if (size == 0) {
+            throw new NoSuchElementException("No queued occurrences");
+        }
+        return keys[0];
+    }
+
+    /**
+     * Remove the earliest occurrence and return its key
+     */
+    public long pop() {
+        long key = peekKey();
+        cancel(key);
+        return key;
+    }
+
+    public void clear() {
+        size = 0;
+        positions.clear();
+    }
+
+    /**
+     * Copy the earliest min(k, size) occurrences, in order, into the output arrays without
+     * modifying the heap. Returns the number written.
+     */
+    public int peekFirst(int k, long[] outTimes, long[] outKeys) {
+        int count = Math.min(k, size);
+        if (count == 0) {
+            return 0;
+        }
+        // Frontier of heap slots whose parents have already been emitted, itself kept as a
+        // small binary heap; it never holds more than k + 1 slots
+        if (scratch.length < count + 1) {
+            scratch = new int[count + 1];
+        }
+        int frontier = 0;
+        scratch[frontier++] = 0;
+        for (int written = 0; written < count; written++) {
+            int slot = scratch[0];
+            scratch[0] = scratch[--frontier];
+            siftDownFrontier(frontier);
+            outTimes[written] = times[slot];
+            outKeys[written] = keys[slot];
+
+            int left = 2 * slot + 1;
+            if (left < size) {
+                frontier = pushFrontier(frontier, left);
+                if (left + 1 < size) {
+                    frontier = pushFrontier(frontier, left + 1);
+                }
+            }
+        }
+        return count;
+    }
+
+    private int pushFrontier(int frontier, int slot) {
+        int i = frontier++;
+        scratch[i] = slot;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(scratch[i], scratch[parent])) {
+                break;
+            }
+            int tmp = scratch[i];
+            scratch[i] = scratch[parent];
+            scratch[parent] = tmp;
+            i = parent;
+        }
+        return frontier;
+    }
+
+    private void siftDownFrontier(int frontier) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= frontier) {
+                break;
+            }
+            int smallest = left;
+            if (left + 1 < frontier && less(scratch[left + 1], scratch[left])) {
+                smallest = left + 1;
+            }
+            if (!less(scratch[smallest], scratch[i])) {
+                break;
+            }
+            int tmp = scratch[i];
+            scratch[i] = scratch[smallest];
+            scratch[smallest] = tmp;
+            i = smallest;
+        }
+    }
+
+    private boolean less(int a, int b) {
+        return times[a] < times[b] || (times[a] == times[b] && keys[a] < keys[b]);
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!less(slot, parent)) {
+                break;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        while (true) {
+            int left = 2 * slot + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && less(right, left)) {
+                smallest = right;
+            }
+            if (!less(smallest, slot)) {
+                break;
+            }
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long time = times[a];
+        times[a] = times[b];
+        times[b] = time;
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+}
@@ -0,0 +1,126 @@
+package com.lightalarm.app;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Compiled weekly recurrence: repeatDays as a 7-bit day mask plus the minute of day, packed
+ * into one int "rule".
+ *
+ * Bit 0 is Monday through bit 6 for Sunday. An empty repeatDays list means every day, which is
+ * how the JS side saves its "Daily" option. The next occurrence is found by rotating the mask
+ * to the current weekday and counting trailing zeros, then resolving the wall time on that
+ * epoch day with AlarmTimes, so DST gaps and overlaps behave like a one-off alarm.
+ */
+public final class Recurrence {
+    public static final int MONDAY = 1;
+    public static final int TUESDAY = 1 << 1;
+    public static final int WEDNESDAY = 1 << 2;
+    public static final int THURSDAY = 1 << 3;
+    public static final int FRIDAY = 1 << 4;
+    public static final int SATURDAY = 1 << 5;
+    public static final int SUNDAY = 1 << 6;
+
+    public static final int WEEKDAYS = MONDAY | TUESDAY | WEDNESDAY | THURSDAY | FRIDAY;
+    public static final int WEEKENDS = SATURDAY | SUNDAY;
+    public static final int EVERY_DAY = WEEKDAYS | WEEKENDS;
+
+    private static final int MINUTE_BITS = 11;
+    private static final int MINUTE_MASK = (1 << MINUTE_BITS) - 1;
+
+    private static final String[] DAY_NAMES = { "mon", "tue", "wed", "thu", "fri", "sat", "sun" };
+
+    private Recurrence() {
+    }
+
+    /**
+     * Compile the JS repeatDays ("Mon".."Sun", full names also accepted) into a day mask
+     */
+    public static int compile(String[] repeatDays) {
+        int mask = 0;
+        if (repeatDays != null) {
+            for (String day : repeatDays) {
+                mask |= maskOf(day);
+            }
+        }
+        return mask == 0 ? EVERY_DAY : mask;
+    }
+
+    private static int maskOf(String day) {
+        if (day == null || day.length() < 3) {
+            return 0;
+        }
+        String prefix = day.substring(0, 3).toLowerCase(Locale.ROOT);
+        for (int i = 0; i < DAY_NAMES.length; i++) {
+            if (DAY_NAMES[i].equals(prefix)) {
+                return 1 << i;
+            }
+        }
+        // Preset labels the JS repeat dropdown uses
+        if ("weekdays".equalsIgnoreCase(day)) {
+            return WEEKDAYS;
+        } else if ("weekends".equalsIgnoreCase(day)) {
+            return WEEKENDS;
+        } else if ("daily".equalsIgnoreCase(day)) {
+            return EVERY_DAY;
+        }
+        return 0;
+    }
+
+    public static int rule(int dayMask, int minuteOfDay) {
+        return (dayMask & EVERY_DAY) << MINUTE_BITS | minuteOfDay;
+    }
+
+    public static int rule(AlarmRecord alarm) {
+        int hour24 = AlarmTimes.to24Hour(alarm.getHour(), alarm.getAmPm());
+        return rule(alarm.getRepeatMask(), AlarmTimes.minuteOfDay(hour24, alarm.getMinute()));
+    }
+
+    public static int dayMaskOf(int rule) {
+        return rule >>> MINUTE_BITS;
+    }
+
+    public static int minuteOfDayOf(int rule) {
+        return rule & MINUTE_MASK;
+    }
+
+    /**
+     * Weekday of an epoch day as a bit index, Monday = 0 (1970-01-01 was a Thursday)
+     */
+    public static int dayOfWeek(long epochDay) {
+        return (int) Math.floorMod(epochDay + 3, 7L);
+    }
+
+    /**
+     * Days from the given epoch day to the first day in the mask, 0 if that day is included
+     */
+    public static int daysUntil(int dayMask, long epochDay) {
+        if (dayMask == 0) {
+            return 0;
+        }
+        int dow = dayOfWeek(epochDay);
+        int rotated = ((dayMask >>> dow) | (dayMask << (7 - dow))) & EVERY_DAY;
+        return Integer.numberOfTrailingZeros(rotated);
+    }
+
+    /**
+     * First instant strictly after the given one at which the rule fires
+     */
+    public static long nextTrigger(int rule, long afterMillis, TimeZone zone) {
+        int dayMask = dayMaskOf(rule);
+        int minuteOfDay = minuteOfDayOf(rule);
+        if (dayMask == EVERY_DAY || dayMask == 0) {
+            return AlarmTimes.nextDailyTrigger(minuteOfDay, afterMillis, zone);
+        }
+        long day = AlarmTimes.localEpochDay(afterMillis, zone);
+        day += daysUntil(dayMask, day);
+        long trigger = AlarmTimes.atMinuteOfDay(day, minuteOfDay, zone);
+        // A trigger resolving onto another local day means the repeat day itself was skipped
+        // (e.g. a zone jumping across the date line), so move on to the next repeat day
+        while (trigger <= afterMillis || AlarmTimes.localEpochDay(trigger, zone) != day) {
+            day += 1 + daysUntil(dayMask, day + 1);
+            trigger = AlarmTimes.atMinuteOfDay(day, minuteOfDay, zone);
+        }
+        return trigger;
+    }
+}
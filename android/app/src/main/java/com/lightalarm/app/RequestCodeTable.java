@@ -0,0 +1,240 @@
+package com.lightalarm.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Persistent alarm id -> PendingIntent request code table.
+ *
+ * Each alarm holds the lowest free slot, and its light and sound intents use request codes
+ * FIRST_REQUEST_CODE + 2 * slot (+1), so codes stay dense and never collide however large the
+ * 64-bit ids get. Assignments are appended to a small log of fixed-size entries (slot -1 marks a
+ * release) that is replayed on first use and rewritten once releases outnumber live slots.
+ */
+final class RequestCodeTable {
+    private static final String TAG = "RequestCodeTable";
+
+    static final String FILE_NAME = "request_codes.bin";
+
+    /** Clear of the chained slot (100) and snooze (200) request codes */
+    static final int FIRST_REQUEST_CODE = 1000;
+
+    private static final int MAGIC = 0x52435431; // "RCT1"
+    private static final int ENTRY_BYTES = 16; // [long id][int slot][int check]
+    private static final int RELEASED = -1;
+    private static final int MIN_DEAD_ENTRIES_FOR_COMPACTION = 64;
+
+    private static RequestCodeTable instance;
+
+    private final File file;
+    private final LongIntHashMap slotById = new LongIntHashMap(32);
+    private final BitSet usedSlots = new BitSet();
+    private int deadEntries = 0;
+
+    RequestCodeTable(File file) {
+        this.file = file;
+        load();
+    }
+
+    static synchronized RequestCodeTable getInstance(Context context) {
+        if (instance == null) {
+            // Next to the alarm log, so a locked boot registers under the same codes
+            instance = new RequestCodeTable(new File(DirectBootStorage.of(context).getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    static int lightRequestCode(int slot) {
+        return FIRST_REQUEST_CODE + 2 * slot;
+    }
+
+    static int soundRequestCode(int slot) {
+        return FIRST_REQUEST_CODE + 2 * slot + 1;
+    }
+
+    /**
+     * Slot held by an alarm, or LongIntHashMap.MISSING
+     */
+    synchronized int slotOf(long alarmId) {
+        return slotById.get(alarmId);
+    }
+
+    /**
+     * Slot for an alarm, assigning and persisting the lowest free one on first use
+     */
+    synchronized int acquire(long alarmId) throws IOException {
+        int slot = slotById.get(alarmId);
+        if (slot == LongIntHashMap.MISSING) {
+            slot = assign(alarmId);
+            append(new long[] { alarmId }, new int[] { slot }, 1);
+        }
+        return slot;
+    }
+
+    /**
+     * Assign slots to every alarm that lacks one with a single write, e.g. before a bulk import
+     */
+    synchronized void acquireAll(long[] alarmIds) throws IOException {
+        long[] ids = new long[alarmIds.length];
+        int[] slots = new int[alarmIds.length];
+        int count = 0;
+        for (long alarmId : alarmIds) {
+            if (slotById.get(alarmId) == LongIntHashMap.MISSING) {
+                ids[count] = alarmId;
+                slots[count] = assign(alarmId);
+                count++;
+            }
+        }
+        if (count > 0) {
+            append(ids, slots, count);
+        }
+    }
+
+    /**
+     * Free an alarm's slot once its PendingIntents are cancelled; returns the slot or MISSING
+     */
+    synchronized int release(long alarmId) throws IOException {
+        int slot = slotById.remove(alarmId);
+        if (slot != LongIntHashMap.MISSING) {
+            usedSlots.clear(slot);
+            // The assignment and this release are both dead once written
+            deadEntries += 2;
+            if (deadEntries >= MIN_DEAD_ENTRIES_FOR_COMPACTION && deadEntries > slotById.size()) {
+                compact();
+            } else {
+                append(new long[] { alarmId }, new int[] { RELEASED }, 1);
+            }
+        }
+        return slot;
+    }
+
+    synchronized int size() {
+        return slotById.size();
+    }
+
+    private int assign(long alarmId) {
+        int slot = usedSlots.nextClearBit(0);
+        usedSlots.set(slot);
+        slotById.put(alarmId, slot);
+        return slot;
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        long validLength = 0;
+        int entries = 0;
+        try (FileInputStream in = new FileInputStream(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) file.length());
+            in.getChannel().read(buffer);
+            buffer.flip();
+            if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+                Log.e(TAG, "❌ Unrecognised request code table, starting fresh");
+                file.delete();
+                return;
+            }
+            validLength = 4;
+            while (buffer.remaining() >= ENTRY_BYTES) {
+                long alarmId = buffer.getLong();
+                int slot = buffer.getInt();
+                if (buffer.getInt() != check(alarmId, slot)) {
+                    break;
+                }
+                if (slot == RELEASED) {
+                    int previous = slotById.remove(alarmId);
+                    if (previous != LongIntHashMap.MISSING) {
+                        usedSlots.clear(previous);
+                    }
+                } else {
+                    int previous = slotById.put(alarmId, slot);
+                    if (previous != LongIntHashMap.MISSING) {
+                        usedSlots.clear(previous);
+                    }
+                    usedSlots.set(slot);
+                }
+                entries++;
+                validLength += ENTRY_BYTES;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to read request code table", e);
+        }
+        deadEntries = entries - slotById.size();
+
+        if (validLength < file.length()) {
+            // Drop a torn trailing entry so later appends stay aligned
+            Log.w(TAG, "⚠️ Truncating request code table at " + validLength + " of " + file.length() + " bytes");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to truncate request code table", e);
+            }
+        }
+        Log.d(TAG, "📇 Loaded " + slotById.size() + " request code slots");
+    }
+
+    private void append(long[] ids, int[] slots, int count) throws IOException {
+        boolean fresh = !file.exists();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((fresh ? 4 : 0) + count * ENTRY_BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (fresh) {
+            out.writeInt(MAGIC);
+        }
+        for (int i = 0; i < count; i++) {
+            writeEntry(out, ids[i], slots[i]);
+        }
+        try (FileOutputStream fileOut = new FileOutputStream(file, true)) {
+            bytes.writeTo(fileOut);
+            // A lost assignment would leave registered intents that cancelAlarm cannot find
+            fileOut.getFD().sync();
+        }
+    }
+
+    private void compact() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + slotById.size() * ENTRY_BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        IOException[] failure = new IOException[1];
+        slotById.forEach((alarmId, slot) -> {
+            try {
+                writeEntry(out, alarmId, slot);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmpFile)) {
+            bytes.writeTo(fileOut);
+            fileOut.getFD().sync();
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        deadEntries = 0;
+        Log.d(TAG, "🗜️ Request code table compacted to " + slotById.size() + " slots");
+    }
+
+    private static void writeEntry(DataOutputStream out, long alarmId, int slot) throws IOException {
+        out.writeLong(alarmId);
+        out.writeInt(slot);
+        out.writeInt(check(alarmId, slot));
+    }
+
+    private static int check(long alarmId, int slot) {
+        return LongIntHashMap.mix(alarmId) ^ (slot * 0x9E3779B1) ^ MAGIC;
+    }
+}
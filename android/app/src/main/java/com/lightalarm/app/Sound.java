@@ -4,16 +4,34 @@ package com.lightalarm.app;
  * Data class representing a sound file with its metadata
  */
 public class Sound {
-    private String displayName;
-    private String resourceName;
-    private int resourceId;
-    private String category;
+    private final String displayName;
+    private final String resourceName;
+    private final int resourceId;
+    private final String category;
+    private final int durationMs;
+    private final float loudnessLufs;
+    private final float peakDbfs;
+    private final float gain;
+    private final int loopStartUs;
+    private final int loopEndUs;
     
     public Sound(String displayName, String resourceName, int resourceId, String category) {
+        this(displayName, resourceName, resourceId, category, 0, Float.NaN, Float.NaN, 1f, 0, 0);
+    }
+
+    public Sound(String displayName, String resourceName, int resourceId, String category,
+                 int durationMs, float loudnessLufs, float peakDbfs, float gain,
+                 int loopStartUs, int loopEndUs) {
         this.displayName = displayName;
         this.resourceName = resourceName;
         this.resourceId = resourceId;
         this.category = category;
+        this.durationMs = durationMs;
+        this.loudnessLufs = loudnessLufs;
+        this.peakDbfs = peakDbfs;
+        this.gain = gain;
+        this.loopStartUs = loopStartUs;
+        this.loopEndUs = loopEndUs;
     }
     
     public String getDisplayName() {
@@ -31,6 +49,48 @@ public class Sound {
     public String getCategory() {
         return category;
     }
+
+    /**
+     * Length measured at build time, 0 when unknown
+     */
+    public int getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * Integrated loudness (ITU-R BS.1770) measured at build time, NaN when unknown
+     */
+    public float getLoudnessLufs() {
+        return loudnessLufs;
+    }
+
+    /**
+     * Sample peak measured at build time, NaN when unknown
+     */
+    public float getPeakDbfs() {
+        return peakDbfs;
+    }
+
+    /**
+     * Linear gain that levels this sound with the others, 0..1; 1 when unmeasured
+     */
+    public float getGain() {
+        return gain;
+    }
+
+    /**
+     * Where a looping alarm wraps back to, found at build time; 0 for the start
+     */
+    public int getLoopStartUs() {
+        return loopStartUs;
+    }
+
+    /**
+     * Where a looping alarm wraps, found at build time; 0 for the end of the sound
+     */
+    public int getLoopEndUs() {
+        return loopEndUs;
+    }
     
     @Override
     public String toString() {
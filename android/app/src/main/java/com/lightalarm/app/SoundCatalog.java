@@ -0,0 +1,112 @@
+package com.lightalarm.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the available sounds.
+ *
+ * Built once from the generated SoundCatalogData and shared freely between threads. Per-category
+ * lists are unmodifiable views built up front, so callers get them without a copy, and a hash index
+ * resolves a stored resource name to its Sound (and raw resource id) without getIdentifier().
+ * The search index is built along with it, on the same background load.
+ */
+public final class SoundCatalog {
+    private final List<String> categories;
+    private final List<Sound> allSounds;
+    private final Map<String, List<Sound>> soundsByCategory;
+    private final Map<String, Sound> soundsByResourceName;
+    private final SoundSearchIndex searchIndex;
+
+    /**
+     * Sounds in display order; categories in display order, including ones with no sounds
+     */
+    SoundCatalog(List<String> categories, List<Sound> sounds) {
+        Map<String, List<Sound>> byCategory = new LinkedHashMap<>();
+        for (String category : categories) {
+            byCategory.put(category, new ArrayList<Sound>());
+        }
+        Map<String, Sound> byResourceName = new HashMap<>(sounds.size() * 2);
+        for (Sound sound : sounds) {
+            List<Sound> categorySounds = byCategory.get(sound.getCategory());
+            if (categorySounds == null) {
+                categorySounds = new ArrayList<>();
+                byCategory.put(sound.getCategory(), categorySounds);
+            }
+            categorySounds.add(sound);
+            byResourceName.put(sound.getResourceName(), sound);
+        }
+        for (Map.Entry<String, List<Sound>> entry : byCategory.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        this.categories = Collections.unmodifiableList(new ArrayList<>(byCategory.keySet()));
+        this.allSounds = Collections.unmodifiableList(new ArrayList<>(sounds));
+        this.soundsByCategory = byCategory;
+        this.soundsByResourceName = byResourceName;
+        this.searchIndex = new SoundSearchIndex(allSounds);
+    }
+
+    /**
+     * The catalog generated from res/raw at build time
+     */
+    static SoundCatalog fromGeneratedData() {
+        int count = SoundCatalogData.RESOURCE_NAMES.length;
+        List<Sound> sounds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sounds.add(new Sound(
+                SoundCatalogData.DISPLAY_NAMES[i],
+                SoundCatalogData.RESOURCE_NAMES[i],
+                SoundCatalogData.RESOURCE_IDS[i],
+                SoundCatalogData.CATEGORIES[SoundCatalogData.CATEGORY[i]],
+                SoundCatalogData.DURATIONS_MS[i],
+                SoundCatalogData.LOUDNESS_LUFS[i],
+                SoundCatalogData.PEAK_DBFS[i],
+                SoundCatalogData.GAINS[i],
+                SoundCatalogData.LOOP_START_US[i],
+                SoundCatalogData.LOOP_END_US[i]));
+        }
+        List<String> categories = new ArrayList<>();
+        Collections.addAll(categories, SoundCatalogData.CATEGORIES);
+        return new SoundCatalog(categories, sounds);
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    /**
+     * Sounds of a category in display order; empty for an unknown category
+     */
+    public List<Sound> getSoundsForCategory(String category) {
+        List<Sound> sounds = soundsByCategory.get(category);
+        return sounds != null ? sounds : Collections.<Sound>emptyList();
+    }
+
+    public List<Sound> getAllSounds() {
+        return allSounds;
+    }
+
+    public Sound findSoundByResourceName(String resourceName) {
+        return resourceName != null ? soundsByResourceName.get(resourceName) : null;
+    }
+
+    /**
+     * Raw resource id for a stored sound name; 0 when it is not in the catalog
+     */
+    public int resourceIdOf(String resourceName) {
+        Sound sound = findSoundByResourceName(resourceName);
+        return sound != null ? sound.getResourceId() : 0;
+    }
+
+    public SoundSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public int size() {
+        return allSounds.size();
+    }
+}
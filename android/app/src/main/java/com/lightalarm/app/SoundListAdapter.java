@@ -8,12 +8,17 @@ import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.ImageButton;
 import android.widget.TextView;
+import com.lightalarm.shared.WaveformCache;
+import com.lightalarm.shared.WaveformView;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Custom adapter for displaying sounds in a list with preview functionality
+ * Custom adapter for displaying sounds in a list with preview functionality.
+ * Each row shows the sound's waveform once WaveformCache has it; rows bound before that are
+ * filled in when it arrives, without rebinding the list.
  */
-public class SoundListAdapter extends BaseAdapter {
+public class SoundListAdapter extends BaseAdapter implements WaveformCache.Listener {
     private static final String TAG = "SoundListAdapter";
     
     private Context context;
@@ -21,12 +26,34 @@ public class SoundListAdapter extends BaseAdapter {
     private SoundPreviewManager previewManager;
     private LayoutInflater inflater;
     private int currentlyPlayingPosition = -1;
+    private final WaveformCache waveforms;
+    // Every row view created so far; the ListView recycles them, so this stays at about a screenful
+    private final List<ViewHolder> holders = new ArrayList<>();
     
     public SoundListAdapter(Context context, List<Sound> sounds, SoundPreviewManager previewManager) {
         this.context = context;
         this.sounds = sounds;
         this.previewManager = previewManager;
         this.inflater = LayoutInflater.from(context);
+        this.waveforms = WaveformCache.getInstance(context, AlarmSoundPreroll.pcmCache(context));
+        waveforms.addListener(this);
+    }
+
+    /**
+     * Stop listening for waveforms; call when the adapter is replaced or the activity goes away
+     */
+    public void release() {
+        waveforms.removeListener(this);
+        holders.clear();
+    }
+
+    @Override
+    public void onWaveformReady(int resourceId, short[] peaks) {
+        for (ViewHolder holder : holders) {
+            if (holder.resourceId == resourceId) {
+                holder.waveformView.setPeaks(peaks);
+            }
+        }
     }
     
     @Override
@@ -53,13 +80,18 @@ public class SoundListAdapter extends BaseAdapter {
             holder = new ViewHolder();
             holder.soundNameText = convertView.findViewById(R.id.soundNameText);
             holder.previewButton = convertView.findViewById(R.id.previewButton);
+            holder.waveformView = convertView.findViewById(R.id.waveformView);
             convertView.setTag(holder);
+            holders.add(holder);
         } else {
             holder = (ViewHolder) convertView.getTag();
         }
         
         Sound sound = sounds.get(position);
         holder.soundNameText.setText(sound.getDisplayName());
+        holder.resourceId = sound.getResourceId();
+        // Null until computed; onWaveformReady fills it in
+        holder.waveformView.setPeaks(waveforms.peaks(sound.getResourceId()));
         
         // Update preview button state
         if (currentlyPlayingPosition == position && previewManager.isPlaying()) {
@@ -130,5 +162,7 @@ public class SoundListAdapter extends BaseAdapter {
     private static class ViewHolder {
         TextView soundNameText;
         ImageButton previewButton;
+        WaveformView waveformView;
+        int resourceId;
     }
 }
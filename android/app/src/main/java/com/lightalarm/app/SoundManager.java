@@ -1,200 +1,158 @@
 package com.lightalarm.app;
 
-import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
-import java.util.ArrayList;
-import java.util.HashMap;
+
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
- * Manages sound categorization and provides access to organized sound collections
+ * Loads the sound catalog off the main thread and hands it out once ready.
+ *
+ * MainActivity calls preload() at startup so the catalog is built in the background. UI code
+ * waits for it with whenLoaded(); anything that needs it right away (plugin calls, AlarmService)
+ * uses catalog(), which builds it on the calling thread if the background load has not started
+ * yet, or waits for it if it has. The catalog itself is immutable, so no locking after that.
  */
 public class SoundManager {
     private static final String TAG = "SoundManager";
-    private static SoundManager instance;
-    private Map<String, List<Sound>> categorizedSounds;
-    private Context context;
-    
-    private SoundManager(Context context) {
-        this.context = context;
-        this.categorizedSounds = new HashMap<>();
-        initializeSounds();
-    }
-    
-    public static synchronized SoundManager getInstance(Context context) {
-        if (instance == null) {
-            instance = new SoundManager(context);
-        }
-        return instance;
-    }
-    
+    private static final SoundManager INSTANCE = new SoundManager();
+
     /**
-     * Initialize sounds by scanning raw resources and categorizing them
+     * Called on the main thread with the loaded catalog
      */
-    private void initializeSounds() {
-        Log.d(TAG, "Initializing sound categories...");
-        
-        // Initialize categories
-        categorizedSounds.put("Ambience", new ArrayList<>());
-        categorizedSounds.put("Classic Alarm", new ArrayList<>());
-        categorizedSounds.put("Natural Sound", new ArrayList<>());
-        
-        // Get all raw resource names and categorize them
-        try {
-            // Use reflection to get raw resource names
-            Class<?> rawClass = Class.forName(context.getPackageName() + ".R$raw");
-            java.lang.reflect.Field[] fields = rawClass.getDeclaredFields();
-            
-            for (java.lang.reflect.Field field : fields) {
-                try {
-                    String resourceName = field.getName();
-                    int resourceId = field.getInt(null);
-                    
-                    // Categorize based on filename prefix
-                    String category = categorizeSound(resourceName);
-                    if (category != null) {
-                        String displayName = generateDisplayName(resourceName);
-                        Sound sound = new Sound(displayName, resourceName, resourceId, category);
-                        categorizedSounds.get(category).add(sound);
-                        Log.d(TAG, "Added sound: " + displayName + " to category: " + category);
-                    }
-                } catch (Exception e) {
-                    Log.w(TAG, "Could not process resource: " + field.getName(), e);
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to initialize sounds from resources", e);
-            // Add some default sounds as fallback
-            addDefaultSounds();
+    public interface CatalogListener {
+        void onCatalogLoaded(SoundCatalog catalog);
+    }
+
+    private final FutureTask<SoundCatalog> loader = new FutureTask<>(new Callable<SoundCatalog>() {
+        @Override
+        public SoundCatalog call() {
+            long startedAt = SystemClock.elapsedRealtime();
+            SoundCatalog catalog = SoundCatalog.fromGeneratedData();
+            Log.d(TAG, "🎵 Sound catalog loaded: " + catalog.size() + " sounds in "
+                + catalog.getCategories() + " (" + (SystemClock.elapsedRealtime() - startedAt) + " ms)");
+            return catalog;
         }
-        
-        Log.d(TAG, "Sound initialization complete. Categories: " + categorizedSounds.keySet());
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean preloadStarted = false;
+
+    private SoundManager() {
     }
-    
+
+    public static SoundManager getInstance() {
+        return INSTANCE;
+    }
+
     /**
-     * Categorize sound based on filename prefix
+     * Start loading the catalog in the background; later calls do nothing
      */
-    private String categorizeSound(String resourceName) {
-        if (resourceName.startsWith("ambiencesound_")) {
-            return "Ambience";
-        } else if (resourceName.startsWith("classicalarm_")) {
-            return "Classic Alarm";
-        } else if (resourceName.startsWith("naturalsound_")) {
-            return "Natural Sound";
+    public synchronized void preload() {
+        if (preloadStarted) {
+            return;
         }
-        return null; // Unknown category
+        preloadStarted = true;
+        Thread thread = new Thread(loader, "SoundCatalogLoader");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
     }
-    
+
     /**
-     * Generate a user-friendly display name from resource name
+     * The catalog, loading it on this thread or waiting for the background load as needed
      */
-    private String generateDisplayName(String resourceName) {
-        // Remove prefix and convert underscores to spaces, then title case
-        String name = resourceName;
-        
-        if (name.startsWith("ambiencesound_")) {
-            name = name.substring("ambiencesound_".length());
-        } else if (name.startsWith("classicalarm_")) {
-            name = name.substring("classicalarm_".length());
-        } else if (name.startsWith("naturalsound_")) {
-            name = name.substring("naturalsound_".length());
+    public SoundCatalog catalog() {
+        // Runs the load here unless it has already started elsewhere
+        loader.run();
+        try {
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted loading the sound catalog", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to load the sound catalog", e.getCause());
         }
-        
-        // Replace underscores with spaces and title case
-        name = name.replace("_", " ");
-        return toTitleCase(name);
     }
-    
+
     /**
-     * Convert string to title case
+     * Deliver the catalog to the listener on the main thread once loaded
      */
-    private String toTitleCase(String str) {
-        if (str == null || str.isEmpty()) {
-            return str;
-        }
-        
-        StringBuilder result = new StringBuilder();
-        boolean capitalizeNext = true;
-        
-        for (char c : str.toCharArray()) {
-            if (Character.isWhitespace(c)) {
-                capitalizeNext = true;
-                result.append(c);
-            } else if (capitalizeNext) {
-                result.append(Character.toUpperCase(c));
-                capitalizeNext = false;
+    public void whenLoaded(final CatalogListener listener) {
+        if (loader.isDone()) {
+            final SoundCatalog catalog = catalog();
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                listener.onCatalogLoaded(catalog);
             } else {
-                result.append(Character.toLowerCase(c));
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onCatalogLoaded(catalog);
+                    }
+                });
             }
+            return;
         }
-        
-        return result.toString();
+        preload();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final SoundCatalog catalog = catalog();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onCatalogLoaded(catalog);
+                    }
+                });
+            }
+        }, "SoundCatalogWaiter").start();
     }
-    
+
     /**
-     * Add default sounds as fallback when resource scanning fails
+     * Raw resource id for a stored sound name; 0 when there is no such sound
      */
-    private void addDefaultSounds() {
-        Log.d(TAG, "Adding default sounds as fallback");
-        
-        // Add some default sounds for each category
-        categorizedSounds.get("Ambience").add(new Sound("Airport", "ambiencesound_airport", 0, "Ambience"));
-        categorizedSounds.get("Ambience").add(new Sound("Cafe", "ambiencesound_cafe", 0, "Ambience"));
-        categorizedSounds.get("Ambience").add(new Sound("Forest", "ambiencesound_forest", 0, "Ambience"));
-        categorizedSounds.get("Ambience").add(new Sound("Ocean", "ambiencesound_ocean", 0, "Ambience"));
-        
-        categorizedSounds.get("Classic Alarm").add(new Sound("Classic Bell", "ClassicAlarm_bell", 0, "Classic Alarm"));
-        categorizedSounds.get("Classic Alarm").add(new Sound("Digital Beep", "ClassicAlarm_digital", 0, "Classic Alarm"));
-        categorizedSounds.get("Classic Alarm").add(new Sound("Gentle Chime", "ClassicAlarm_chime", 0, "Classic Alarm"));
-        
-        categorizedSounds.get("Natural Sound").add(new Sound("Birds Chirping", "NaturalSound_birds", 0, "Natural Sound"));
-        categorizedSounds.get("Natural Sound").add(new Sound("Rain", "NaturalSound_rain", 0, "Natural Sound"));
-        categorizedSounds.get("Natural Sound").add(new Sound("Wind", "NaturalSound_wind", 0, "Natural Sound"));
+    public static int resolveResourceId(String resourceName) {
+        if (resourceName == null || resourceName.isEmpty() || "default".equals(resourceName)) {
+            return 0;
+        }
+        return INSTANCE.catalog().resourceIdOf(resourceName);
     }
-    
+
     /**
      * Get all available categories
      */
     public List<String> getCategories() {
-        return new ArrayList<>(categorizedSounds.keySet());
+        return catalog().getCategories();
     }
-    
+
     /**
-     * Get sounds for a specific category
+     * Get sounds for a specific category (unmodifiable)
      */
     public List<Sound> getSoundsForCategory(String category) {
-        List<Sound> sounds = categorizedSounds.get(category);
-        return sounds != null ? new ArrayList<>(sounds) : new ArrayList<>();
+        return catalog().getSoundsForCategory(category);
     }
-    
+
     /**
-     * Get all sounds as a flat list
+     * Get all sounds as a flat list (unmodifiable)
      */
     public List<Sound> getAllSounds() {
-        List<Sound> allSounds = new ArrayList<>();
-        for (List<Sound> categorySounds : categorizedSounds.values()) {
-            allSounds.addAll(categorySounds);
-        }
-        return allSounds;
+        return catalog().getAllSounds();
+    }
+
+    /**
+     * Ranked sounds matching a query across all categories, one page at a time
+     */
+    public SoundSearchIndex.Page search(String query, int offset, int limit) {
+        return catalog().getSearchIndex().search(query, offset, limit);
     }
     
     /**
      * Find a sound by its resource name
      */
     public Sound findSoundByResourceName(String resourceName) {
-        for (List<Sound> categorySounds : categorizedSounds.values()) {
-            for (Sound sound : categorySounds) {
-                if (sound.getResourceName().equals(resourceName)) {
-                    return sound;
-                }
-            }
-        }
-        return null;
+        return catalog().findSoundByResourceName(resourceName);
     }
 }
-
-
-
-
-
@@ -1,23 +1,36 @@
 package com.lightalarm.app;
 
 import android.content.Context;
+import android.media.AudioAttributes;
 import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
+
+import com.lightalarm.shared.PcmCache;
+import com.lightalarm.shared.PcmPlayer;
+import com.lightalarm.shared.PreviewEngine;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Manages sound preview playback with 10-second duration limit
+ * Manages sound preview playback with 10-second duration limit.
+ * Previews play from PreviewEngine's warm clips when the list has prefetched them; a sound
+ * never decoded before falls back to an asynchronously prepared MediaPlayer.
  */
 public class SoundPreviewManager {
     private static final String TAG = "SoundPreviewManager";
     private static final int PREVIEW_DURATION_MS = 10000; // 10 seconds
+    private static final float PREVIEW_VOLUME = 0.7f;
     
     private static SoundPreviewManager instance;
     private Context context;
     private MediaPlayer currentPlayer;
+    private PcmPlayer currentPcmPlayer;
+    private PreviewEngine previewEngine;
     private Handler previewHandler;
     private Runnable stopPreviewRunnable;
     private boolean isPlaying = false;
@@ -25,6 +38,7 @@ public class SoundPreviewManager {
     private SoundPreviewManager(Context context) {
         this.context = context;
         this.previewHandler = new Handler(Looper.getMainLooper());
+        this.previewEngine = PreviewEngine.getInstance(AlarmSoundPreroll.pcmCache(context));
     }
     
     public static synchronized SoundPreviewManager getInstance(Context context) {
@@ -42,12 +56,19 @@ public class SoundPreviewManager {
         
         // Stop any currently playing preview
         stopPreview();
+
+        // Previews of sounds already decoded skip MediaPlayer entirely; this also queues the
+        // sound for decoding when it is not
+        if (startPcmPreview(sound, callback)) {
+            return;
+        }
         
         try {
             // Create new MediaPlayer
             currentPlayer = new MediaPlayer();
             currentPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-            currentPlayer.setVolume(0.7f, 0.7f); // 70% volume for preview
+            float volume = PREVIEW_VOLUME * sound.getGain(); // 70% volume for preview, levelled
+            currentPlayer.setVolume(volume, volume);
             
             // Set data source from raw resource
             if (sound.getResourceId() > 0) {
@@ -85,29 +106,25 @@ public class SoundPreviewManager {
                 }
             });
             
-            // Prepare and start
-            currentPlayer.prepare();
-            currentPlayer.start();
-            isPlaying = true;
-            
-            if (callback != null) {
-                callback.onPreviewStarted();
-            }
-            
-            // Schedule automatic stop after 10 seconds
-            stopPreviewRunnable = new Runnable() {
+            // Prepare off the UI thread and start once ready
+            currentPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
                 @Override
-                public void run() {
-                    Log.d(TAG, "Auto-stopping preview after 10 seconds");
-                    stopPreview();
+                public void onPrepared(MediaPlayer mp) {
+                    if (currentPlayer != mp) {
+                        return;
+                    }
+                    mp.start();
+                    isPlaying = true;
+
                     if (callback != null) {
-                        callback.onPreviewStopped();
+                        callback.onPreviewStarted();
                     }
+
+                    scheduleAutoStop(callback);
+                    Log.d(TAG, "Preview started successfully");
                 }
-            };
-            previewHandler.postDelayed(stopPreviewRunnable, PREVIEW_DURATION_MS);
-            
-            Log.d(TAG, "Preview started successfully");
+            });
+            currentPlayer.prepareAsync();
             
         } catch (IOException e) {
             Log.e(TAG, "Failed to start preview", e);
@@ -124,6 +141,79 @@ public class SoundPreviewManager {
         }
     }
     
+    /**
+     * Play the preview from the decoded PCM cache; false if the sound is not cached yet
+     */
+    private boolean startPcmPreview(Sound sound, final PreviewCallback callback) {
+        PcmCache.Clip clip = previewEngine.clip(sound.getResourceId());
+        if (clip == null) {
+            return false;
+        }
+        try {
+            final PcmPlayer player = new PcmPlayer(clip, AudioAttributes.USAGE_MEDIA, false);
+            player.setVolume(PREVIEW_VOLUME * sound.getGain());
+            player.setOnCompletion(new Runnable() {
+                @Override
+                public void run() {
+                    // Completion arrives on the writer thread
+                    previewHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (currentPcmPlayer != player) {
+                                return;
+                            }
+                            Log.d(TAG, "Preview completed naturally");
+                            stopPreview();
+                            if (callback != null) {
+                                callback.onPreviewStopped();
+                            }
+                        }
+                    });
+                }
+            });
+            currentPcmPlayer = player;
+            player.start();
+            isPlaying = true;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "PCM preview failed, falling back to MediaPlayer", e);
+            stopPreview();
+            return false;
+        }
+
+        if (callback != null) {
+            callback.onPreviewStarted();
+        }
+        scheduleAutoStop(callback);
+        Log.d(TAG, "Preview started from PCM cache");
+        return true;
+    }
+
+    private void scheduleAutoStop(final PreviewCallback callback) {
+        // Schedule automatic stop after 10 seconds
+        stopPreviewRunnable = new Runnable() {
+            @Override
+            public void run() {
+                Log.d(TAG, "Auto-stopping preview after 10 seconds");
+                stopPreview();
+                if (callback != null) {
+                    callback.onPreviewStopped();
+                }
+            }
+        };
+        previewHandler.postDelayed(stopPreviewRunnable, PREVIEW_DURATION_MS);
+    }
+    
+    /**
+     * Warm the previews for the rows first..last on screen and a few rows around them
+     */
+    public void prefetch(List<Sound> sounds, int first, int last) {
+        List<Integer> resourceIds = new ArrayList<>(sounds.size());
+        for (Sound sound : sounds) {
+            resourceIds.add(sound.getResourceId());
+        }
+        previewEngine.prefetch(resourceIds, first, last);
+    }
+    
     /**
      * Stop the current preview
      */
@@ -146,6 +236,11 @@ public class SoundPreviewManager {
             }
             currentPlayer = null;
         }
+
+        if (currentPcmPlayer != null) {
+            currentPcmPlayer.release();
+            currentPcmPlayer = null;
+        }
         
         isPlaying = false;
     }
@@ -154,6 +249,9 @@ public class SoundPreviewManager {
      * Check if a preview is currently playing
      */
     public boolean isPlaying() {
+        if (currentPcmPlayer != null) {
+            return isPlaying && currentPcmPlayer.isPlaying();
+        }
         return isPlaying && currentPlayer != null && currentPlayer.isPlaying();
     }
     
@@ -171,6 +269,7 @@ public class SoundPreviewManager {
      */
     public void cleanup() {
         stopPreview();
+        previewEngine.trim();
         if (previewHandler != null) {
             previewHandler.removeCallbacksAndMessages(null);
         }
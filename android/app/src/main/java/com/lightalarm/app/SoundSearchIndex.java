@@ -0,0 +1,272 @@
+package com.lightalarm.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Search over display names and tags of every sound in a catalog, across categories.
+ *
+ * Built once per catalog. Each word of a sound's display name and tags (its category and the words
+ * of its resource name) goes into a prefix trie whose nodes hold the sounds below them, so a typed
+ * prefix resolves in one walk of its characters. Typos and matches inside a word fall back to a
+ * trigram index over the same words. Every query term must match a sound for it to be a result;
+ * results are ranked by how well the terms matched, then by catalog order.
+ */
+public final class SoundSearchIndex {
+
+    // Scores per term, highest first
+    private static final float SCORE_NAME_WORD = 4f;
+    private static final float SCORE_NAME_PREFIX = 3f;
+    private static final float SCORE_TAG_PREFIX = 2f;
+    // A trigram match scores its shared fraction of the term's trigrams
+    private static final float MIN_TRIGRAM_FRACTION = 0.5f;
+    // Bonus when the first name word matches the first term
+    private static final float SCORE_LEADING = 1f;
+
+    private final List<Sound> sounds;
+    private final TrieNode root = new TrieNode();
+    private final Map<String, int[]> trigramPostings = new HashMap<>();
+    // Words of each sound, name words first
+    private final String[][] words;
+    private final int[] nameWordCounts;
+
+    public static final class Result {
+        public final Sound sound;
+        public final float score;
+
+        Result(Sound sound, float score) {
+            this.sound = sound;
+            this.score = score;
+        }
+    }
+
+    /**
+     * One page of results and the total number of matches
+     */
+    public static final class Page {
+        public final List<Result> results;
+        public final int total;
+
+        Page(List<Result> results, int total) {
+            this.results = results;
+            this.total = total;
+        }
+    }
+
+    private static final class TrieNode {
+        final Map<Character, TrieNode> children = new HashMap<>(4);
+        // Sound indexes with a name word or a tag under this prefix, ascending
+        int[] nameHits = new int[0];
+        int[] tagHits = new int[0];
+    }
+
+    SoundSearchIndex(List<Sound> sounds) {
+        this.sounds = sounds;
+        this.words = new String[sounds.size()][];
+        this.nameWordCounts = new int[sounds.size()];
+        Map<String, List<Integer>> trigrams = new HashMap<>();
+        for (int i = 0; i < sounds.size(); i++) {
+            Sound sound = sounds.get(i);
+            List<String> nameWords = tokenize(sound.getDisplayName());
+            List<String> all = new ArrayList<>(nameWords);
+            for (String tag : tags(sound)) {
+                if (!all.contains(tag)) {
+                    all.add(tag);
+                }
+            }
+            words[i] = all.toArray(new String[0]);
+            nameWordCounts[i] = nameWords.size();
+            for (int w = 0; w < all.size(); w++) {
+                boolean isName = w < nameWords.size();
+                insert(all.get(w), i, isName);
+                for (String trigram : trigrams(all.get(w))) {
+                    List<Integer> postings = trigrams.get(trigram);
+                    if (postings == null) {
+                        postings = new ArrayList<>();
+                        trigrams.put(trigram, postings);
+                    }
+                    if (postings.isEmpty() || postings.get(postings.size() - 1) != i) {
+                        postings.add(i);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : trigrams.entrySet()) {
+            trigramPostings.put(entry.getKey(), toArray(entry.getValue()));
+        }
+    }
+
+    /**
+     * Ranked matches for a query, skipping offset results and returning at most limit; an empty
+     * query matches nothing
+     */
+    public Page search(String query, int offset, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || sounds.isEmpty()) {
+            return new Page(Collections.<Result>emptyList(), 0);
+        }
+        float[] scores = null;
+        for (int t = 0; t < terms.size(); t++) {
+            float[] termScores = scoreTerm(terms.get(t), t == 0);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                for (int i = 0; i < scores.length; i++) {
+                    // Every term has to match
+                    scores[i] = scores[i] > 0 && termScores[i] > 0 ? scores[i] + termScores[i] : 0;
+                }
+            }
+        }
+
+        List<Result> matches = new ArrayList<>();
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) {
+                matches.add(new Result(sounds.get(i), scores[i]));
+            }
+        }
+        // Stable, so equal scores keep catalog order
+        Collections.sort(matches, (a, b) -> Float.compare(b.score, a.score));
+
+        int from = Math.min(Math.max(0, offset), matches.size());
+        int to = Math.min(matches.size(), from + Math.max(0, limit));
+        return new Page(Collections.unmodifiableList(new ArrayList<>(matches.subList(from, to))), matches.size());
+    }
+
+    private float[] scoreTerm(String term, boolean leading) {
+        float[] scores = new float[sounds.size()];
+        TrieNode node = root;
+        for (int c = 0; c < term.length() && node != null; c++) {
+            node = node.children.get(term.charAt(c));
+        }
+        if (node != null) {
+            for (int i : node.tagHits) {
+                scores[i] = SCORE_TAG_PREFIX;
+            }
+            for (int i : node.nameHits) {
+                float score = hasWord(i, term) ? SCORE_NAME_WORD : SCORE_NAME_PREFIX;
+                if (leading && nameWordCounts[i] > 0 && words[i][0].startsWith(term)) {
+                    score += SCORE_LEADING;
+                }
+                scores[i] = score;
+            }
+        }
+
+        String[] termTrigrams = trigrams(term);
+        if (term.length() >= 3 && termTrigrams.length > 0) {
+            int[] shared = new int[sounds.size()];
+            for (String trigram : termTrigrams) {
+                int[] postings = trigramPostings.get(trigram);
+                if (postings != null) {
+                    for (int i : postings) {
+                        shared[i]++;
+                    }
+                }
+            }
+            for (int i = 0; i < shared.length; i++) {
+                float fraction = (float) shared[i] / termTrigrams.length;
+                if (scores[i] == 0 && fraction >= MIN_TRIGRAM_FRACTION) {
+                    scores[i] = fraction;
+                }
+            }
+        }
+        return scores;
+    }
+
+    private boolean hasWord(int sound, String term) {
+        for (int w = 0; w < nameWordCounts[sound]; w++) {
+            if (words[sound][w].equals(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(String word, int sound, boolean isName) {
+        TrieNode node = root;
+        for (int c = 0; c < word.length(); c++) {
+            char ch = word.charAt(c);
+            TrieNode child = node.children.get(ch);
+            if (child == null) {
+                child = new TrieNode();
+                node.children.put(ch, child);
+            }
+            node = child;
+            if (isName) {
+                node.nameHits = addHit(node.nameHits, sound);
+            } else {
+                node.tagHits = addHit(node.tagHits, sound);
+            }
+        }
+    }
+
+    // Sounds are inserted in ascending order, so a repeat can only be the last entry
+    private static int[] addHit(int[] hits, int sound) {
+        if (hits.length > 0 && hits[hits.length - 1] == sound) {
+            return hits;
+        }
+        int[] grown = Arrays.copyOf(hits, hits.length + 1);
+        grown[hits.length] = sound;
+        return grown;
+    }
+
+    /**
+     * Category words and the words of the resource name after its category prefix
+     */
+    static List<String> tags(Sound sound) {
+        List<String> tags = new ArrayList<>(tokenize(sound.getCategory()));
+        String resourceName = sound.getResourceName();
+        int prefixEnd = resourceName.indexOf('_');
+        tags.addAll(tokenize(prefixEnd >= 0 ? resourceName.substring(prefixEnd + 1) : resourceName));
+        return tags;
+    }
+
+    /**
+     * Lower-case words of letters and digits
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Distinct trigrams of a word padded with a leading space, so word starts weigh in
+     */
+    static String[] trigrams(String word) {
+        String padded = " " + word;
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            String gram = padded.substring(i, i + 3);
+            if (!grams.contains(gram)) {
+                grams.add(gram);
+            }
+        }
+        return grams.toArray(new String[0]);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
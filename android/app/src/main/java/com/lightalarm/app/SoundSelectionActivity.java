@@ -5,6 +5,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
@@ -21,9 +22,10 @@ import java.util.List;
 public class SoundSelectionActivity extends Activity {
     private static final String TAG = "SoundSelectionActivity";
     
-    private SoundManager soundManager;
+    private SoundCatalog catalog;
     private SoundPreviewManager previewManager;
     private List<Sound> currentSounds;
+    private SoundListAdapter soundListAdapter;
     private Sound selectedSound;
     private String selectedCategory;
     
@@ -42,20 +44,30 @@ public class SoundSelectionActivity extends Activity {
         Log.d(TAG, "SoundSelectionActivity created");
         
         // Initialize managers
-        soundManager = SoundManager.getInstance(this);
         previewManager = SoundPreviewManager.getInstance(this);
         
         // Initialize UI
         initializeUI();
-        setupCategorySpinner();
         setupSoundList();
         setupButtons();
         
-        // Load initial category
-        if (!soundManager.getCategories().isEmpty()) {
-            selectedCategory = soundManager.getCategories().get(0);
-            loadSoundsForCategory(selectedCategory);
-        }
+        // Fill the category spinner once the catalog is loaded
+        SoundManager.getInstance().whenLoaded(new SoundManager.CatalogListener() {
+            @Override
+            public void onCatalogLoaded(SoundCatalog loaded) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                catalog = loaded;
+                setupCategorySpinner();
+                
+                // Load initial category
+                if (!catalog.getCategories().isEmpty()) {
+                    selectedCategory = catalog.getCategories().get(0);
+                    loadSoundsForCategory(selectedCategory);
+                }
+            }
+        });
     }
     
     private void initializeUI() {
@@ -70,7 +82,7 @@ public class SoundSelectionActivity extends Activity {
     }
     
     private void setupCategorySpinner() {
-        List<String> categories = soundManager.getCategories();
+        List<String> categories = catalog.getCategories();
         ArrayAdapter<String> adapter = new ArrayAdapter<>(this, 
             android.R.layout.simple_spinner_item, categories);
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
@@ -103,6 +115,33 @@ public class SoundSelectionActivity extends Activity {
                 Log.d(TAG, "Selected sound: " + selectedSound.getDisplayName());
             }
         });
+
+        // Warm the previews of the rows coming into view so tapping play starts at once
+        soundListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            private List<Sound> prefetchedSounds;
+            private int prefetchedFirst = -1;
+            private int prefetchedLast = -1;
+
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+                // Prefetch follows the visible rows in onScroll
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (currentSounds == null || visibleItemCount == 0) {
+                    return;
+                }
+                int last = firstVisibleItem + visibleItemCount - 1;
+                if (currentSounds == prefetchedSounds && firstVisibleItem == prefetchedFirst && last == prefetchedLast) {
+                    return;
+                }
+                prefetchedSounds = currentSounds;
+                prefetchedFirst = firstVisibleItem;
+                prefetchedLast = last;
+                previewManager.prefetch(currentSounds, firstVisibleItem, last);
+            }
+        });
     }
     
     private void setupButtons() {
@@ -132,11 +171,14 @@ public class SoundSelectionActivity extends Activity {
     
     private void loadSoundsForCategory(String category) {
         Log.d(TAG, "Loading sounds for category: " + category);
-        currentSounds = soundManager.getSoundsForCategory(category);
+        currentSounds = catalog.getSoundsForCategory(category);
         
         // Create adapter for sound list
-        SoundListAdapter adapter = new SoundListAdapter(this, currentSounds, previewManager);
-        soundListView.setAdapter(adapter);
+        if (soundListAdapter != null) {
+            soundListAdapter.release();
+        }
+        soundListAdapter = new SoundListAdapter(this, currentSounds, previewManager);
+        soundListView.setAdapter(soundListAdapter);
         
         Log.d(TAG, "Loaded " + currentSounds.size() + " sounds for " + category);
     }
@@ -152,8 +194,11 @@ public class SoundSelectionActivity extends Activity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Stop any playing preview
-        previewManager.stopPreview();
+        // Stop any playing preview and drop the warm clips
+        previewManager.cleanup();
+        if (soundListAdapter != null) {
+            soundListAdapter.release();
+        }
         Log.d(TAG, "SoundSelectionActivity destroyed");
     }
     
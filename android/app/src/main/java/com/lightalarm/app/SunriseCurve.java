@@ -0,0 +1,115 @@
+package com.lightalarm.app;
+
+/**
+ * Precomputed sunrise brightness ramp.
+ *
+ * Brightness follows a gamma curve, level = min + (max - min) * (t / T)^gamma, so perceived
+ * brightness rises evenly rather than jumping early as a linear ramp does. The curve is inverted
+ * once into a table of the elapsed time at which each quantized level starts; a tick is then a
+ * binary search over that table, with no allocation, and the next tick can be posted exactly when
+ * the next level (or the next whole percent of progress) is due.
+ */
+public final class SunriseCurve {
+    public static final int DEFAULT_MIN_LEVEL = 10;
+    public static final int DEFAULT_MAX_LEVEL = 255;
+    public static final double DEFAULT_GAMMA = 2.2;
+
+    private final long durationMs;
+    private final int minLevel;
+    private final int steps;
+    private final double gamma;
+    // stepAt[i] = elapsed ms at which the level becomes minLevel + i
+    private final long[] stepAt;
+
+    public SunriseCurve(long durationMs) {
+        this(durationMs, DEFAULT_MIN_LEVEL, DEFAULT_MAX_LEVEL, DEFAULT_GAMMA);
+    }
+
+    public SunriseCurve(long durationMs, int minLevel, int maxLevel, double gamma) {
+        if (durationMs <= 0 || maxLevel < minLevel) {
+            throw new IllegalArgumentException("Invalid sunrise curve " + durationMs + "ms " + minLevel + ".." + maxLevel);
+        }
+        this.durationMs = durationMs;
+        this.minLevel = minLevel;
+        this.steps = maxLevel - minLevel;
+        this.gamma = gamma;
+        this.stepAt = new long[steps + 1];
+        for (int i = 1; i <= steps; i++) {
+            // Level rounds up to minLevel + i once the curve passes i - 0.5 steps
+            double fraction = Math.pow((i - 0.5) / steps, 1.0 / gamma);
+            stepAt[i] = Math.max(stepAt[i - 1] + 1, (long) Math.ceil(fraction * durationMs));
+        }
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public int getMinLevel() {
+        return minLevel;
+    }
+
+    public int getMaxLevel() {
+        return minLevel + stepAt.length - 1;
+    }
+
+    /**
+     * Number of distinct level changes over the whole ramp
+     */
+    public int getStepCount() {
+        return stepAt.length - 1;
+    }
+
+    /**
+     * Quantized brightness level at the given elapsed time
+     */
+    public int levelAt(long elapsedMs) {
+        int low = 0;
+        int high = stepAt.length - 1;
+        // Last step whose start is at or before elapsedMs
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (stepAt[mid] <= elapsedMs) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return minLevel + low;
+    }
+
+    /**
+     * Unquantized brightness on the same curve as a 0..1 window brightness, for sinks that can
+     * apply fractional values every frame
+     */
+    public float fractionAt(long elapsedMs) {
+        double x = Math.min(1.0, Math.max(0.0, (double) elapsedMs / durationMs));
+        return (float) ((minLevel + steps * Math.pow(x, gamma)) / 255.0);
+    }
+
+    /**
+     * Whole percent of the ramp completed, 0..100
+     */
+    public int progressAt(long elapsedMs) {
+        if (elapsedMs >= durationMs) {
+            return 100;
+        }
+        return elapsedMs <= 0 ? 0 : (int) (elapsedMs * 100 / durationMs);
+    }
+
+    /**
+     * Elapsed time of the next level change or whole percent after elapsedMs, whichever comes
+     * first; durationMs once the ramp is complete
+     */
+    public long nextTickAt(long elapsedMs) {
+        if (elapsedMs >= durationMs) {
+            return durationMs;
+        }
+        int level = levelAt(elapsedMs) - minLevel;
+        long nextLevel = level + 1 < stepAt.length ? stepAt[level + 1] : durationMs;
+        int progress = progressAt(elapsedMs);
+        // First whole-percent boundary strictly after elapsedMs
+        long nextPercent = ((progress + 1) * durationMs + 99) / 100;
+        return Math.min(Math.min(nextLevel, nextPercent), durationMs);
+    }
+}
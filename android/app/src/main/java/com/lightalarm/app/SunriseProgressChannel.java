@@ -0,0 +1,56 @@
+package com.lightalarm.app;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process sunrise progress: the latest value in an atomic plus a copy-on-write listener list.
+ *
+ * Replaces the global SUNRISE_UPDATE broadcast, which woke other apps' receivers for a value only
+ * this process reads. Publishing is lock-free and only notifies when the value changes; listeners
+ * run on the publisher's thread and should read current() when they get round to it, so a slow
+ * consumer naturally skips stale values.
+ */
+public final class SunriseProgressChannel {
+    /** No sunrise is running */
+    public static final int IDLE = -1;
+
+    public interface Listener {
+        void onSunriseProgress(int progress);
+    }
+
+    private static final SunriseProgressChannel INSTANCE = new SunriseProgressChannel();
+
+    private final AtomicInteger progress = new AtomicInteger(IDLE);
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private SunriseProgressChannel() {
+    }
+
+    public static SunriseProgressChannel getInstance() {
+        return INSTANCE;
+    }
+
+    public void publish(int value) {
+        if (progress.getAndSet(value) != value) {
+            for (Listener listener : listeners) {
+                listener.onSunriseProgress(value);
+            }
+        }
+    }
+
+    /**
+     * Latest progress 0..100, or IDLE
+     */
+    public int current() {
+        return progress.get();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
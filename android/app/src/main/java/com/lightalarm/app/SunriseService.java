@@ -12,6 +12,7 @@ import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 import androidx.core.app.NotificationCompat;
@@ -25,10 +26,19 @@ public class SunriseService extends Service {
     private Handler handler;
     private long startTime;
     private String alarmSound;
+    private long alarmId = -1;
     private boolean isRunning = false;
     private static final int MAX_RESTART_ATTEMPTS = 3;
+    // How long before the end of the sunrise the alarm sound is prepared
+    private static final long SOUND_PREROLL_LEAD_MS = 2 * AlarmTimes.MINUTE_MS;
     private int restartCount = 0;
     private int originalBrightness = -1; // Store original brightness to restore later
+    private final SunriseCurve curve = new SunriseCurve(AlarmTimes.LIGHT_LEAD_MS);
+    private int currentBrightness = -1;
+    private int brightnessWrites = 0;
+    private int lastProgress = -1;
+    private boolean soundPrerolled = false;
+    private boolean soundHandedOff = false;
     
     @Override
     public void onCreate() {
@@ -52,6 +62,16 @@ public class SunriseService extends Service {
 
         if (intent != null) {
             alarmSound = intent.getStringExtra("alarm_sound");
+            alarmId = intent.getLongExtra("alarm_id", -1);
+            FireLatencyRecorder.stamp(this, FireLatencyRecorder.STAGE_SERVICE, alarmId,
+                intent.getLongExtra(ChainedAlarmScheduler.EXTRA_TRIGGER_AT, -1));
+            if (alarmSound == null && alarmId != -1 && DirectBootStorage.canReadAlarms(this)) {
+                // Restarted without extras - recover the sound from the shared alarm cache
+                AlarmRecord record = AlarmCache.getInstance(this).get(String.valueOf(alarmId));
+                if (record != null) {
+                    alarmSound = record.getSoundResourceName();
+                }
+            }
             Log.d(TAG, "🎵 Alarm sound resource: " + alarmSound);
             Log.d(TAG, "📋 Intent extras: " + (intent.getExtras() != null ? intent.getExtras().toString() : "none"));
         } else {
@@ -74,7 +94,7 @@ public class SunriseService extends Service {
         Log.d(TAG, "💡 ORIGINAL SCREEN BRIGHTNESS STORED: " + originalBrightness);
 
         // Set initial dim brightness for light simulation
-        setScreenBrightness(10); // Start with very dim (10/255)
+        setScreenBrightness(curve.getMinLevel()); // Start with very dim (10/255)
         Log.d(TAG, "🌅 INITIAL BRIGHTNESS SET: 10/255 (4% of max)");
         Log.d(TAG, "🎯 LIGHT STIMULATION: Starting 20-minute brightness progression");
 
@@ -82,8 +102,13 @@ public class SunriseService extends Service {
         Log.d(TAG, "🔍 DEBUG: Launching MainActivity fullscreen");
         launchMainActivity();
         
-        // Start updating brightness/color every 2 seconds
-        startTime = System.currentTimeMillis();
+        // Step brightness along the precomputed sunrise curve
+        startTime = SystemClock.elapsedRealtime();
+        lastProgress = -1;
+        soundPrerolled = false;
+        soundHandedOff = false;
+        // A visible MainActivity drives its window brightness from the same curve position
+        BrightnessController.getInstance().startSunrise(curve, startTime, resumeHeadless);
         handler = new Handler(Looper.getMainLooper());
         isRunning = true;
         updateSimulation();
@@ -92,41 +117,50 @@ public class SunriseService extends Service {
         return START_STICKY; // Restart if killed - ensures alarm reliability
     }
     
+    // Ticks land on the exact moments the curve steps, instead of polling every 2 seconds
     private final Runnable simulationRunnable = new Runnable() {
         @Override
         public void run() {
             if (!isRunning) return;
 
-            long elapsed = System.currentTimeMillis() - startTime;
-            int progress = (int) ((elapsed / (20.0 * 60 * 1000)) * 100);
-            progress = Math.min(progress, 100);
-
-            Log.d(TAG, "🔍 DEBUG: Sunrise progress: " + progress + "% (elapsed: " + elapsed + "ms)");
-
-            // Calculate brightness based on progress (0-100% = 10-255 brightness)
-            int targetBrightness = 10 + (progress * 245 / 100); // 10 to 255 range
-            targetBrightness = Math.min(targetBrightness, 255);
-            targetBrightness = Math.max(targetBrightness, 10);
-
-            try {
-                Log.d(TAG, "🔍 DEBUG: Setting screen brightness to: " + targetBrightness);
-                setScreenBrightness(targetBrightness);
-                Log.d(TAG, "✅ Screen brightness updated to: " + targetBrightness);
-            } catch (Exception e) {
-                Log.e(TAG, "❌ Failed to set screen brightness", e);
+            long elapsed = SystemClock.elapsedRealtime() - startTime;
+            int level = curve.levelAt(elapsed);
+            if (level != currentBrightness && !BrightnessController.getInstance().isWindowDriven()) {
+                // Headless: each write is a cross-process settings call, so only on a real level change
+                setScreenBrightness(level);
             }
 
+            int progress = curve.progressAt(elapsed);
             if (progress >= 100) {
-                Log.d(TAG, "Sunrise complete, triggering sound alarm");
+                Log.d(TAG, "Sunrise complete after " + brightnessWrites + " brightness writes, triggering sound alarm");
                 triggerSoundAlarm();
                 stopSelf();
                 return;
             }
 
-            broadcastProgress(progress);
+            if (progress != lastProgress) {
+                lastProgress = progress;
+                broadcastProgress(progress);
+            }
 
-            // Re-schedule the same runnable
-            handler.postDelayed(this, 2000);
+            if (!soundPrerolled && elapsed >= curve.getDurationMs() - SOUND_PREROLL_LEAD_MS) {
+                // Open and prepare the alarm sound now so AlarmService only has to start it
+                soundPrerolled = true;
+                AlarmSoundPreroll.getInstance().prepare(SunriseService.this, alarmId, alarmSound);
+            }
+
+            handler.postDelayed(this, curve.nextTickAt(elapsed) - elapsed);
+        }
+    };
+
+    // The window sink is going away: tick now so Settings holds the current level, not a stale one
+    private final Runnable resumeHeadless = new Runnable() {
+        @Override
+        public void run() {
+            if (!isRunning) return;
+            currentBrightness = -1;
+            handler.removeCallbacks(simulationRunnable);
+            simulationRunnable.run();
         }
     };
 
@@ -137,10 +171,9 @@ public class SunriseService extends Service {
     }
     
     private void broadcastProgress(int progress) {
-        Intent intent = new Intent("com.lightalarm.app.SUNRISE_UPDATE");
-        intent.putExtra("progress", progress);
-        sendBroadcast(intent);
-        Log.d(TAG, "🔍 DEBUG: Broadcasted progress: " + progress);
+        // In-process only; the plugin coalesces these to the display frame rate for JS
+        SunriseProgressChannel.getInstance().publish(progress);
+        Log.d(TAG, "🔍 DEBUG: Published progress: " + progress);
     }
     
     private void launchMainActivity() {
@@ -182,10 +215,12 @@ public class SunriseService extends Service {
     }
     
     private void triggerSoundAlarm() {
+        soundHandedOff = true;
         // Start AlarmService for sound
         Intent serviceIntent = new Intent(this, AlarmService.class);
         serviceIntent.putExtra("alarm_type", "sound");
         serviceIntent.putExtra("alarm_sound", alarmSound);
+        serviceIntent.putExtra("alarm_id", alarmId);
         startService(serviceIntent);
         Log.d(TAG, "Sound alarm triggered");
     }
@@ -228,6 +263,12 @@ public class SunriseService extends Service {
     public void onDestroy() {
         Log.d(TAG, "SunriseService destroyed");
         isRunning = false;
+        BrightnessController.getInstance().stopSunrise();
+        if (!soundHandedOff) {
+            // Stopped before the sound phase, so nobody will take the pre-rolled player
+            AlarmSoundPreroll.getInstance().release();
+        }
+        SunriseProgressChannel.getInstance().publish(SunriseProgressChannel.IDLE);
 
         // Restore original brightness
         if (originalBrightness != -1) {
@@ -262,11 +303,12 @@ public class SunriseService extends Service {
 
     // Set screen brightness (0-255)
     private void setScreenBrightness(int brightness) {
+        currentBrightness = brightness;
         try {
             // Check if we can write settings
             if (Settings.System.canWrite(this)) {
                 Settings.System.putInt(getContentResolver(), Settings.System.SCREEN_BRIGHTNESS, brightness);
-                Log.d(TAG, "Screen brightness set to: " + brightness);
+                brightnessWrites++;
             } else {
                 Log.w(TAG, "Cannot write settings - WRITE_SETTINGS permission not granted");
                 Log.w(TAG, "Brightness control requires WRITE_SETTINGS permission");
@@ -0,0 +1,84 @@
+package com.lightalarm.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Re-registers only the alarms whose next trigger moved after the wall clock was set or the
+ * time zone changed.
+ *
+ * Registrations are absolute epoch millis, so a clock or zone change leaves them stale. The
+ * engine (or the chain in chained mode) recomputes each rule in the new zone and reports which
+ * triggers actually differ. Ordinary DST transitions need nothing here: every trigger is already
+ * resolved on its own local day by AlarmTimes.
+ */
+public class TimeChangeReceiver extends BroadcastReceiver {
+    private static final String TAG = "TimeChangeReceiver";
+
+    private static final String ACTION_TIME_SET = "android.intent.action.TIME_SET";
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (!ACTION_TIME_SET.equals(action) && !Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+            return;
+        }
+        // The broadcast carries the new zone; the process default may not have caught up yet
+        String zoneId = intent.getStringExtra("time-zone");
+        final TimeZone zone = zoneId != null ? TimeZone.getTimeZone(zoneId) : TimeZone.getDefault();
+        if (zoneId != null) {
+            TimeZone.setDefault(zone);
+        }
+        if (!DirectBootStorage.canReadAlarms(context)) {
+            // Nothing is registered yet; BOOT_COMPLETED restores the alarms against the new clock
+            Log.d(TAG, "🔒 " + action + " before unlock with no device-protected alarms, nothing to move");
+            return;
+        }
+        Log.d(TAG, "🕐 " + action + ", rescheduling against " + zone.getID());
+
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+        EXECUTOR.execute(() -> {
+            try {
+                reschedule(appContext, zone);
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Error rescheduling alarms after clock change", e);
+            } finally {
+                result.finish();
+            }
+        });
+    }
+
+    private static void reschedule(Context context, TimeZone zone) {
+        long started = SystemClock.elapsedRealtime();
+        if (ChainedAlarmScheduler.isEnabled(context)) {
+            int moved = ChainedAlarmScheduler.onClockChanged(context, zone);
+            // The engine still drives the warm-up slot in chained mode
+            NextAlarmEngine.getInstance(context).onClockChanged(zone, System.currentTimeMillis());
+            AlarmPrewarm.reschedule(context);
+            Log.d(TAG, "🔗 " + moved + " chained alarms moved in " + (SystemClock.elapsedRealtime() - started) + " ms");
+            return;
+        }
+
+        long[] changed = NextAlarmEngine.getInstance(context).onClockChanged(zone, System.currentTimeMillis());
+        AlarmCache cache = AlarmCache.getInstance(context);
+        for (long alarmId : changed) {
+            AlarmRecord alarm = cache.get(String.valueOf(alarmId));
+            if (alarm != null && alarm.isEnabled()) {
+                AlarmService.registerAlarm(context, alarm);
+            }
+        }
+        AlarmPrewarm.reschedule(context);
+        Log.d(TAG, "✅ " + changed.length + " of " + NextAlarmEngine.getInstance(context).size()
+            + " alarms re-registered in " + (SystemClock.elapsedRealtime() - started) + " ms");
+    }
+}
@@ -0,0 +1,149 @@
+package com.lightalarm.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed native-to-WebView events, queued until the page says it is listening.
+ *
+ * Events posted before the JS side calls AlarmService.markEventsReady() are held and then
+ * delivered together as one batch, instead of guessing WebView readiness with fixed delays.
+ * showWakeScreen is delivered at most once per wake episode, and queued sunrise progress keeps
+ * only its latest value.
+ */
+public final class WebEventBus {
+
+    public enum Type {
+        ALARM_FIRED("alarmFired"),
+        SHOW_WAKE_SCREEN("showWakeScreen"),
+        SUNRISE_PROGRESS("sunriseProgress"),
+        LIGHT_SIMULATION("com.lightalarm.app.DIRECT_LIGHT_SIMULATION"),
+        SOUND_ALARM("com.lightalarm.app.DIRECT_SOUND_ALARM");
+
+        /** Name of the window event the page dispatches for it */
+        public final String jsName;
+
+        Type(String jsName) {
+            this.jsName = jsName;
+        }
+    }
+
+    public static final class Event {
+        public final Type type;
+        public final Map<String, Object> detail;
+
+        private Event(Type type, Map<String, Object> detail) {
+            this.type = type;
+            this.detail = Collections.unmodifiableMap(detail);
+        }
+
+        private static Event of(Type type, String key, Object value) {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put(key, value);
+            return new Event(type, detail);
+        }
+
+        public static Event alarmFired(long alarmId, long scheduledAt) {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("alarmId", alarmId);
+            detail.put("scheduledAt", scheduledAt);
+            return new Event(Type.ALARM_FIRED, detail);
+        }
+
+        public static Event showWakeScreen(String type) {
+            return of(Type.SHOW_WAKE_SCREEN, "type", type);
+        }
+
+        public static Event sunriseProgress(int progress) {
+            return of(Type.SUNRISE_PROGRESS, "progress", progress);
+        }
+
+        public static Event lightSimulation(String alarmSound) {
+            return of(Type.LIGHT_SIMULATION, "alarmSound", alarmSound);
+        }
+
+        public static Event soundAlarm(String alarmSound) {
+            return of(Type.SOUND_ALARM, "alarmSound", alarmSound);
+        }
+    }
+
+    /**
+     * Receives events in posting order; called with the bus lock held
+     */
+    public interface Sink {
+        void deliver(List<Event> batch);
+    }
+
+    private static final WebEventBus INSTANCE = new WebEventBus();
+
+    private final List<Event> pending = new ArrayList<>();
+    private Sink sink;
+    private boolean ready = false;
+    private boolean wakeScreenPosted = false;
+
+    WebEventBus() {
+    }
+
+    public static WebEventBus getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void post(Event event) {
+        if (event.type == Type.SHOW_WAKE_SCREEN) {
+            if (wakeScreenPosted) {
+                return;
+            }
+            wakeScreenPosted = true;
+        }
+        if (ready && sink != null) {
+            sink.deliver(Collections.singletonList(event));
+            return;
+        }
+        if (event.type == Type.SUNRISE_PROGRESS) {
+            // Only the latest queued progress matters
+            for (int i = pending.size() - 1; i >= 0; i--) {
+                if (pending.get(i).type == Type.SUNRISE_PROGRESS) {
+                    pending.remove(i);
+                }
+            }
+        }
+        pending.add(event);
+    }
+
+    /**
+     * The page is listening: flush everything queued in one batch and deliver directly from now on
+     */
+    public synchronized void markReady(Sink sink) {
+        this.sink = sink;
+        ready = true;
+        if (!pending.isEmpty()) {
+            List<Event> batch = new ArrayList<>(pending);
+            pending.clear();
+            sink.deliver(batch);
+        }
+    }
+
+    /**
+     * The page or plugin went away; queue again until the next markReady
+     */
+    public synchronized void detach(Sink sink) {
+        if (this.sink == sink) {
+            this.sink = null;
+            ready = false;
+        }
+    }
+
+    /**
+     * Start a new wake episode, so the next showWakeScreen goes through
+     */
+    public synchronized void resetWakeScreen() {
+        wakeScreenPosted = false;
+    }
+
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,74 @@
+package com.lightalarm.app;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.Window;
+import android.view.WindowManager;
+
+/**
+ * Sunrise brightness applied to one window's screenBrightness on every display frame.
+ *
+ * Needs no WRITE_SETTINGS, makes no settings-provider IPC and leaves the user's own brightness
+ * untouched; the override ends with the window. Frames where the value moved by less than a
+ * 1/1024 step skip the layout update.
+ */
+final class WindowBrightnessSink implements BrightnessController.Sink, Choreographer.FrameCallback {
+    private static final float MIN_CHANGE = 1f / 1024;
+
+    private final Window window;
+    private SunriseCurve curve;
+    private long startElapsed;
+    private float applied = WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE;
+    private boolean running = false;
+
+    WindowBrightnessSink(Window window) {
+        this.window = window;
+    }
+
+    @Override
+    public void start(SunriseCurve curve, long startElapsed) {
+        this.curve = curve;
+        this.startElapsed = startElapsed;
+        if (!running) {
+            running = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (running) {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+        setBrightness(WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        long elapsed = SystemClock.elapsedRealtime() - startElapsed;
+        float brightness = curve.fractionAt(elapsed);
+        if (Math.abs(brightness - applied) >= MIN_CHANGE) {
+            setBrightness(brightness);
+        }
+        if (elapsed < curve.getDurationMs()) {
+            Choreographer.getInstance().postFrameCallback(this);
+        } else {
+            // Hold full brightness until the sunrise is stopped
+            running = false;
+        }
+    }
+
+    private void setBrightness(float brightness) {
+        if (brightness == applied) {
+            return;
+        }
+        WindowManager.LayoutParams params = window.getAttributes();
+        params.screenBrightness = brightness;
+        window.setAttributes(params);
+        applied = brightness;
+    }
+}
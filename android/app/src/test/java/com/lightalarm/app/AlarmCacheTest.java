@@ -0,0 +1,109 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The in-memory alarm view over a real AlarmStore: snapshots, listeners, and writes reaching the
+ * log after flush() even when several threads race on the same alarms.
+ */
+public class AlarmCacheTest {
+
+    @Test
+    public void writesReachTheStoreAfterFlush() throws IOException {
+        File file = AlarmStoreTest.tempFile();
+        AlarmCache cache = new AlarmCache(AlarmStoreTest.openStore(file));
+        cache.put(AlarmStoreTest.alarm("1", "chimes"));
+        cache.put(AlarmStoreTest.alarm("2", "birds"));
+        cache.setEnabled("1", false);
+        assertTrue(cache.remove("2"));
+        assertFalse(cache.remove("2"));
+        cache.applyBatch(Arrays.asList(AlarmStoreTest.alarm("3", "waves"), AlarmStoreTest.alarm("4", "bells")),
+            Collections.singletonList("1"));
+        assertTrue(cache.flush(5000));
+
+        AlarmStore reloaded = AlarmStoreTest.openStore(file);
+        assertEquals(2, reloaded.size());
+        assertNull(reloaded.get("1"));
+        assertEquals("waves", reloaded.get("3").getSoundResourceName());
+        assertEquals("bells", reloaded.get("4").getSoundResourceName());
+    }
+
+    @Test
+    public void snapshotsAreImmutableAndVersioned() throws IOException {
+        AlarmCache cache = new AlarmCache(AlarmStoreTest.openStore(AlarmStoreTest.tempFile()));
+        cache.put(AlarmStoreTest.alarm("1", "chimes"));
+        AlarmCache.Snapshot before = cache.snapshot();
+        cache.put(AlarmStoreTest.alarm("2", "birds"));
+
+        assertEquals(1, before.size());
+        assertEquals(2, cache.snapshot().size());
+        assertTrue(cache.snapshot().getVersion() > before.getVersion());
+        // Setting the same flag again is not a change
+        assertSame(cache.get("1"), cache.setEnabled("1", true));
+        assertNull(cache.setEnabled("9", false));
+    }
+
+    @Test
+    public void listenersHearEachIdWithItsLatestValue() throws IOException {
+        AlarmCache cache = new AlarmCache(AlarmStoreTest.openStore(AlarmStoreTest.tempFile()));
+        final List<String> heard = new ArrayList<>();
+        cache.addListener(new AlarmCache.Listener() {
+            @Override
+            public void onAlarmChanged(String alarmId, AlarmRecord record) {
+                heard.add(alarmId + "=" + (record != null ? record.getSoundResourceName() : null));
+            }
+        });
+        cache.put(AlarmStoreTest.alarm("1", "chimes"));
+        cache.applyBatch(Collections.singletonList(AlarmStoreTest.alarm("2", "birds")),
+            Collections.singletonList("1"));
+
+        assertEquals(Arrays.asList("1=chimes", "2=birds", "1=null"), heard);
+    }
+
+    @Test
+    public void concurrentWritersConvergeInTheStore() throws Exception {
+        File file = AlarmStoreTest.tempFile();
+        final AlarmCache cache = new AlarmCache(AlarmStoreTest.openStore(file));
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int writer = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 200; i++) {
+                        cache.put(AlarmStoreTest.alarm(String.valueOf(i % 20), "sound" + writer + "_" + i));
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(cache.flush(5000));
+
+        AlarmStore reloaded = AlarmStoreTest.openStore(file);
+        assertEquals(20, reloaded.size());
+        for (AlarmRecord record : cache.getAll()) {
+            assertEquals(record.getSoundResourceName(), reloaded.get(record.getId()).getSoundResourceName());
+        }
+    }
+}
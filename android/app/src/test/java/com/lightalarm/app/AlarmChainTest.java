@@ -0,0 +1,205 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Drives AlarmChain against a fake single-slot AlarmManager and checks that every light and
+ * sound occurrence is delivered exactly once, through late deliveries, edits and process kills.
+ */
+public class AlarmChainTest {
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/New_York");
+    private static final long START = 1710043200000L; // 2024-03-10 00:00 EST, spring-forward day
+    private static final long END = START + 3 * AlarmTimes.DAY_MS;
+
+    /**
+     * Stand-in for AlarmManager with one PendingIntent slot: arming replaces the previous trigger
+     */
+    private static final class FakeAlarmManager implements AlarmChain.Sink {
+        long triggerAt = OccurrenceHeap.NO_TIME;
+        long alarmId;
+        int phase;
+        int armCalls;
+
+        @Override
+        public void arm(long triggerAt, long alarmId, int phase) {
+            this.triggerAt = triggerAt;
+            this.alarmId = alarmId;
+            this.phase = phase;
+            armCalls++;
+        }
+
+        @Override
+        public void disarm() {
+            triggerAt = OccurrenceHeap.NO_TIME;
+        }
+
+        boolean isArmed() {
+            return triggerAt != OccurrenceHeap.NO_TIME;
+        }
+    }
+
+    @Test
+    public void onlyEarliestTriggerIsArmed() {
+        FakeAlarmManager alarmManager = new FakeAlarmManager();
+        AlarmChain chain = new AlarmChain(alarmManager, ZONE, START, 0);
+        long seven = chain.schedule(1, AlarmTimes.minuteOfDay(7, 0), START);
+        chain.schedule(2, AlarmTimes.minuteOfDay(9, 0), START);
+
+        assertEquals(4, chain.size());
+        assertEquals("second alarm is later, so the slot is left alone", 1, alarmManager.armCalls);
+        assertEquals(seven - AlarmTimes.LIGHT_LEAD_MS, alarmManager.triggerAt);
+        assertEquals(1, alarmManager.alarmId);
+        assertEquals(AlarmChain.PHASE_LIGHT, alarmManager.phase);
+
+        chain.cancel(1);
+        assertEquals(2, alarmManager.alarmId);
+        chain.cancel(2);
+        assertFalse(alarmManager.isArmed());
+    }
+
+    @Test
+    public void staleDeliveryIsRejectedAndSlotRearmed() {
+        FakeAlarmManager alarmManager = new FakeAlarmManager();
+        AlarmChain chain = new AlarmChain(alarmManager, ZONE, START, 0);
+        chain.schedule(1, AlarmTimes.minuteOfDay(7, 0), START);
+        long lightAt = alarmManager.triggerAt;
+
+        assertTrue(chain.onFired(1, AlarmChain.PHASE_LIGHT, lightAt));
+        assertFalse(chain.onFired(1, AlarmChain.PHASE_LIGHT, lightAt));
+        assertEquals(AlarmChain.PHASE_SOUND, alarmManager.phase);
+
+        // Moving the alarm after its light phase ran must not replay the light phase
+        chain.schedule(1, AlarmTimes.minuteOfDay(6, 59), lightAt + AlarmTimes.MINUTE_MS);
+        assertEquals(AlarmChain.PHASE_SOUND, alarmManager.phase);
+        assertEquals(1, chain.size());
+    }
+
+    @Test
+    public void noOccurrenceLostWithLateDeliveriesAndProcessKills() {
+        Random random = new Random(2024);
+        List<AlarmRecord> alarms = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Minute-level collisions are likely, so ties between alarms and phases are exercised
+            int hour = 1 + random.nextInt(12);
+            alarms.add(new AlarmRecord(String.valueOf(1000 + i), hour, random.nextInt(4) * 15,
+                random.nextBoolean() ? "AM" : "PM", "default", "sunrise", true, new String[0]));
+        }
+
+        FakeAlarmManager alarmManager = new FakeAlarmManager();
+        // Everything up to and including START counts as delivered
+        AlarmChain chain = new AlarmChain(alarmManager, ZONE, START, Long.MAX_VALUE);
+        chain.rebuild(alarms, START);
+
+        Set<String> delivered = new HashSet<>();
+        long now = START;
+        long lastTime = Long.MIN_VALUE;
+        while (alarmManager.isArmed() && alarmManager.triggerAt <= END) {
+            // AlarmManager may deliver late (doze), never early
+            now = Math.max(now, alarmManager.triggerAt) + (random.nextInt(20) == 0 ? random.nextInt(120000) : 0);
+            long triggerAt = alarmManager.triggerAt;
+            long alarmId = alarmManager.alarmId;
+            int phase = alarmManager.phase;
+            assertTrue("triggers go backwards", triggerAt >= lastTime);
+            lastTime = triggerAt;
+
+            if (random.nextInt(25) == 0) {
+                // Process killed before the receiver ran: a new chain is rebuilt from the persisted cursor
+                chain = new AlarmChain(alarmManager, ZONE, chain.getCursorTime(), chain.getCursorKey());
+                chain.rebuild(alarms, now);
+            }
+
+            assertTrue("lost " + occurrence(alarmId, phase, triggerAt), chain.onFired(alarmId, phase, triggerAt));
+            assertTrue("duplicate delivery", delivered.add(occurrence(alarmId, phase, triggerAt)));
+            // A second delivery of the same intent must be ignored
+            assertFalse(chain.onFired(alarmId, phase, triggerAt));
+        }
+
+        Set<String> missing = expectedOccurrences(alarms);
+        missing.removeAll(delivered);
+        assertTrue("missing " + missing, missing.isEmpty());
+        delivered.removeAll(expectedOccurrences(alarms));
+        assertTrue("unexpected " + delivered, delivered.isEmpty());
+    }
+
+    @Test
+    public void editsBetweenDeliveriesKeepUntouchedAlarms() {
+        Random random = new Random(99);
+        Map<Long, Integer> minuteOfDay = new HashMap<>();
+        FakeAlarmManager alarmManager = new FakeAlarmManager();
+        AlarmChain chain = new AlarmChain(alarmManager, ZONE, START, 0);
+        for (long id = 1; id <= 100; id++) {
+            int mod = random.nextInt(24 * 60);
+            minuteOfDay.put(id, mod);
+            chain.schedule(id, mod, START);
+        }
+
+        Set<Long> edited = new HashSet<>();
+        Map<Long, Integer> deliveredSounds = new HashMap<>();
+        long now = START;
+        while (alarmManager.isArmed() && alarmManager.triggerAt <= END) {
+            now = Math.max(now, alarmManager.triggerAt);
+            long alarmId = alarmManager.alarmId;
+            int phase = alarmManager.phase;
+            assertTrue(chain.onFired(alarmId, phase, alarmManager.triggerAt));
+            if (phase == AlarmChain.PHASE_SOUND) {
+                deliveredSounds.merge(alarmId, 1, Integer::sum);
+            }
+
+            if (random.nextInt(4) == 0) {
+                long victim = 1 + random.nextInt(100);
+                edited.add(victim);
+                if (random.nextBoolean()) {
+                    chain.cancel(victim);
+                } else {
+                    chain.schedule(victim, random.nextInt(24 * 60), now);
+                }
+            }
+        }
+
+        for (long id = 1; id <= 100; id++) {
+            if (!edited.contains(id)) {
+                int expected = 0;
+                for (long soundAt = AlarmTimes.nextDailyTrigger(minuteOfDay.get(id), START, ZONE); soundAt <= END;
+                        soundAt = AlarmTimes.nextDailyTrigger(minuteOfDay.get(id), soundAt, ZONE)) {
+                    expected++;
+                }
+                assertEquals("alarm " + id, Integer.valueOf(expected), deliveredSounds.get(id));
+            }
+        }
+    }
+
+    private static Set<String> expectedOccurrences(List<AlarmRecord> alarms) {
+        Set<String> expected = new HashSet<>();
+        for (AlarmRecord alarm : alarms) {
+            long alarmId = Long.parseLong(alarm.getId());
+            int mod = AlarmTimes.minuteOfDay(AlarmTimes.to24Hour(alarm.getHour(), alarm.getAmPm()), alarm.getMinute());
+            long soundAt = AlarmTimes.nextDailyTrigger(mod, START, ZONE);
+            while (soundAt - AlarmTimes.LIGHT_LEAD_MS <= END) {
+                long lightAt = soundAt - AlarmTimes.LIGHT_LEAD_MS;
+                if (lightAt > START) {
+                    expected.add(occurrence(alarmId, AlarmChain.PHASE_LIGHT, lightAt));
+                }
+                if (soundAt <= END) {
+                    expected.add(occurrence(alarmId, AlarmChain.PHASE_SOUND, soundAt));
+                }
+                soundAt = AlarmTimes.nextDailyTrigger(mod, soundAt, ZONE);
+            }
+        }
+        return expected;
+    }
+
+    private static String occurrence(long alarmId, int phase, long time) {
+        return alarmId + "/" + phase + "@" + time;
+    }
+}
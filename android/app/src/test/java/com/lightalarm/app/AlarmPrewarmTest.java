@@ -0,0 +1,32 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Warm/cold wake screen averages behind the reported warm-up saving.
+ */
+public class AlarmPrewarmTest {
+
+    @Test
+    public void savedIsColdMeanMinusWarmMean() {
+        AlarmPrewarm.Savings savings = new AlarmPrewarm.Savings(4, 4 * 900, 2, 2 * 3400);
+        assertEquals(900, savings.warmMeanMs);
+        assertEquals(3400, savings.coldMeanMs);
+        assertEquals(2500, savings.savedMs());
+    }
+
+    @Test
+    public void nothingSavedUntilBothSidesHaveSamples() {
+        assertEquals(0, new AlarmPrewarm.Savings(0, 0, 0, 0).savedMs());
+        assertEquals(0, new AlarmPrewarm.Savings(3, 3000, 0, 0).savedMs());
+        assertEquals(0, new AlarmPrewarm.Savings(0, 0, 5, 20000).savedMs());
+    }
+
+    @Test
+    public void notReadyWithoutWarmUp() {
+        assertFalse(AlarmPrewarm.isReady(42));
+        assertFalse(AlarmPrewarm.isReady(-1));
+    }
+}
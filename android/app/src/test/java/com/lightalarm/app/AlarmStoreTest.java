@@ -0,0 +1,193 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Replays of the binary alarm log: framing and checksums, torn and corrupt tails, compaction,
+ * recovery from a log whose header cannot be read, failed appends, and refusing to open one before
+ * unlock.
+ */
+public class AlarmStoreTest {
+
+    @Test
+    public void changesSurviveReload() throws IOException {
+        File file = tempFile();
+        AlarmStore store = openStore(file);
+        store.put(alarm("1", "chimes"));
+        store.put(alarm("2", "birds"));
+        store.put(alarm("3", "waves"));
+        store.remove("2");
+        store.setEnabled("3", false);
+        store.applyBatch(Arrays.asList(alarm("4", "bells"), alarm("1", "rain")), Collections.singletonList("3"));
+
+        AlarmStore reloaded = openStore(file);
+        assertEquals(2, reloaded.size());
+        assertEquals("rain", reloaded.get("1").getSoundResourceName());
+        assertEquals("bells", reloaded.get("4").getSoundResourceName());
+        assertNull(reloaded.get("2"));
+        assertNull(reloaded.get("3"));
+    }
+
+    @Test
+    public void checksumMismatchDropsTheTail() throws IOException {
+        File file = tempFile();
+        AlarmStore store = openStore(file);
+        store.put(alarm("1", "chimes"));
+        store.put(alarm("2", "birds"));
+        // Flip a payload byte of the last frame, just ahead of its checksum
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 5);
+            int value = raf.read();
+            raf.seek(raf.length() - 5);
+            raf.write(value ^ 0xFF);
+        }
+
+        AlarmStore reloaded = openStore(file);
+        assertEquals(1, reloaded.size());
+        assertNotNull(reloaded.get("1"));
+        // Later appends start on a record boundary and replay
+        reloaded.put(alarm("3", "waves"));
+        AlarmStore again = openStore(file);
+        assertEquals(2, again.size());
+        assertNotNull(again.get("3"));
+    }
+
+    @Test
+    public void tornTailIsTruncated() throws IOException {
+        File file = tempFile();
+        AlarmStore store = openStore(file);
+        store.put(alarm("1", "chimes"));
+        long intact = file.length();
+        store.put(alarm("2", "birds"));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        AlarmStore reloaded = openStore(file);
+        assertEquals(1, reloaded.size());
+        assertEquals(intact, file.length());
+        reloaded.put(alarm("2", "birds"));
+        assertEquals(2, openStore(file).size());
+    }
+
+    @Test
+    public void deadRecordsAreCompacted() throws IOException {
+        File file = tempFile();
+        AlarmStore store = openStore(file);
+        store.put(alarm("1", "chimes"));
+        long single = file.length();
+        for (int i = 0; i < 200; i++) {
+            store.setEnabled("1", i % 2 == 0);
+        }
+
+        assertTrue("log was compacted, " + file.length() + " bytes", file.length() < single * 40);
+        AlarmStore reloaded = openStore(file);
+        assertEquals(1, reloaded.size());
+        assertEquals(store.get("1").isEnabled(), reloaded.get("1").isEnabled());
+    }
+
+    @Test
+    public void badHeaderStartsAFreshLog() throws IOException {
+        File file = tempFile();
+        // Frames appended to a log that never got its header
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] {0, 0, 0, 12, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 0, 0, 0, 0});
+        }
+
+        AlarmStore store = openStore(file);
+        assertEquals(0, store.size());
+        assertTrue(new File(file.getPath() + ".corrupt").exists());
+        store.put(alarm("1", "chimes"));
+        AlarmStore reloaded = openStore(file);
+        assertEquals(1, reloaded.size());
+        assertNotNull(reloaded.get("1"));
+    }
+
+    @Test
+    public void failedAppendLeavesTheIndexAlone() throws IOException {
+        File file = tempFile();
+        openStore(file).put(alarm("1", "chimes"));
+        AlarmStore store = openStore(file);
+        // A directory in place of the log makes the next append fail
+        assertTrue(file.delete());
+        assertTrue(file.mkdir());
+        try {
+            try {
+                store.put(alarm("2", "birds"));
+                fail("put did not fail");
+            } catch (IOException expected) {
+                assertNull(store.get("2"));
+            }
+            try {
+                store.setEnabled("1", false);
+                fail("setEnabled did not fail");
+            } catch (IOException expected) {
+                assertTrue(store.get("1").isEnabled());
+            }
+            try {
+                store.applyBatch(Collections.singletonList(alarm("3", "waves")), Collections.singletonList("1"));
+                fail("applyBatch did not fail");
+            } catch (IOException expected) {
+                assertNull(store.get("3"));
+                assertNotNull(store.get("1"));
+            }
+            try {
+                store.remove("1");
+                fail("remove did not fail");
+            } catch (IOException expected) {
+                assertNotNull(store.get("1"));
+            }
+            assertEquals(1, store.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void lockedBootWithoutDeviceLogCannotOpen() {
+        assertFalse(AlarmStore.isReadable(false, false));
+        assertTrue(AlarmStore.isReadable(true, false));
+        assertTrue(AlarmStore.isReadable(false, true));
+    }
+
+    @Test
+    public void unopenedStoreRefusesWrites() throws IOException {
+        File file = tempFile();
+        AlarmStore store = new AlarmStore(file);
+        try {
+            store.put(alarm("1", "chimes"));
+            fail("wrote to an unopened store");
+        } catch (IllegalStateException expected) {
+            // A headerless log would fail every later load
+        }
+        assertFalse(file.exists());
+        assertEquals(0, store.size());
+    }
+
+    static AlarmRecord alarm(String id, String sound) {
+        return new AlarmRecord(id, 7, 30, "AM", sound, "sunrise", true, new String[] {"Mon", "Fri"});
+    }
+
+    static AlarmStore openStore(File file) throws IOException {
+        AlarmStore store = new AlarmStore(file);
+        store.open();
+        return store;
+    }
+
+    static File tempFile() throws IOException {
+        File file = File.createTempFile("alarms", ".log");
+        file.delete();
+        file.deleteOnExit();
+        new File(file.getPath() + ".corrupt").deleteOnExit();
+        return file;
+    }
+}
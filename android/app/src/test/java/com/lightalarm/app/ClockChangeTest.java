@@ -0,0 +1,176 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Fake-clock checks for TIME_SET and TIMEZONE_CHANGED handling: after a jump, the engine and the
+ * chain must agree with a fresh build in the new zone while only moving the alarms whose next
+ * trigger actually changed.
+ */
+public class ClockChangeTest {
+    private static final String[] ZONES = {
+        "UTC", "America/New_York", "America/Los_Angeles", "America/Santiago", "Europe/London",
+        "Europe/Berlin", "Asia/Kolkata", "Asia/Kathmandu", "Australia/Lord_Howe", "Australia/Adelaide",
+        "Pacific/Apia", "Pacific/Chatham"
+    };
+    private static final long BASE = 1262304000000L; // 2010-01-01 UTC
+
+    @Test
+    public void zoneChangeMovesOnlyAffectedAlarms() {
+        Random random = new Random(17);
+        for (int round = 0; round < 200; round++) {
+            TimeZone from = TimeZone.getTimeZone(ZONES[random.nextInt(ZONES.length)]);
+            TimeZone to = TimeZone.getTimeZone(ZONES[random.nextInt(ZONES.length)]);
+            long now = BASE + (long) (random.nextDouble() * 15 * 365 * AlarmTimes.DAY_MS);
+            int[] rules = randomRules(random, 50);
+
+            NextAlarmEngine engine = engineWith(rules, from, now);
+            long[] before = triggers(engine, rules.length);
+            Set<Long> changed = toSet(engine.onClockChanged(to, now));
+            assertAgreesWithFreshBuild(engine, rules, to, now, before, changed);
+        }
+    }
+
+    @Test
+    public void clockJumpsMoveOnlyAffectedAlarms() {
+        Random random = new Random(23);
+        for (int round = 0; round < 200; round++) {
+            TimeZone zone = TimeZone.getTimeZone(ZONES[random.nextInt(ZONES.length)]);
+            long now = BASE + (long) (random.nextDouble() * 15 * 365 * AlarmTimes.DAY_MS);
+            int[] rules = randomRules(random, 50);
+            NextAlarmEngine engine = engineWith(rules, zone, now);
+            long[] before = triggers(engine, rules.length);
+
+            // Small corrections through to the user setting the clock days either way
+            long jump = (random.nextBoolean() ? 1 : -1) * (long) (random.nextDouble() * (random.nextBoolean()
+                ? AlarmTimes.MINUTE_MS * 10 : 3 * AlarmTimes.DAY_MS));
+            Set<Long> changed = toSet(engine.onClockChanged(zone, now + jump));
+            assertAgreesWithFreshBuild(engine, rules, zone, now + jump, before, changed);
+        }
+    }
+
+    @Test
+    public void unchangedZoneRulesMoveNothing() {
+        Random random = new Random(31);
+        long now = BASE + 5 * 365 * AlarmTimes.DAY_MS;
+        int[] rules = randomRules(random, 500);
+        NextAlarmEngine engine = engineWith(rules, TimeZone.getTimeZone("Europe/Berlin"), now);
+        // Same rules under another id, as after a TIMEZONE_CHANGED between aliases
+        assertEquals(0, engine.onClockChanged(TimeZone.getTimeZone("Europe/Oslo"), now).length);
+    }
+
+    @Test
+    public void chainDeliversEachOccurrenceOnceAcrossZoneChange() {
+        Random random = new Random(41);
+        for (int round = 0; round < 40; round++) {
+            TimeZone from = TimeZone.getTimeZone(ZONES[random.nextInt(ZONES.length)]);
+            TimeZone to = TimeZone.getTimeZone(ZONES[random.nextInt(ZONES.length)]);
+            long start = BASE + (long) (random.nextDouble() * 15 * 365 * AlarmTimes.DAY_MS);
+            long change = start + (long) (random.nextDouble() * AlarmTimes.DAY_MS);
+            long end = change + 3 * AlarmTimes.DAY_MS;
+            int[] rules = randomRules(random, 30);
+
+            FakeSlot slot = new FakeSlot();
+            AlarmChain chain = new AlarmChain(slot, from, start, Long.MAX_VALUE);
+            for (int id = 0; id < rules.length; id++) {
+                chain.schedule(id, rules[id], start);
+            }
+            deliverUntil(chain, slot, change, null);
+
+            chain.onClockChanged(to, change);
+            Set<String> delivered = new HashSet<>();
+            deliverUntil(chain, slot, end, delivered);
+
+            Set<String> expected = new HashSet<>();
+            for (int id = 0; id < rules.length; id++) {
+                for (long soundAt = Recurrence.nextTrigger(rules[id], change, to); soundAt <= end;
+                        soundAt = Recurrence.nextTrigger(rules[id], soundAt, to)) {
+                    expected.add(id + "@" + soundAt);
+                }
+            }
+            assertEquals(from.getID() + " -> " + to.getID(), expected, delivered);
+        }
+    }
+
+    /** One-slot AlarmManager stand-in */
+    private static final class FakeSlot implements AlarmChain.Sink {
+        long triggerAt = OccurrenceHeap.NO_TIME;
+        long alarmId;
+        int phase;
+
+        @Override
+        public void arm(long triggerAt, long alarmId, int phase) {
+            this.triggerAt = triggerAt;
+            this.alarmId = alarmId;
+            this.phase = phase;
+        }
+
+        @Override
+        public void disarm() {
+            triggerAt = OccurrenceHeap.NO_TIME;
+        }
+    }
+
+    private static void deliverUntil(AlarmChain chain, FakeSlot slot, long until, Set<String> sounds) {
+        while (slot.triggerAt != OccurrenceHeap.NO_TIME && slot.triggerAt <= until) {
+            long triggerAt = slot.triggerAt;
+            long alarmId = slot.alarmId;
+            int phase = slot.phase;
+            assertTrue(chain.onFired(alarmId, phase, triggerAt));
+            if (sounds != null && phase == AlarmChain.PHASE_SOUND) {
+                assertTrue("duplicate " + alarmId + "@" + triggerAt, sounds.add(alarmId + "@" + triggerAt));
+            }
+        }
+    }
+
+    private static void assertAgreesWithFreshBuild(NextAlarmEngine engine, int[] rules, TimeZone zone, long now,
+                                                   long[] before, Set<Long> changed) {
+        NextAlarmEngine fresh = engineWith(rules, zone, now);
+        for (int id = 0; id < rules.length; id++) {
+            long expected = fresh.timeOf(id);
+            assertEquals(zone.getID() + " alarm " + id, expected, engine.timeOf(id));
+            assertEquals("alarm " + id + " reported as moved", expected != before[id], changed.contains((long) id));
+        }
+        assertEquals(fresh.peekTime(), engine.peekTime());
+    }
+
+    private static NextAlarmEngine engineWith(int[] rules, TimeZone zone, long now) {
+        NextAlarmEngine engine = new NextAlarmEngine(rules.length, zone);
+        for (int id = 0; id < rules.length; id++) {
+            engine.upsert(id, rules[id], now);
+        }
+        return engine;
+    }
+
+    private static long[] triggers(NextAlarmEngine engine, int count) {
+        long[] times = new long[count];
+        for (int id = 0; id < count; id++) {
+            times[id] = engine.timeOf(id);
+        }
+        return times;
+    }
+
+    private static int[] randomRules(Random random, int count) {
+        int[] rules = new int[count];
+        for (int i = 0; i < count; i++) {
+            int mask = random.nextInt(3) == 0 ? Recurrence.EVERY_DAY : 1 + random.nextInt(Recurrence.EVERY_DAY);
+            rules[i] = Recurrence.rule(mask, random.nextInt(24 * 60));
+        }
+        return rules;
+    }
+
+    private static Set<Long> toSet(long[] ids) {
+        Set<Long> set = new HashSet<>();
+        for (long id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,67 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the latency histogram's precision against exact percentiles and the per-firing stage
+ * bookkeeping of the ring.
+ */
+public class FireLatencyRecorderTest {
+
+    @Test
+    public void bucketsCoverValuesWithinOneEighth() {
+        for (long value = 0; value < 1 << 20; value += 1 + value / 64) {
+            long top = FireLatencyRecorder.highestInBucket(FireLatencyRecorder.bucketOf(value));
+            assertTrue(value + " above its bucket", top >= value);
+            assertTrue(value + " bucket too wide", top - value <= value / 8);
+        }
+        assertEquals(FireLatencyRecorder.BUCKET_COUNT - 1, FireLatencyRecorder.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesTrackExactValues() {
+        FireLatencyRecorder recorder = new FireLatencyRecorder(null);
+        Random random = new Random(12);
+        long[] delays = new long[5000];
+        for (int i = 0; i < delays.length; i++) {
+            // Mostly prompt with a long doze tail
+            delays[i] = random.nextInt(10) == 0 ? random.nextInt(15 * 60000) : random.nextInt(800);
+            recorder.record(FireLatencyRecorder.STAGE_RECEIVER, i, 1000000L + i, 1000000L + i + delays[i]);
+        }
+        Arrays.sort(delays);
+        for (double p : new double[] { 50, 90, 99, 100 }) {
+            long exact = delays[(int) Math.ceil(delays.length * p / 100) - 1];
+            long estimate = recorder.percentile(FireLatencyRecorder.STAGE_RECEIVER, p);
+            assertTrue("p" + p + " " + estimate + " vs " + exact, estimate >= exact && estimate - exact <= exact / 8);
+        }
+        assertEquals(delays[delays.length - 1], recorder.max(FireLatencyRecorder.STAGE_RECEIVER));
+    }
+
+    @Test
+    public void stagesOfOneFiringShareASlot() {
+        FireLatencyRecorder recorder = new FireLatencyRecorder(null);
+        recorder.record(FireLatencyRecorder.STAGE_RECEIVER, 7, 5000, 5040);
+        recorder.record(FireLatencyRecorder.STAGE_RECEIVER, 8, 9000, 9010);
+        recorder.record(FireLatencyRecorder.STAGE_SERVICE, 7, 5000, 5100);
+        assertEquals(FireLatencyRecorder.NOT_STAMPED, recorder.record(FireLatencyRecorder.STAGE_SERVICE, 7, 5000, 5900));
+
+        assertEquals(2, recorder.recentCount());
+        long[] firing = recorder.recent(1);
+        assertEquals(7, firing[0]);
+        assertEquals(40, firing[2 + FireLatencyRecorder.STAGE_RECEIVER]);
+        assertEquals(100, firing[2 + FireLatencyRecorder.STAGE_SERVICE]);
+        assertEquals(FireLatencyRecorder.NOT_STAMPED, firing[2 + FireLatencyRecorder.STAGE_ACTIVITY]);
+        assertEquals(1, recorder.count(FireLatencyRecorder.STAGE_SERVICE));
+
+        for (int i = 0; i < FireLatencyRecorder.RING_SIZE + 5; i++) {
+            recorder.record(FireLatencyRecorder.STAGE_RECEIVER, 100 + i, 20000 + i, 20000 + i);
+        }
+        assertEquals(FireLatencyRecorder.RING_SIZE, recorder.recentCount());
+        assertEquals(100 + FireLatencyRecorder.RING_SIZE + 4, recorder.recent(0)[0]);
+    }
+}
@@ -0,0 +1,137 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Compares NextAlarmEngine with the per-alarm Calendar recomputation it replaces.
+ *
+ * Each round edits one alarm and then asks for the next alarm to fire, which is what the
+ * plugin and the native view model do on every change.
+ */
+public class NextAlarmEngineBenchmarkTest {
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/New_York");
+    private static final long NOW = 1710054000000L; // 2024-03-10 03:00 EDT, just after the spring-forward gap
+    private static final int ROUNDS = 2000;
+    private static final int MIN_SPEEDUP = 10;
+
+    @Test
+    public void nextDailyTriggerMatchesCalendar() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            long now = NOW + (long) random.nextInt(400) * AlarmTimes.HOUR_MS + random.nextInt(60) * AlarmTimes.MINUTE_MS;
+            int hour24 = random.nextInt(24);
+            int minute = random.nextInt(60);
+            assertEquals("hour " + hour24 + ":" + minute + " at " + now,
+                    calendarTrigger(hour24, minute, now),
+                    AlarmTimes.nextDailyTrigger(AlarmTimes.minuteOfDay(hour24, minute), now, ZONE));
+        }
+    }
+
+    @Test
+    public void nextOccurrencesAreSorted() {
+        NextAlarmEngine engine = new NextAlarmEngine(16, ZONE);
+        engine.upsert(1, AlarmTimes.minuteOfDay(7, 0), NOW);
+        engine.upsert(2, AlarmTimes.minuteOfDay(2, 30), NOW);
+        engine.upsert(3, AlarmTimes.minuteOfDay(6, 15), NOW);
+
+        long[] times = new long[5];
+        long[] ids = new long[5];
+        assertEquals(3, engine.nextOccurrences(5, times, ids));
+        // 02:30 does not exist today, so it is pushed forward to 03:30 and fires first
+        assertArrayEquals(new long[] { 2, 3, 1 }, new long[] { ids[0], ids[1], ids[2] });
+        assertEquals(NOW + 30 * AlarmTimes.MINUTE_MS, times[0]);
+        assertTrue(times[0] < times[1] && times[1] < times[2]);
+        assertEquals(2, engine.peekAlarmId());
+        assertEquals(NextAlarmEngine.NO_ALARM, engine.popDue(times[0] - 1));
+        assertEquals(2, engine.popDue(times[0]));
+        // A fired alarm is moved on to its next occurrence rather than dropped
+        assertEquals(3, engine.size());
+        assertTrue(engine.timeOf(2) > times[2]);
+    }
+
+    @Test
+    public void engineBeatsCalendarRecomputation() {
+        for (int alarms : new int[] { 1000, 5000 }) {
+            int[] minuteOfDay = randomAlarms(alarms);
+            // Warm up both paths before timing
+            calendarRounds(minuteOfDay.clone(), ROUNDS / 4);
+            engineRounds(minuteOfDay.clone(), ROUNDS / 4);
+
+            long calendarNanos = calendarRounds(minuteOfDay.clone(), ROUNDS);
+            long engineNanos = engineRounds(minuteOfDay.clone(), ROUNDS);
+            // Typically a few hundred times faster; the margin leaves room for a noisy machine
+            assertTrue("engine " + engineNanos + "ns vs calendar " + calendarNanos + "ns at " + alarms + " alarms",
+                    engineNanos * MIN_SPEEDUP < calendarNanos);
+        }
+    }
+
+    private static int[] randomAlarms(int count) {
+        Random random = new Random(count);
+        int[] minuteOfDay = new int[count];
+        for (int i = 0; i < count; i++) {
+            minuteOfDay[i] = random.nextInt(24 * 60);
+        }
+        return minuteOfDay;
+    }
+
+    private static long calendarRounds(int[] minuteOfDay, int rounds) {
+        Random random = new Random(1);
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            minuteOfDay[random.nextInt(minuteOfDay.length)] = random.nextInt(24 * 60);
+            long earliest = Long.MAX_VALUE;
+            for (int mod : minuteOfDay) {
+                earliest = Math.min(earliest, calendarTrigger(mod / 60, mod % 60, NOW));
+            }
+            sink += earliest;
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink != 0);
+        return elapsed;
+    }
+
+    private static long engineRounds(int[] minuteOfDay, int rounds) {
+        Random random = new Random(1);
+        long sink = 0;
+        long start = System.nanoTime();
+        NextAlarmEngine engine = new NextAlarmEngine(minuteOfDay.length, ZONE);
+        for (int id = 0; id < minuteOfDay.length; id++) {
+            engine.upsert(id, minuteOfDay[id], NOW);
+        }
+        for (int round = 0; round < rounds; round++) {
+            int id = random.nextInt(minuteOfDay.length);
+            engine.upsert(id, random.nextInt(24 * 60), NOW);
+            sink += engine.peekTime();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink != 0);
+        return elapsed;
+    }
+
+    /**
+     * The Calendar computation previously duplicated in AlarmService and the plugin. The wall
+     * time is set again after rolling to tomorrow so a DST-gap shift on today does not leak
+     * into the next day.
+     */
+    private static long calendarTrigger(int hour24, int minute, long now) {
+        Calendar calendar = Calendar.getInstance(ZONE);
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, hour24);
+        calendar.set(Calendar.MINUTE, minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (calendar.getTimeInMillis() <= now) {
+            calendar.add(Calendar.DAY_OF_YEAR, 1);
+            calendar.set(Calendar.HOUR_OF_DAY, hour24);
+            calendar.set(Calendar.MINUTE, minute);
+        }
+        return calendar.getTimeInMillis();
+    }
+}
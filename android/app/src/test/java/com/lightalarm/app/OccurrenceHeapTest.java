@@ -0,0 +1,97 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Checks OccurrenceHeap against a sorted reference under random upserts, cancels and pops.
+ */
+public class OccurrenceHeapTest {
+
+    @Test
+    public void popsInTimeOrderWithKeyTieBreak() {
+        OccurrenceHeap heap = new OccurrenceHeap(4);
+        heap.upsert(3, 100);
+        heap.upsert(1, 50);
+        heap.upsert(2, 100);
+        heap.upsert(4, 10);
+
+        assertEquals(4, heap.pop());
+        assertEquals(1, heap.pop());
+        assertEquals(2, heap.pop());
+        assertEquals(3, heap.pop());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void upsertMovesExistingKey() {
+        OccurrenceHeap heap = new OccurrenceHeap(4);
+        heap.upsert(1, 10);
+        heap.upsert(2, 20);
+        heap.upsert(1, 30);
+
+        assertEquals(2, heap.size());
+        assertEquals(2, heap.peekKey());
+        assertEquals(30, heap.timeOf(1));
+        assertTrue(heap.cancel(2));
+        assertFalse(heap.cancel(2));
+        assertEquals(1, heap.peekKey());
+        assertEquals(OccurrenceHeap.NO_TIME, heap.timeOf(2));
+    }
+
+    @Test
+    public void matchesSortedReferenceUnderRandomOperations() {
+        Random random = new Random(42);
+        OccurrenceHeap heap = new OccurrenceHeap(8);
+        TreeMap<Long, Long> timeByKey = new TreeMap<>();
+        TreeSet<long[]> order = new TreeSet<>((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        long[] outTimes = new long[32];
+        long[] outKeys = new long[32];
+
+        for (int step = 0; step < 20000; step++) {
+            long key = random.nextInt(500);
+            int op = random.nextInt(10);
+            if (op < 6) {
+                long time = random.nextInt(1000);
+                Long previous = timeByKey.put(key, time);
+                if (previous != null) {
+                    order.remove(new long[] { previous, key });
+                }
+                order.add(new long[] { time, key });
+                heap.upsert(key, time);
+            } else if (op < 8) {
+                Long previous = timeByKey.remove(key);
+                if (previous != null) {
+                    order.remove(new long[] { previous, key });
+                }
+                assertEquals(previous != null, heap.cancel(key));
+            } else if (op < 9) {
+                if (!order.isEmpty()) {
+                    long[] first = order.pollFirst();
+                    timeByKey.remove(first[1]);
+                    assertEquals(first[0], heap.peekTime());
+                    assertEquals(first[1], heap.pop());
+                }
+            } else {
+                int k = random.nextInt(outTimes.length);
+                int written = heap.peekFirst(k, outTimes, outKeys);
+                assertEquals(Math.min(k, order.size()), written);
+                int i = 0;
+                for (long[] entry : order) {
+                    if (i == written) {
+                        break;
+                    }
+                    assertEquals(entry[0], outTimes[i]);
+                    assertEquals(entry[1], outKeys[i]);
+                    i++;
+                }
+            }
+            assertEquals(timeByKey.size(), heap.size());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Checks the repeat-day mask arithmetic against a day-by-day Calendar walk, including zones
+ * with midnight DST changes, half-hour DST and a skipped calendar day.
+ */
+public class RecurrenceTest {
+
+    @Test
+    public void compilesJsRepeatDays() {
+        assertEquals(Recurrence.MONDAY | Recurrence.WEDNESDAY, Recurrence.compile(new String[] { "Mon", "Wed" }));
+        assertEquals(Recurrence.EVERY_DAY, Recurrence.compile(new String[0]));
+        assertEquals(Recurrence.WEEKENDS, Recurrence.compile(new String[] { "Weekends" }));
+        assertEquals(Recurrence.SUNDAY, Recurrence.compile(new String[] { "sunday" }));
+    }
+
+    @Test
+    public void epochDayZeroIsThursday() {
+        assertEquals(3, Recurrence.dayOfWeek(0));
+        assertEquals(0, Recurrence.dayOfWeek(4));
+        assertEquals(6, Recurrence.dayOfWeek(-4));
+    }
+
+    @Test
+    public void nextTriggerMatchesCalendarWalk() {
+        Random random = new Random(5);
+        String[] zones = { "America/New_York", "Australia/Lord_Howe", "Pacific/Apia", "America/Santiago" };
+        for (String zoneId : zones) {
+            TimeZone zone = TimeZone.getTimeZone(zoneId);
+            for (int i = 0; i < 5000; i++) {
+                long now = 1262304000000L + (long) (random.nextDouble() * 15 * 365 * AlarmTimes.DAY_MS);
+                int mask = 1 + random.nextInt(Recurrence.EVERY_DAY);
+                int minuteOfDay = random.nextInt(24 * 60);
+                assertEquals(zoneId + " mask " + mask + " minute " + minuteOfDay + " at " + now,
+                        calendarWalk(mask, minuteOfDay, now, zone),
+                        Recurrence.nextTrigger(Recurrence.rule(mask, minuteOfDay), now, zone));
+            }
+        }
+    }
+
+    private static long calendarWalk(int mask, int minuteOfDay, long now, TimeZone zone) {
+        Calendar today = Calendar.getInstance(zone);
+        today.setTimeInMillis(now);
+        for (int days = 0; days < 10; days++) {
+            Calendar day = Calendar.getInstance(zone);
+            day.clear();
+            day.set(today.get(Calendar.YEAR), today.get(Calendar.MONTH), today.get(Calendar.DAY_OF_MONTH));
+            day.add(Calendar.DAY_OF_MONTH, days);
+            day.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+            day.set(Calendar.MINUTE, minuteOfDay % 60);
+            int dayOfWeek = (day.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+            if ((mask >> dayOfWeek & 1) != 0 && day.getTimeInMillis() > now) {
+                return day.getTimeInMillis();
+            }
+        }
+        return -1;
+    }
+}
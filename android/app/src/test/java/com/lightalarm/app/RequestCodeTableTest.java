@@ -0,0 +1,93 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks that request codes stay dense and collision-free for ids that alias under the old
+ * (int) (alarmId * 2) scheme, and that the table survives reloads, releases and torn writes.
+ */
+public class RequestCodeTableTest {
+
+    @Test
+    public void aliasingIdsGetDistinctDenseCodes() throws IOException {
+        RequestCodeTable table = new RequestCodeTable(tempFile());
+        // Both truncate to the same legacy request code
+        long first = 1700000000000L;
+        long second = first + (1L << 31);
+        assertEquals((int) (first * 2), (int) (second * 2));
+
+        assertEquals(0, table.acquire(first));
+        assertEquals(1, table.acquire(second));
+        assertEquals(0, table.acquire(first));
+        assertEquals(RequestCodeTable.FIRST_REQUEST_CODE + 2, RequestCodeTable.lightRequestCode(1));
+        assertEquals(RequestCodeTable.FIRST_REQUEST_CODE + 3, RequestCodeTable.soundRequestCode(1));
+    }
+
+    @Test
+    public void slotsSurviveReloadAndAreReused() throws IOException {
+        File file = tempFile();
+        RequestCodeTable table = new RequestCodeTable(file);
+        Random random = new Random(8);
+        long[] ids = new long[3000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = random.nextLong();
+        }
+        table.acquireAll(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (i % 3 != 0) {
+                table.release(ids[i]);
+            }
+        }
+
+        RequestCodeTable reloaded = new RequestCodeTable(file);
+        assertEquals(1000, reloaded.size());
+        Set<Integer> codes = new HashSet<>();
+        for (int i = 0; i < ids.length; i++) {
+            int slot = reloaded.slotOf(ids[i]);
+            if (i % 3 != 0) {
+                assertEquals(LongIntHashMap.MISSING, slot);
+            } else {
+                assertEquals(table.slotOf(ids[i]), slot);
+                assertTrue(codes.add(RequestCodeTable.lightRequestCode(slot)));
+                assertTrue(codes.add(RequestCodeTable.soundRequestCode(slot)));
+            }
+        }
+        // Released slots are handed out again, lowest first
+        assertEquals(1, reloaded.acquire(42L));
+        assertTrue("released entries were compacted", file.length() < 4 + 3000 * 16);
+        assertEquals(1, new RequestCodeTable(file).slotOf(42L));
+    }
+
+    @Test
+    public void tornTailIsDropped() throws IOException {
+        File file = tempFile();
+        RequestCodeTable table = new RequestCodeTable(file);
+        table.acquire(1);
+        table.acquire(2);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        RequestCodeTable reloaded = new RequestCodeTable(file);
+        assertEquals(0, reloaded.slotOf(1));
+        assertEquals(LongIntHashMap.MISSING, reloaded.slotOf(2));
+        assertEquals(1, reloaded.acquire(3));
+        assertEquals(1, new RequestCodeTable(file).slotOf(3));
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("request_codes", ".bin");
+        file.delete();
+        file.deleteOnExit();
+        return file;
+    }
+}
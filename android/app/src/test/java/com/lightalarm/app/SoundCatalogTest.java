@@ -0,0 +1,58 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Category views and the resource name index of the immutable catalog.
+ */
+public class SoundCatalogTest {
+
+    private static SoundCatalog catalog() {
+        return new SoundCatalog(Arrays.asList("Ambience", "Classic Alarm", "Natural Sound"), Arrays.asList(
+            new Sound("Cafe", "ambiencesound_cafe", 11, "Ambience"),
+            new Sound("School", "ambiencesound_school", 12, "Ambience"),
+            new Sound("Bell", "classicalarm_bell", 21, "Classic Alarm")));
+    }
+
+    @Test
+    public void categoriesKeepOrderIncludingEmptyOnes() {
+        SoundCatalog catalog = catalog();
+        assertEquals(Arrays.asList("Ambience", "Classic Alarm", "Natural Sound"), catalog.getCategories());
+        assertTrue(catalog.getSoundsForCategory("Natural Sound").isEmpty());
+        assertTrue(catalog.getSoundsForCategory("Unknown").isEmpty());
+        assertEquals(3, catalog.size());
+    }
+
+    @Test
+    public void categoryViewsAreSharedAndReadOnly() {
+        SoundCatalog catalog = catalog();
+        List<Sound> ambience = catalog.getSoundsForCategory("Ambience");
+        assertEquals("Cafe", ambience.get(0).getDisplayName());
+        assertEquals("School", ambience.get(1).getDisplayName());
+        assertSame(ambience, catalog.getSoundsForCategory("Ambience"));
+        try {
+            ambience.clear();
+            fail("category view should be unmodifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            catalog.getAllSounds().remove(0);
+            fail("sound list should be unmodifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void resolvesResourceNames() {
+        SoundCatalog catalog = catalog();
+        assertEquals(21, catalog.resourceIdOf("classicalarm_bell"));
+        assertEquals("School", catalog.findSoundByResourceName("ambiencesound_school").getDisplayName());
+        assertEquals(0, catalog.resourceIdOf("naturalsound_rain"));
+        assertEquals(0, catalog.resourceIdOf(null));
+    }
+}
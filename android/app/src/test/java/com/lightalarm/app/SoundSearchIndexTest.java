@@ -0,0 +1,104 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Prefix and trigram matching, ranking and paging of sound search.
+ */
+public class SoundSearchIndexTest {
+
+    private static final List<Sound> SOUNDS = Arrays.asList(
+        new Sound("Cafe", "ambiencesound_cafe", 1, "Ambience"),
+        new Sound("Street Basketball", "ambiencesound_street_basketball", 2, "Ambience"),
+        new Sound("Bell Ringing", "classicalarm_bell_ringing", 3, "Classic Alarm"),
+        new Sound("Digital Alarm", "classicalarm_digital_alarm", 4, "Classic Alarm"),
+        new Sound("Birds Chirping", "naturalsound_birds_chirping", 5, "Natural Sound"),
+        new Sound("Relaxing Sea", "naturalsound_relaxing_sea", 6, "Natural Sound"));
+
+    private static List<String> names(SoundSearchIndex.Page page) {
+        List<String> names = new ArrayList<>();
+        for (SoundSearchIndex.Result result : page.results) {
+            names.add(result.sound.getDisplayName());
+        }
+        return names;
+    }
+
+    @Test
+    public void prefixesMatchAsTheUserTypes() {
+        SoundSearchIndex index = new SoundSearchIndex(SOUNDS);
+        assertEquals(Arrays.asList("Bell Ringing", "Birds Chirping", "Street Basketball"),
+            names(index.search("b", 0, 10)));
+        assertEquals(Arrays.asList("Bell Ringing"), names(index.search("bel", 0, 10)));
+        assertEquals(Arrays.asList("Street Basketball"), names(index.search("BASK", 0, 10)));
+    }
+
+    @Test
+    public void tagsMatchAcrossCategoriesBelowNameMatches() {
+        SoundSearchIndex index = new SoundSearchIndex(SOUNDS);
+        // "Digital Alarm" has it in its name, the bell only through its category
+        assertEquals(Arrays.asList("Digital Alarm", "Bell Ringing"), names(index.search("alarm", 0, 10)));
+        assertEquals(Arrays.asList("Birds Chirping", "Relaxing Sea"), names(index.search("natural", 0, 10)));
+    }
+
+    @Test
+    public void everyTermMustMatch() {
+        SoundSearchIndex index = new SoundSearchIndex(SOUNDS);
+        assertEquals(Arrays.asList("Relaxing Sea"), names(index.search("sea relax", 0, 10)));
+        assertTrue(index.search("sea bell", 0, 10).results.isEmpty());
+        assertEquals(0, index.search("  ", 0, 10).total);
+    }
+
+    @Test
+    public void trigramsForgiveTyposAndInnerMatches() {
+        SoundSearchIndex index = new SoundSearchIndex(SOUNDS);
+        assertEquals(Arrays.asList("Birds Chirping"), names(index.search("chirpnig", 0, 10)));
+        assertEquals(Arrays.asList("Street Basketball"), names(index.search("ketball", 0, 10)));
+    }
+
+    @Test
+    public void pagesThroughRankedResults() {
+        SoundSearchIndex index = new SoundSearchIndex(SOUNDS);
+        SoundSearchIndex.Page first = index.search("b", 0, 2);
+        SoundSearchIndex.Page second = index.search("b", 2, 2);
+        assertEquals(3, first.total);
+        assertEquals(Arrays.asList("Bell Ringing", "Birds Chirping"), names(first));
+        assertEquals(Arrays.asList("Street Basketball"), names(second));
+        assertTrue(index.search("b", 5, 2).results.isEmpty());
+    }
+
+    @Test
+    public void keystrokesStayUnderAMillisecond() {
+        String[] words = { "rain", "forest", "ocean", "bell", "chime", "digital", "morning", "birds",
+            "wind", "cafe", "harbor", "train", "river", "thunder", "piano", "gong" };
+        String[] categories = { "Ambience", "Classic Alarm", "Natural Sound" };
+        List<Sound> sounds = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            String a = words[i % words.length];
+            String b = words[(i / words.length) % words.length];
+            sounds.add(new Sound(a + " " + b + " " + i, "sound_" + a + "_" + b + "_" + i, i + 1,
+                categories[i % categories.length]));
+        }
+        SoundSearchIndex index = new SoundSearchIndex(sounds);
+        String typed = "morning thunder";
+        int rounds = 200;
+        for (int warmup = 0; warmup < rounds; warmup++) {
+            index.search(typed.substring(0, 1 + warmup % typed.length()), 0, 20);
+        }
+        long started = System.nanoTime();
+        int searches = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int length = 1; length <= typed.length(); length++) {
+                index.search(typed.substring(0, length), 0, 20);
+                searches++;
+            }
+        }
+        long perSearchMicros = (System.nanoTime() - started) / 1000 / searches;
+        assertTrue("search took " + perSearchMicros + " us", perSearchMicros < 1000);
+    }
+}
@@ -0,0 +1,63 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Walks the sunrise curve tick by tick, as SunriseService does, and checks it against the
+ * closed-form gamma curve.
+ */
+public class SunriseCurveTest {
+    private static final long DURATION = AlarmTimes.LIGHT_LEAD_MS;
+
+    @Test
+    public void tableMatchesClosedForm() {
+        SunriseCurve curve = new SunriseCurve(DURATION);
+        for (long t = 0; t < DURATION; t += 997) {
+            double x = (double) t / DURATION;
+            long expected = SunriseCurve.DEFAULT_MIN_LEVEL + Math.round(
+                (SunriseCurve.DEFAULT_MAX_LEVEL - SunriseCurve.DEFAULT_MIN_LEVEL) * Math.pow(x, SunriseCurve.DEFAULT_GAMMA));
+            assertEquals("at " + t + " ms", expected, curve.levelAt(t), 1);
+        }
+        assertEquals(SunriseCurve.DEFAULT_MAX_LEVEL, curve.levelAt(DURATION));
+    }
+
+    @Test
+    public void ticksWriteEachLevelOnce() {
+        SunriseCurve curve = new SunriseCurve(DURATION);
+        int ticks = 0;
+        int writes = 0;
+        int level = -1;
+        int lastProgress = -1;
+        int progressUpdates = 0;
+        long elapsed = 0;
+        while (true) {
+            ticks++;
+            int next = curve.levelAt(elapsed);
+            assertTrue("brightness went down", next >= level);
+            if (next != level) {
+                writes++;
+                level = next;
+            }
+            int progress = curve.progressAt(elapsed);
+            if (progress != lastProgress) {
+                assertEquals("skipped a percent", lastProgress + 1, progress);
+                lastProgress = progress;
+                progressUpdates++;
+            }
+            if (progress >= 100) {
+                break;
+            }
+            long tickAt = curve.nextTickAt(elapsed);
+            assertTrue(tickAt > elapsed);
+            elapsed = tickAt;
+        }
+
+        assertEquals(curve.getStepCount() + 1, writes);
+        assertEquals(101, progressUpdates);
+        // 2 s polling would have made 600 writes; steps and percents together stay well under that
+        assertTrue(ticks + " ticks", ticks <= curve.getStepCount() + 102);
+        assertEquals(SunriseCurve.DEFAULT_MAX_LEVEL, level);
+    }
+}
@@ -0,0 +1,54 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Listeners hear each progress change once and nothing after they are removed.
+ */
+public class SunriseProgressChannelTest {
+    private final SunriseProgressChannel channel = SunriseProgressChannel.getInstance();
+    private final List<Integer> heard = new ArrayList<>();
+    private final SunriseProgressChannel.Listener listener = new SunriseProgressChannel.Listener() {
+        @Override
+        public void onSunriseProgress(int progress) {
+            heard.add(progress);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        channel.removeListener(listener);
+        channel.publish(SunriseProgressChannel.IDLE);
+    }
+
+    @Test
+    public void notifiesOnlyOnChange() {
+        channel.addListener(listener);
+        channel.addListener(listener);
+        channel.publish(0);
+        channel.publish(0);
+        channel.publish(1);
+        channel.publish(1);
+        channel.publish(SunriseProgressChannel.IDLE);
+
+        assertEquals(List.of(0, 1, SunriseProgressChannel.IDLE), heard);
+        assertEquals(SunriseProgressChannel.IDLE, channel.current());
+    }
+
+    @Test
+    public void removedListenerHearsNothing() {
+        channel.addListener(listener);
+        channel.publish(5);
+        channel.removeListener(listener);
+        channel.publish(6);
+
+        assertEquals(List.of(5), heard);
+        assertEquals(6, channel.current());
+    }
+}
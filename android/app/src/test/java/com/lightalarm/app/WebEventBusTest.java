@@ -0,0 +1,69 @@
+package com.lightalarm.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Queueing, batching and dedupe of native-to-WebView events.
+ */
+public class WebEventBusTest {
+    private final WebEventBus bus = new WebEventBus();
+    private final List<List<WebEventBus.Event>> batches = new ArrayList<>();
+    private final WebEventBus.Sink sink = new WebEventBus.Sink() {
+        @Override
+        public void deliver(List<WebEventBus.Event> batch) {
+            batches.add(new ArrayList<>(batch));
+        }
+    };
+
+    @Test
+    public void queuedEventsFlushAsOneBatch() {
+        bus.post(WebEventBus.Event.alarmFired(7, 1000));
+        bus.post(WebEventBus.Event.sunriseProgress(1));
+        bus.post(WebEventBus.Event.showWakeScreen("light"));
+        bus.post(WebEventBus.Event.sunriseProgress(2));
+        bus.post(WebEventBus.Event.sunriseProgress(3));
+        assertTrue(batches.isEmpty());
+        assertEquals(3, bus.pendingCount());
+
+        bus.markReady(sink);
+        assertEquals(1, batches.size());
+        List<WebEventBus.Event> batch = batches.get(0);
+        assertEquals(WebEventBus.Type.ALARM_FIRED, batch.get(0).type);
+        assertEquals(7L, batch.get(0).detail.get("alarmId"));
+        assertEquals(WebEventBus.Type.SHOW_WAKE_SCREEN, batch.get(1).type);
+        assertEquals(3, batch.get(2).detail.get("progress"));
+
+        bus.post(WebEventBus.Event.soundAlarm("bell"));
+        assertEquals(2, batches.size());
+        assertEquals("bell", batches.get(1).get(0).detail.get("alarmSound"));
+        assertEquals(0, bus.pendingCount());
+    }
+
+    @Test
+    public void wakeScreenOncePerEpisode() {
+        bus.markReady(sink);
+        bus.post(WebEventBus.Event.showWakeScreen("sound"));
+        bus.post(WebEventBus.Event.showWakeScreen("light"));
+        assertEquals(1, batches.size());
+
+        bus.resetWakeScreen();
+        bus.post(WebEventBus.Event.showWakeScreen("light"));
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    public void detachQueuesAgain() {
+        bus.markReady(sink);
+        bus.detach(sink);
+        bus.post(WebEventBus.Event.lightSimulation("birds"));
+        assertTrue(batches.isEmpty());
+
+        bus.markReady(sink);
+        assertEquals(1, batches.size());
+    }
+}
@@ -0,0 +1,56 @@
+package com.lightalarm.shared;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Header checks on the decoded PCM files.
+ */
+public class PcmCacheTest {
+
+    private static ByteBuffer file(int sampleRate, int channelCount, long frames, int dataBytes) {
+        ByteBuffer file = ByteBuffer.allocate(PcmCache.HEADER_BYTES + dataBytes).order(ByteOrder.LITTLE_ENDIAN);
+        file.put(PcmCache.header(sampleRate, channelCount, frames));
+        for (int i = 0; i < dataBytes / 2; i++) {
+            file.putShort((short) i);
+        }
+        file.clear();
+        return file;
+    }
+
+    @Test
+    public void readsSamplesAfterTheHeader() {
+        PcmCache.Clip clip = PcmCache.readClip(file(44_100, 2, 100, 400));
+        assertNotNull(clip);
+        assertEquals(44_100, clip.sampleRate);
+        assertEquals(2, clip.channelCount);
+        assertEquals(4, clip.frameBytes());
+        assertEquals(400, clip.data.remaining());
+        assertEquals(0, clip.data.getShort(0));
+        assertEquals(3, clip.data.getShort(6));
+        assertTrue(clip.data.isReadOnly());
+    }
+
+    @Test
+    public void durationFromFrames() {
+        PcmCache.Clip clip = PcmCache.readClip(file(8_000, 1, 16_000, 32_000));
+        assertEquals(2_000, clip.durationMs());
+    }
+
+    @Test
+    public void rejectsTruncatedOrForeignFiles() {
+        // Frame count says more than the file holds, e.g. a write cut short
+        assertNull(PcmCache.readClip(file(44_100, 2, 200, 400)));
+        assertNull(PcmCache.readClip(file(44_100, 3, 100, 600)));
+        assertNull(PcmCache.readClip(file(0, 1, 100, 200)));
+        assertNull(PcmCache.readClip(ByteBuffer.allocate(8)));
+
+        ByteBuffer foreign = file(44_100, 1, 10, 20);
+        foreign.putInt(0, 0x52494646); // "RIFF"
+        assertNull(PcmCache.readClip(foreign));
+    }
+}
@@ -0,0 +1,42 @@
+package com.lightalarm.shared;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Loop points from the build turned into byte offsets.
+ */
+public class PcmPlayerTest {
+
+    // One second of 44.1 kHz stereo
+    private static final int RATE = 44_100;
+    private static final int FRAME_BYTES = 4;
+    private static final int DATA_BYTES = RATE * FRAME_BYTES;
+
+    @Test
+    public void unsetLoopIsTheWholeClip() {
+        assertArrayEquals(new int[] {0, DATA_BYTES}, PcmPlayer.loopRange(0, 0, RATE, FRAME_BYTES, DATA_BYTES));
+    }
+
+    @Test
+    public void microsecondsRoundTripToTheSameFrame() {
+        // What the build writes for frame 12345: round(12345 * 1e6 / 44100)
+        long endUs = Math.round(12_345 * 1_000_000d / RATE);
+        long startUs = Math.round(441 * 1_000_000d / RATE);
+        int[] range = PcmPlayer.loopRange(startUs, endUs, RATE, FRAME_BYTES, DATA_BYTES);
+        assertEquals(441 * FRAME_BYTES, range[0]);
+        assertEquals(12_345 * FRAME_BYTES, range[1]);
+    }
+
+    @Test
+    public void outOfRangePointsAreClamped() {
+        // End past the clip stops at the clip
+        assertArrayEquals(new int[] {0, DATA_BYTES}, PcmPlayer.loopRange(0, 5_000_000, RATE, FRAME_BYTES, DATA_BYTES));
+        // Start at or after the end falls back to the whole clip
+        assertArrayEquals(new int[] {0, DATA_BYTES},
+            PcmPlayer.loopRange(600_000, 500_000, RATE, FRAME_BYTES, DATA_BYTES));
+        // A partial trailing frame is never played
+        assertArrayEquals(new int[] {0, 8}, PcmPlayer.loopRange(0, 0, RATE, FRAME_BYTES, 10));
+    }
+}
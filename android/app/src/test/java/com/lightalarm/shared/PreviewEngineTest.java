@@ -0,0 +1,118 @@
+package com.lightalarm.shared;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Prefetch ordering, the preview window over decoded PCM, and the byte-bounded LRU of warm
+ * previews.
+ */
+public class PreviewEngineTest {
+
+    private static PcmCache.Clip clip(int bytes) {
+        return new PcmCache.Clip(44_100, 2, ByteBuffer.allocate(bytes));
+    }
+
+    @Test
+    public void visibleRowsFirstThenNearestNeighbours() {
+        assertEquals(Arrays.asList(4, 5, 6, 7, 3, 8, 2),
+            PreviewEngine.prefetchOrder(4, 6, 20, 2));
+    }
+
+    @Test
+    public void prefetchOrderStaysInsideTheList() {
+        assertEquals(Arrays.asList(0, 1, 2, 3), PreviewEngine.prefetchOrder(0, 1, 4, 3));
+        assertEquals(Arrays.asList(2, 1), PreviewEngine.prefetchOrder(2, 9, 3, 1));
+        assertTrue(PreviewEngine.prefetchOrder(0, 0, 0, 3).isEmpty());
+    }
+
+    // Mono 16-bit PCM counting up from start
+    private static ByteBuffer ramp(int start, int samples) {
+        ByteBuffer pcm = ByteBuffer.allocate(2 * samples).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < samples; i++) {
+            pcm.putShort((short) (start + i));
+        }
+        pcm.flip();
+        return pcm;
+    }
+
+    @Test
+    public void windowStopsTheDecoderOnceFull() {
+        // 100 ms at 1 kHz mono is 100 samples
+        PreviewEngine.Window window = new PreviewEngine.Window(100);
+        window.format(1000, 1);
+        assertTrue(window.write(ramp(0, 60)));
+        ByteBuffer tail = ramp(60, 60);
+        assertFalse(window.write(tail));
+        assertTrue(window.isFull());
+        assertEquals(20, tail.remaining() / 2);
+
+        PcmCache.Clip clip = window.clip();
+        assertEquals(100, clip.durationMs());
+        assertEquals(0, clip.data.getShort(0));
+        assertEquals(99, clip.data.getShort(2 * 99));
+    }
+
+    @Test
+    public void windowFitsShortSounds() {
+        PreviewEngine.Window window = new PreviewEngine.Window(10_000);
+        assertNull(window.clip());
+        window.format(1000, 2);
+        assertTrue(window.write(ramp(0, 50)));
+        assertFalse(window.isFull());
+        PcmCache.Clip clip = window.clip();
+        assertEquals(2, clip.channelCount);
+        assertEquals(100, clip.data.capacity());
+    }
+
+    @Test
+    public void windowKeepsSamplesFromBeforeAFormatChange() {
+        PreviewEngine.Window window = new PreviewEngine.Window(1000);
+        window.format(1000, 1);
+        window.format(2000, 1);
+        window.write(ramp(0, 10));
+        window.format(4000, 2);
+        assertTrue(window.isFull());
+        assertFalse(window.write(ramp(10, 10)));
+        PcmCache.Clip clip = window.clip();
+        assertEquals(2000, clip.sampleRate);
+        assertEquals(20, clip.data.remaining());
+    }
+
+    @Test
+    public void lruEvictsLeastRecentlyPlayedOverBudget() {
+        PreviewEngine.Lru lru = new PreviewEngine.Lru(300);
+        lru.put(1, clip(100));
+        lru.put(2, clip(100));
+        lru.put(3, clip(100));
+        // Touch 1 so 2 is the eldest
+        assertNotNull(lru.get(1));
+        lru.put(4, clip(100));
+
+        assertFalse(lru.contains(2));
+        assertTrue(lru.contains(1));
+        assertTrue(lru.contains(3));
+        assertTrue(lru.contains(4));
+        assertEquals(300, lru.bytes());
+    }
+
+    @Test
+    public void lruKeepsAnOversizedNewestClip() {
+        PreviewEngine.Lru lru = new PreviewEngine.Lru(100);
+        lru.put(1, clip(50));
+        lru.put(2, clip(500));
+        assertEquals(1, lru.size());
+        assertTrue(lru.contains(2));
+
+        lru.put(2, clip(80));
+        assertEquals(80, lru.bytes());
+        lru.clear();
+        assertEquals(0, lru.size());
+        assertEquals(0, lru.bytes());
+    }
+}
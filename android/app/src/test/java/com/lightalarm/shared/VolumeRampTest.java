@@ -0,0 +1,68 @@
+package com.lightalarm.shared;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Ramp curves and the text form both apps store.
+ */
+public class VolumeRampTest {
+
+    @Test
+    public void curvesRunFromStartToEndAndNeverDip() {
+        for (VolumeRamp.Curve curve : VolumeRamp.Curve.values()) {
+            VolumeRamp ramp = new VolumeRamp(curve, 0.2f, 0.9f, 30_000L);
+            assertEquals(curve.name(), 0.2f, ramp.volumeAt(0f), 1e-6f);
+            assertEquals(curve.name(), 0.9f, ramp.volumeAt(1f), 1e-6f);
+            float previous = ramp.volumeAt(0f);
+            for (int i = 1; i <= 100; i++) {
+                float volume = ramp.volumeAt(i / 100f);
+                assertTrue(curve + " dipped at " + i + "%", volume >= previous);
+                previous = volume;
+            }
+            // Out-of-range fractions clamp
+            assertEquals(0.9f, ramp.volumeAt(2f), 1e-6f);
+        }
+    }
+
+    @Test
+    public void curveShapes() {
+        VolumeRamp exponential = new VolumeRamp(VolumeRamp.Curve.EXPONENTIAL, 0f, 1f, 1000L);
+        VolumeRamp sCurve = new VolumeRamp(VolumeRamp.Curve.S_CURVE, 0f, 1f, 1000L);
+        assertTrue(exponential.shapeAt(0.5f) < 0.1f);
+        assertEquals(0.5f, sCurve.shapeAt(0.5f), 1e-6f);
+        assertTrue(sCurve.shapeAt(0.1f) < 0.1f);
+    }
+
+    @Test
+    public void textFormRoundTrips() {
+        VolumeRamp ramp = new VolumeRamp(VolumeRamp.Curve.S_CURVE, 0.25f, 1f, 45_000L);
+        VolumeRamp parsed = VolumeRamp.parse(ramp.toString());
+        assertEquals(VolumeRamp.Curve.S_CURVE, parsed.curve);
+        assertEquals(0.25f, parsed.startVolume, 0f);
+        assertEquals(1f, parsed.endVolume, 0f);
+        assertEquals(45_000L, parsed.durationMs);
+        assertEquals(VolumeRamp.Curve.EXPONENTIAL, VolumeRamp.parse("exponential:0:1:5000").curve);
+    }
+
+    @Test
+    public void gainScalesBothEnds() {
+        VolumeRamp ramp = new VolumeRamp(VolumeRamp.Curve.S_CURVE, 0.5f, 1f, 30_000L);
+        VolumeRamp levelled = ramp.withGain(0.4f);
+        assertEquals(0.2f, levelled.startVolume, 1e-6f);
+        assertEquals(0.4f, levelled.endVolume, 1e-6f);
+        assertEquals(VolumeRamp.Curve.S_CURVE, levelled.curve);
+        assertEquals(30_000L, levelled.durationMs);
+        assertSame(ramp, ramp.withGain(1f));
+    }
+
+    @Test
+    public void malformedTextFallsBackToDefault() {
+        assertSame(VolumeRamp.DEFAULT, VolumeRamp.parse(null));
+        assertSame(VolumeRamp.DEFAULT, VolumeRamp.parse("linear:0.5:1.0"));
+        assertSame(VolumeRamp.DEFAULT, VolumeRamp.parse("wobble:0.5:1.0:1000"));
+        assertSame(VolumeRamp.DEFAULT, VolumeRamp.parse("linear:1.5:1.0:1000"));
+        assertSame(VolumeRamp.DEFAULT, VolumeRamp.parse("linear:0.5:1.0:-1"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.lightalarm.shared;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Peak downsampling and the stored waveform format.
+ */
+public class WaveformCacheTest {
+
+    // Mono 16-bit PCM, one second at 1 kHz, loud in the second half only
+    private static ByteBuffer halfLoud() {
+        ByteBuffer pcm = ByteBuffer.allocate(2 * 1000).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 1000; i++) {
+            pcm.putShort((short) (i < 500 ? 100 : (i % 2 == 0 ? 20_000 : -32_768)));
+        }
+        pcm.flip();
+        return pcm;
+    }
+
+    @Test
+    public void peaksFollowTheSignal() {
+        WaveformCache.Accumulator accumulator = new WaveformCache.Accumulator();
+        accumulator.format(1000, 1);
+        // Split across writes the way decoder buffers arrive
+        ByteBuffer pcm = halfLoud();
+        ByteBuffer first = pcm.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        first.limit(600);
+        accumulator.write(first);
+        pcm.position(600);
+        accumulator.write(pcm);
+
+        short[] peaks = accumulator.peaks(10);
+        assertEquals(10, peaks.length);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(100, peaks[i]);
+        }
+        for (int i = 5; i < 10; i++) {
+            // -32768 clamps to the largest short
+            assertEquals(Short.MAX_VALUE, peaks[i]);
+        }
+    }
+
+    @Test
+    public void shortSoundsFillEveryPoint() {
+        WaveformCache.Accumulator accumulator = new WaveformCache.Accumulator();
+        accumulator.format(1000, 2);
+        ByteBuffer pcm = ByteBuffer.allocate(2 * 2 * 30).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 60; i++) {
+            pcm.putShort((short) 1000);
+        }
+        pcm.flip();
+        accumulator.write(pcm);
+        short[] peaks = accumulator.peaks(WaveformCache.POINTS);
+        for (short peak : peaks) {
+            assertEquals(1000, peak);
+        }
+        assertEquals(WaveformCache.POINTS, new WaveformCache.Accumulator().peaks(WaveformCache.POINTS).length);
+    }
+
+    @Test
+    public void storedFormatRoundTrips() {
+        short[] peaks = new short[WaveformCache.POINTS];
+        for (int i = 0; i < peaks.length; i++) {
+            peaks[i] = (short) (i * 300);
+        }
+        assertArrayEquals(peaks, WaveformCache.decode(WaveformCache.encode(peaks)));
+        assertNull(WaveformCache.decode(WaveformCache.encode(new short[10])));
+        ByteBuffer corrupt = WaveformCache.encode(peaks);
+        corrupt.put(0, (byte) 0);
+        assertNull(WaveformCache.decode(corrupt));
+    }
+}
@@ -12,6 +12,7 @@ import android.widget.Button
 import android.widget.TextView
 import androidx.appcompat.app.AppCompatActivity
 import androidx.constraintlayout.widget.ConstraintLayout
+import com.lightalarm.shared.VolumeRamp
 import java.text.SimpleDateFormat
 import java.util.*
 
@@ -19,6 +20,7 @@ class AlarmActivity : AppCompatActivity() {
     
     private lateinit var mediaPlayer: MediaPlayer
     private var brightnessAnimator: ValueAnimator? = null
+    private var volumeRamp: VolumeRamp.Handle? = null
     private var isPreviewMode = false
     private var theme = "Sunrise"
     
@@ -93,6 +95,7 @@ class AlarmActivity : AppCompatActivity() {
             val soundResourceId = R.raw.classicalarm_digital_alarm_wav
             mediaPlayer = MediaPlayer.create(this, soundResourceId)
             mediaPlayer.isLooping = true
+            volumeRamp = loadVolumeRamp().start(mediaPlayer)
             mediaPlayer.start()
         } catch (e: Exception) {
             // Fallback: try system default alarm sound, then vibrate
@@ -101,6 +104,7 @@ class AlarmActivity : AppCompatActivity() {
                     setDataSource("/system/media/audio/alarms/Argon.ogg")
                     prepare()
                     isLooping = true
+                    volumeRamp = loadVolumeRamp().start(this)
                     start()
                 }
             } catch (_: Exception) {
@@ -119,8 +123,16 @@ class AlarmActivity : AppCompatActivity() {
         }
     }
     
+    // Same ramp type and text form as the Capacitor app's AlarmService
+    private fun loadVolumeRamp(): VolumeRamp {
+        val prefs = getSharedPreferences("alarm_prefs", MODE_PRIVATE)
+        return VolumeRamp.parse(prefs.getString("volume_ramp", null))
+    }
+
     private fun stopAlarm() {
         brightnessAnimator?.cancel()
+        volumeRamp?.cancel()
+        volumeRamp = null
         mediaPlayer?.let {
             if (it.isPlaying) {
                 it.stop()
@@ -58,6 +58,17 @@ class SoundPickerActivity : AppCompatActivity() {
         }
         
         recyclerView.adapter = adapter
+
+        // Warm previews for the rows on screen, and follow them as the list scrolls
+        val layoutManager = recyclerView.layoutManager as LinearLayoutManager
+        recyclerView.addOnScrollListener(object : RecyclerView.OnScrollListener() {
+            override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+                adapter.prefetchVisible(
+                    layoutManager.findFirstVisibleItemPosition(),
+                    layoutManager.findLastVisibleItemPosition()
+                )
+            }
+        })
     }
 
     override fun onStop() {
@@ -1,7 +1,10 @@
 package com.lightalarm.nativeapp
 
 import android.content.Context
+import android.media.AudioAttributes
 import android.media.MediaPlayer
+import android.os.Handler
+import android.os.Looper
 import android.util.Log
 import android.view.LayoutInflater
 import android.view.View
@@ -9,6 +12,11 @@ import android.view.ViewGroup
 import android.widget.ImageButton
 import android.widget.TextView
 import androidx.recyclerview.widget.RecyclerView
+import com.lightalarm.shared.PcmCache
+import com.lightalarm.shared.PcmPlayer
+import com.lightalarm.shared.PreviewEngine
+import com.lightalarm.shared.WaveformCache
+import com.lightalarm.shared.WaveformView
 
 class SoundPickerAdapter(
     private val context: Context,
@@ -17,10 +25,25 @@ class SoundPickerAdapter(
 ) : RecyclerView.Adapter<SoundPickerAdapter.SoundViewHolder>() {
 
     private var mediaPlayer: MediaPlayer? = null
+    private var pcmPlayer: PcmPlayer? = null
     private var playingPosition: Int = -1
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private val previewEngine = PreviewEngine.getInstance(PcmCache.getInstance(context))
+    private val resourceIds = sounds.map { it.resourceId }
+    private val waveforms = WaveformCache.getInstance(context, PcmCache.getInstance(context))
+
+    // Rebinds just the waveform of a row whose peaks arrived after it was bound
+    private val waveformListener = WaveformCache.Listener { resourceId, _ ->
+        resourceIds.forEachIndexed { position, id ->
+            if (id == resourceId) {
+                notifyItemChanged(position, WAVEFORM_PAYLOAD)
+            }
+        }
+    }
 
     inner class SoundViewHolder(itemView: View) : RecyclerView.ViewHolder(itemView) {
         val soundName: TextView = itemView.findViewById(R.id.soundName)
+        val waveform: WaveformView = itemView.findViewById(R.id.waveform)
         val playPauseButton: ImageButton = itemView.findViewById(R.id.playPauseButton)
         val selectButton: TextView = itemView.findViewById(R.id.selectButton)
     }
@@ -30,11 +53,32 @@ class SoundPickerAdapter(
         return SoundViewHolder(view)
     }
 
+    override fun onAttachedToRecyclerView(recyclerView: RecyclerView) {
+        super.onAttachedToRecyclerView(recyclerView)
+        waveforms.addListener(waveformListener)
+    }
+
+    override fun onDetachedFromRecyclerView(recyclerView: RecyclerView) {
+        waveforms.removeListener(waveformListener)
+        super.onDetachedFromRecyclerView(recyclerView)
+    }
+
+    override fun onBindViewHolder(holder: SoundViewHolder, position: Int, payloads: MutableList<Any>) {
+        if (payloads.isNotEmpty() && payloads.all { it === WAVEFORM_PAYLOAD }) {
+            holder.waveform.setPeaks(waveforms.peaks(sounds[position].resourceId))
+            return
+        }
+        onBindViewHolder(holder, position)
+    }
+
     override fun onBindViewHolder(holder: SoundViewHolder, position: Int) {
         val sound = sounds[position]
         
         // Set sound name
         holder.soundName.text = sound.displayName
+
+        // Null until computed in the background; the listener rebinds it then
+        holder.waveform.setPeaks(waveforms.peaks(sound.resourceId))
         
         // Set play/pause icon based on current playback state
         if (position == playingPosition) {
@@ -61,16 +105,36 @@ class SoundPickerAdapter(
                 
                 // Start new playback
                 try {
-                    mediaPlayer = MediaPlayer.create(context, sound.resourceId)
-                    mediaPlayer?.setOnCompletionListener {
-                        // Sound finished playing naturally
-                        val wasPlayingPosition = playingPosition
-                        playingPosition = -1
-                        if (wasPlayingPosition != -1) {
-                            notifyItemChanged(wasPlayingPosition)
+                    // Warm when the row was prefetched; otherwise this queues it for decoding
+                    val clip = previewEngine.clip(sound.resourceId)
+                    if (clip != null) {
+                        val player = PcmPlayer(clip, AudioAttributes.USAGE_MEDIA, false)
+                        player.setOnCompletion(Runnable {
+                            mainHandler.post {
+                                if (pcmPlayer === player) {
+                                    onPlaybackCompleted()
+                                }
+                            }
+                        })
+                        pcmPlayer = player
+                        player.start()
+                    } else {
+                        // Never decoded yet: prepare a MediaPlayer off the main thread
+                        val player = MediaPlayer()
+                        context.resources.openRawResourceFd(sound.resourceId).use { afd ->
+                            player.setDataSource(afd.fileDescriptor, afd.startOffset, afd.length)
+                        }
+                        player.setOnCompletionListener {
+                            onPlaybackCompleted()
+                        }
+                        player.setOnPreparedListener {
+                            if (mediaPlayer === it) {
+                                it.start()
+                            }
                         }
+                        mediaPlayer = player
+                        player.prepareAsync()
                     }
-                    mediaPlayer?.start()
                     playingPosition = currentPosition
                     
                     // Update UI for both old and new positions
@@ -96,6 +160,21 @@ class SoundPickerAdapter(
 
     override fun getItemCount(): Int = sounds.size
 
+    // Warm the previews of the visible rows and their neighbours
+    fun prefetchVisible(first: Int, last: Int) {
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) return
+        previewEngine.prefetch(resourceIds, first, last)
+    }
+
+    private fun onPlaybackCompleted() {
+        // Sound finished playing naturally
+        val wasPlayingPosition = playingPosition
+        playingPosition = -1
+        if (wasPlayingPosition != -1) {
+            notifyItemChanged(wasPlayingPosition)
+        }
+    }
+
     private fun stopPlayback() {
         mediaPlayer?.let {
             if (it.isPlaying) {
@@ -104,20 +183,22 @@ class SoundPickerAdapter(
             it.release()
         }
         mediaPlayer = null
+        pcmPlayer?.release()
+        pcmPlayer = null
         playingPosition = -1
     }
 
-    // Public function to release MediaPlayer (call from Activity onStop/onDestroy)
+    // Public function to release the players (call from Activity onStop/onDestroy)
     fun releasePlayer() {
         val wasPlaying = playingPosition
         stopPlayback()
+        previewEngine.trim()
         if (wasPlaying != -1) {
             notifyItemChanged(wasPlaying)
         }
     }
-}
-
-
-
-
 
+    companion object {
+        private val WAVEFORM_PAYLOAD = Any()
+    }
+}
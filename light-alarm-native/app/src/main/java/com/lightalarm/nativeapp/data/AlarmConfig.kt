@@ -7,17 +7,24 @@ data class AlarmConfig(
     val hour: Int = 7,
     val minute: Int = 0,
     val repeatDays: RepeatDays = RepeatDays.DAILY,
+    val customDays: Int = 0, // Recurrence day mask used when repeatDays is CUSTOM
     val sound: String = "Classic Alarm",
     val theme: LightTheme = LightTheme.SUNRISE,
     val isEnabled: Boolean = true,
     val createdAt: Long = System.currentTimeMillis()
 )
 
-enum class RepeatDays(val displayName: String) {
-    DAILY("Daily"),
-    WEEKENDS("Weekends"),
-    WEEKDAYS("Weekdays"),
-    CUSTOM("Custom")
+enum class RepeatDays(val displayName: String, val dayMask: Int) {
+    DAILY("Daily", Recurrence.EVERY_DAY),
+    WEEKENDS("Weekends", Recurrence.WEEKENDS),
+    WEEKDAYS("Weekdays", Recurrence.WEEKDAYS),
+    CUSTOM("Custom", 0)
+}
+
+/** Day mask this alarm repeats on; an empty custom selection behaves like DAILY */
+fun AlarmConfig.repeatMask(): Int {
+    val mask = if (repeatDays == RepeatDays.CUSTOM) customDays and Recurrence.EVERY_DAY else repeatDays.dayMask
+    return if (mask == 0) Recurrence.EVERY_DAY else mask
 }
 
 enum class LightTheme(
@@ -0,0 +1,65 @@
+package com.lightalarm.nativeapp.data
+
+import java.util.TimeZone
+
+/**
+ * Weekly recurrence as a 7-bit day mask (bit 0 = Monday .. bit 6 = Sunday), mirroring the
+ * Capacitor app's Recurrence so both apps pick the same next occurrence.
+ *
+ * The next repeat day comes from rotating the mask to today's weekday and counting trailing
+ * zeros; the wall time is then resolved on that epoch day, so DST gaps shift forward and
+ * ambiguous times resolve to standard time.
+ */
+object Recurrence {
+    const val MONDAY = 1
+    const val TUESDAY = 1 shl 1
+    const val WEDNESDAY = 1 shl 2
+    const val THURSDAY = 1 shl 3
+    const val FRIDAY = 1 shl 4
+    const val SATURDAY = 1 shl 5
+    const val SUNDAY = 1 shl 6
+
+    const val WEEKDAYS = MONDAY or TUESDAY or WEDNESDAY or THURSDAY or FRIDAY
+    const val WEEKENDS = SATURDAY or SUNDAY
+    const val EVERY_DAY = WEEKDAYS or WEEKENDS
+
+    private const val MINUTE_MS = 60 * 1000L
+    private const val DAY_MS = 24 * 60 * MINUTE_MS
+
+    /** Weekday of an epoch day as a bit index, Monday = 0 (1970-01-01 was a Thursday) */
+    fun dayOfWeek(epochDay: Long): Int = Math.floorMod(epochDay + 3, 7L).toInt()
+
+    /** Days from the given epoch day to the first day in the mask, 0 if that day is included */
+    fun daysUntil(dayMask: Int, epochDay: Long): Int {
+        if (dayMask == 0) return 0
+        val dow = dayOfWeek(epochDay)
+        val rotated = ((dayMask ushr dow) or (dayMask shl (7 - dow))) and EVERY_DAY
+        return Integer.numberOfTrailingZeros(rotated)
+    }
+
+    /** First instant strictly after [afterMillis] at [minuteOfDay] on a day in [dayMask] */
+    fun nextTrigger(dayMask: Int, minuteOfDay: Int, afterMillis: Long, zone: TimeZone): Long {
+        val mask = if (dayMask == 0) EVERY_DAY else dayMask
+        var day = localEpochDay(afterMillis, zone)
+        day += daysUntil(mask, day)
+        var trigger = localToUtc(day * DAY_MS + minuteOfDay * MINUTE_MS, zone)
+        // Landing on another local day means the repeat day itself was skipped by the zone
+        while (trigger <= afterMillis || localEpochDay(trigger, zone) != day) {
+            day += 1 + daysUntil(mask, day + 1)
+            trigger = localToUtc(day * DAY_MS + minuteOfDay * MINUTE_MS, zone)
+        }
+        return trigger
+    }
+
+    private fun localEpochDay(utcMillis: Long, zone: TimeZone): Long =
+        Math.floorDiv(utcMillis + zone.getOffset(utcMillis), DAY_MS)
+
+    // Same resolution as the Capacitor app's AlarmTimes: DST gaps shift forward, overlaps use standard time
+    private fun localToUtc(localMillis: Long, zone: TimeZone): Long {
+        val offset = zone.getOffset(localMillis - zone.rawOffset)
+        val utc = localMillis - offset
+        val actual = zone.getOffset(utc)
+        if (actual == offset) return utc
+        return if (zone.getOffset(localMillis - actual) == actual) localMillis - actual else localMillis - minOf(offset, actual)
+    }
+}
@@ -9,11 +9,13 @@ import com.google.gson.Gson
 import com.google.gson.reflect.TypeToken
 import com.lightalarm.nativeapp.data.AlarmConfig
 import com.lightalarm.nativeapp.data.LightTheme
+import com.lightalarm.nativeapp.data.Recurrence
+import com.lightalarm.nativeapp.data.repeatMask
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.launch
-import java.util.Calendar
+import java.util.TimeZone
 
 class AlarmViewModel(application: Application) : AndroidViewModel(application) {
     
@@ -37,7 +39,7 @@ class AlarmViewModel(application: Application) : AndroidViewModel(application) {
     fun addAlarm(alarm: AlarmConfig) {
         viewModelScope.launch {
             val currentAlarms = _alarms.value.toMutableList()
-            val newAlarm = alarm.copy(id = System.currentTimeMillis().toInt())
+            val newAlarm = alarm.copy(id = allocateAlarmId(currentAlarms))
             currentAlarms.add(newAlarm)
             _alarms.value = currentAlarms
             saveAlarms()
@@ -97,39 +99,44 @@ class AlarmViewModel(application: Application) : AndroidViewModel(application) {
         }
     }
     
+    /**
+     * Next id from a persisted counter. Truncated timestamps wrapped and could repeat; the counter
+     * starts above any id already saved so older alarms keep theirs.
+     */
+    private fun allocateAlarmId(existing: List<AlarmConfig>): Int {
+        var id = prefs.getInt(NEXT_ALARM_ID_KEY, maxOf(1, (existing.maxOfOrNull { it.id } ?: 0) + 1))
+        while (existing.any { it.id == id }) id++
+        prefs.edit().putInt(NEXT_ALARM_ID_KEY, id + 1).apply()
+        return id
+    }
+    
     private fun saveAlarms() {
         val alarmsJson = gson.toJson(_alarms.value)
         prefs.edit().putString("alarms", alarmsJson).apply()
     }
     
     private fun updateNextAlarmTime() {
-        val enabledAlarms = _alarms.value.filter { it.isEnabled }
-        if (enabledAlarms.isEmpty()) {
-            _nextAlarmTime.value = 0
-            return
-        }
-        
-        val now = Calendar.getInstance()
+        // One zone lookup for the whole pass; each alarm is epoch-day arithmetic on its
+        // repeat-day mask instead of a Calendar allocation
+        val now = System.currentTimeMillis()
+        val zone = TimeZone.getDefault()
         var soonestTime: Long = Long.MAX_VALUE
         
-        for (alarm in enabledAlarms) {
-            val alarmTime = Calendar.getInstance().apply {
-                set(Calendar.HOUR_OF_DAY, alarm.hour)
-                set(Calendar.MINUTE, alarm.minute)
-                set(Calendar.SECOND, 0)
-                set(Calendar.MILLISECOND, 0)
-                
-                // If time has passed today, set for tomorrow
-                if (timeInMillis <= now.timeInMillis) {
-                    add(Calendar.DAY_OF_MONTH, 1)
-                }
-            }
+        for (alarm in _alarms.value) {
+            if (!alarm.isEnabled) continue
+            
+            val minuteOfDay = alarm.hour * 60 + alarm.minute
+            val alarmTime = Recurrence.nextTrigger(alarm.repeatMask(), minuteOfDay, now, zone)
             
-            if (alarmTime.timeInMillis < soonestTime) {
-                soonestTime = alarmTime.timeInMillis
+            if (alarmTime < soonestTime) {
+                soonestTime = alarmTime
             }
         }
         
         _nextAlarmTime.value = if (soonestTime == Long.MAX_VALUE) 0 else soonestTime
     }
+    
+    companion object {
+        private const val NEXT_ALARM_ID_KEY = "next_alarm_id"
+    }
 }
@@ -0,0 +1,413 @@
+package com.lightalarm.shared;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Raw sound resources decoded once to 16-bit PCM files, memory-mapped for playback.
+ *
+ * Each file is a 16-byte header (magic, sample rate, channel count, frame count) followed by
+ * interleaved little-endian samples, named by resource id and compressed length so a changed
+ * resource gets a new file. Sounds over MAX_FILE_BYTES of PCM are not cached and keep playing
+ * through MediaPlayer; the directory is trimmed to MAX_TOTAL_BYTES, least recently played
+ * first. Decoding runs on one background thread.
+ */
+public final class PcmCache {
+    private static final String TAG = "PcmCache";
+
+    private static final String DIR_NAME = "pcm";
+    private static final int MAGIC = 0x50434D31; // "PCM1"
+    static final int HEADER_BYTES = 16;
+
+    // About 2 minutes of 44.1 kHz stereo
+    private static final long MAX_FILE_BYTES = 24L * 1024 * 1024;
+    private static final long MAX_TOTAL_BYTES = 64L * 1024 * 1024;
+    private static final long CODEC_TIMEOUT_US = 10_000;
+
+    private static PcmCache instance;
+
+    private final Context context;
+    private final File dir;
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor();
+    // Resources known not to fit, so they are not decoded again every time
+    private final Set<Integer> uncacheable = Collections.synchronizedSet(new HashSet<Integer>());
+
+    /**
+     * Decoded sound ready to stream: a read-only view of the samples after the header
+     */
+    public static final class Clip {
+        public final int sampleRate;
+        public final int channelCount;
+        public final ByteBuffer data;
+
+        Clip(int sampleRate, int channelCount, ByteBuffer data) {
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            this.data = data;
+        }
+
+        public int frameBytes() {
+            return 2 * channelCount;
+        }
+
+        public long durationMs() {
+            return data.remaining() / frameBytes() * 1000L / sampleRate;
+        }
+    }
+
+    private PcmCache(Context context, File dir) {
+        this.context = context;
+        this.dir = dir;
+    }
+
+    /**
+     * The cache in the given context's cache directory; pass a device-protected context for
+     * sounds that must play before the first unlock
+     */
+    public static synchronized PcmCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new PcmCache(context.getApplicationContext(), new File(context.getCacheDir(), DIR_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Map the decoded sound if it is cached; null means play it some other way
+     */
+    public Clip open(int resourceId) {
+        File file = fileFor(resourceId);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Clip clip = readClip(mapped);
+            if (clip == null) {
+                Log.w(TAG, "⚠️ Corrupt PCM file " + file.getName() + ", deleting");
+                file.delete();
+                return null;
+            }
+            // Recently played files survive trimming longest
+            file.setLastModified(System.currentTimeMillis());
+            return clip;
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to map " + file.getName(), e);
+            return null;
+        }
+    }
+
+    public boolean isCached(int resourceId) {
+        File file = fileFor(resourceId);
+        return file != null && file.exists();
+    }
+
+    /**
+     * Decode in the background if not cached yet
+     */
+    public void decodeAsync(final int resourceId) {
+        if (resourceId == 0 || uncacheable.contains(resourceId) || isCached(resourceId)) {
+            return;
+        }
+        decoder.execute(new Runnable() {
+            @Override
+            public void run() {
+                decode(resourceId);
+            }
+        });
+    }
+
+    /**
+     * Decode now (blocking) unless already cached; returns the clip, or null if it cannot be cached
+     */
+    public synchronized Clip decode(int resourceId) {
+        if (resourceId == 0 || uncacheable.contains(resourceId)) {
+            return null;
+        }
+        Clip cached = open(resourceId);
+        if (cached != null) {
+            return cached;
+        }
+        File file = fileFor(resourceId);
+        if (file == null || (!dir.exists() && !dir.mkdirs())) {
+            return null;
+        }
+        File temp = new File(dir, file.getName() + ".tmp");
+        long started = System.currentTimeMillis();
+        try {
+            if (!decodeTo(resourceId, temp)) {
+                uncacheable.add(resourceId);
+                return null;
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("rename failed");
+            }
+            Log.d(TAG, "🎼 Decoded resource " + resourceId + " to " + file.length() / 1024 + " KB PCM in "
+                + (System.currentTimeMillis() - started) + " ms");
+            trim(file);
+            return open(resourceId);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "❌ Failed to decode resource " + resourceId, e);
+            uncacheable.add(resourceId);
+            return null;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private boolean decodeTo(int resourceId, File out) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(out, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            channel.position(HEADER_BYTES);
+            FileSink sink = new FileSink(resourceId, channel);
+            if (!stream(resourceId, sink)) {
+                return false;
+            }
+            int frameBytes = 2 * sink.channelCount;
+            long frames = sink.written / frameBytes;
+            if (frames == 0) {
+                return false;
+            }
+            // Whole frames only, so a looping player wraps on a frame boundary
+            channel.truncate(HEADER_BYTES + frames * frameBytes);
+            channel.write(header(sink.sampleRate, sink.channelCount, frames), 0);
+            channel.force(false);
+            return true;
+        }
+    }
+
+    /**
+     * Receives a resource as it is decoded, as interleaved 16-bit little-endian PCM
+     */
+    interface Sink {
+        /**
+         * Called before the first samples, and again if the decoder changes its output format
+         */
+        void format(int sampleRate, int channelCount);
+
+        /**
+         * Consume the remaining bytes of pcm; false stops decoding
+         */
+        boolean write(ByteBuffer pcm) throws IOException;
+    }
+
+    // Appends to a cache file after its header, up to MAX_FILE_BYTES
+    private static final class FileSink implements Sink {
+        private final int resourceId;
+        private final FileChannel channel;
+        int sampleRate;
+        int channelCount;
+        long written = 0;
+
+        FileSink(int resourceId, FileChannel channel) {
+            this.resourceId = resourceId;
+            this.channel = channel;
+        }
+
+        @Override
+        public void format(int sampleRate, int channelCount) {
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+        }
+
+        @Override
+        public boolean write(ByteBuffer pcm) throws IOException {
+            written += pcm.remaining();
+            if (written > MAX_FILE_BYTES) {
+                Log.w(TAG, "⚠️ Resource " + resourceId + " is too long to cache as PCM");
+                return false;
+            }
+            while (pcm.hasRemaining()) {
+                channel.write(pcm);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Decode a resource into a sink on the calling thread, without touching the cache; false if
+     * it has no 16-bit audio or the sink stopped early
+     */
+    boolean stream(int resourceId, Sink sink) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try (AssetFileDescriptor afd = context.getResources().openRawResourceFd(resourceId)) {
+            extractor.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            int track = -1;
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat candidate = extractor.getTrackFormat(i);
+                String mime = candidate.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    track = i;
+                    format = candidate;
+                    break;
+                }
+            }
+            if (track < 0) {
+                Log.w(TAG, "⚠️ No audio track in resource " + resourceId);
+                return false;
+            }
+            extractor.selectTrack(track);
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            sink.format(format.getInteger(MediaFormat.KEY_SAMPLE_RATE), format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+            boolean inputDone = false;
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            while (true) {
+                if (!inputDone) {
+                    int in = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (in >= 0) {
+                        int size = extractor.readSampleData(codec.getInputBuffer(in), 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(in, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(in, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+                int outIndex = codec.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+                if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outFormat = codec.getOutputFormat();
+                    if (outFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                        && outFormat.getInteger(MediaFormat.KEY_PCM_ENCODING) != AudioFormat.ENCODING_PCM_16BIT) {
+                        Log.w(TAG, "⚠️ Decoder output for resource " + resourceId + " is not 16-bit PCM");
+                        return false;
+                    }
+                    sink.format(outFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                        outFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+                } else if (outIndex >= 0) {
+                    if (info.size > 0) {
+                        ByteBuffer output = codec.getOutputBuffer(outIndex);
+                        output.position(info.offset);
+                        output.limit(info.offset + info.size);
+                        if (!sink.write(output.slice().order(ByteOrder.LITTLE_ENDIAN))) {
+                            return false;
+                        }
+                    }
+                    codec.releaseOutputBuffer(outIndex, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        return true;
+                    }
+                }
+            }
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException e) {
+                    // Never started
+                }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    static ByteBuffer header(int sampleRate, int channelCount, long frames) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(sampleRate).putInt(channelCount).putInt((int) frames);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Parse a mapped cache file; null if the header does not match the contents
+     */
+    static Clip readClip(ByteBuffer file) {
+        if (file.capacity() < HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer header = file.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int magic = header.getInt(0);
+        int sampleRate = header.getInt(4);
+        int channelCount = header.getInt(8);
+        long frames = header.getInt(12) & 0xFFFFFFFFL;
+        if (magic != MAGIC || sampleRate <= 0 || channelCount < 1 || channelCount > 2
+            || HEADER_BYTES + frames * 2 * channelCount != file.capacity()) {
+            return null;
+        }
+        ByteBuffer data = file.duplicate();
+        data.position(HEADER_BYTES);
+        return new Clip(sampleRate, channelCount, data.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private File fileFor(int resourceId) {
+        String key = keyOf(resourceId);
+        return key != null ? new File(dir, key + ".pcm") : null;
+    }
+
+    /**
+     * Resource id and compressed length, so files derived from a resource change with it; null if
+     * there is no such resource
+     */
+    String keyOf(int resourceId) {
+        if (resourceId == 0) {
+            return null;
+        }
+        try (AssetFileDescriptor afd = context.getResources().openRawResourceFd(resourceId)) {
+            if (afd == null) {
+                return null;
+            }
+            return resourceId + "-" + afd.getLength();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Drop least recently played files until the directory fits, never the one just written
+    private void trim(File keep) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_TOTAL_BYTES) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (total <= MAX_TOTAL_BYTES) {
+                break;
+            }
+            if (!file.equals(keep)) {
+                total -= file.length();
+                file.delete();
+                Log.d(TAG, "🗑️ Evicted " + file.getName());
+            }
+        }
+    }
+}
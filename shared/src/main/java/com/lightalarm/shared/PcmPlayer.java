@@ -0,0 +1,196 @@
+package com.lightalarm.shared;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streams a decoded PcmCache clip into an AudioTrack.
+ *
+ * A writer thread copies straight from the memory-mapped clip with blocking writes. Looping wraps
+ * the read position back to the first frame inside the same stream, so the loop point is just the
+ * next sample rather than a seek and re-buffer as with MediaPlayer.setLooping. A loop region set
+ * with setLoop() is honoured the same way: the first pass plays from the start of the clip to the
+ * loop end, and every pass after that from the loop start. Completion is only reported for clips
+ * that do not loop, once the last written buffer has had time to drain.
+ */
+public final class PcmPlayer {
+    private static final String TAG = "PcmPlayer";
+
+    // Chunk written per blocking call and the track buffer: a few times the device minimum
+    private static final int BUFFER_MULTIPLIER = 4;
+    private static final int CHUNK_BYTES = 8 * 1024;
+    private static final long JOIN_TIMEOUT_MS = 200;
+
+    private final PcmCache.Clip clip;
+    private final boolean looping;
+    private final AudioTrack track;
+    private final int bufferBytes;
+
+    // Byte offsets into the clip data, whole frames
+    private int loopStartByte = 0;
+    private int loopEndByte;
+    private volatile boolean running = false;
+    private Thread writer;
+    private Runnable onCompletion;
+
+    public PcmPlayer(PcmCache.Clip clip, int usage, boolean looping) {
+        this.clip = clip;
+        this.looping = looping;
+        int channelMask = clip.channelCount == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+        int minBuffer = AudioTrack.getMinBufferSize(clip.sampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT);
+        bufferBytes = Math.max(CHUNK_BYTES, minBuffer) * BUFFER_MULTIPLIER;
+
+        AudioTrack.Builder builder = new AudioTrack.Builder()
+            .setAudioAttributes(new AudioAttributes.Builder()
+                .setUsage(usage)
+                .setContentType(usage == AudioAttributes.USAGE_ALARM
+                    ? AudioAttributes.CONTENT_TYPE_SONIFICATION
+                    : AudioAttributes.CONTENT_TYPE_MUSIC)
+                .build())
+            .setAudioFormat(new AudioFormat.Builder()
+                .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                .setSampleRate(clip.sampleRate)
+                .setChannelMask(channelMask)
+                .build())
+            .setTransferMode(AudioTrack.MODE_STREAM)
+            .setBufferSizeInBytes(bufferBytes);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY);
+        }
+        track = builder.build();
+        loopEndByte = clip.data.remaining();
+    }
+
+    /**
+     * Loop between two points in microseconds into the clip, e.g. the ones the build found for a
+     * sound; an end of 0 means the end of the clip. Only for looping players, before start().
+     */
+    public synchronized void setLoop(long startUs, long endUs) {
+        int[] range = loopRange(startUs, endUs, clip.sampleRate, clip.frameBytes(), clip.data.remaining());
+        loopStartByte = range[0];
+        loopEndByte = range[1];
+    }
+
+    /**
+     * Byte range of a loop in clip data of the given length, on frame boundaries and clamped to the
+     * data; the whole clip when the points are unset or make no sense
+     */
+    static int[] loopRange(long startUs, long endUs, int sampleRate, int frameBytes, int dataBytes) {
+        long frames = dataBytes / frameBytes;
+        long endFrame = endUs > 0 ? Math.min(frames, Math.round(endUs * sampleRate / 1_000_000.0)) : frames;
+        long startFrame = Math.max(0, Math.round(startUs * sampleRate / 1_000_000.0));
+        if (startFrame >= endFrame) {
+            return new int[] {0, (int) (frames * frameBytes)};
+        }
+        return new int[] {(int) (startFrame * frameBytes), (int) (endFrame * frameBytes)};
+    }
+
+    /**
+     * Called on the writer thread when a non-looping clip has finished playing
+     */
+    public void setOnCompletion(Runnable onCompletion) {
+        this.onCompletion = onCompletion;
+    }
+
+    public AudioTrack getTrack() {
+        return track;
+    }
+
+    public void setVolume(float volume) {
+        track.setVolume(volume);
+    }
+
+    public boolean isPlaying() {
+        return running;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        final ByteBuffer data = clip.data.duplicate();
+        data.rewind();
+        if (looping) {
+            data.limit(loopEndByte);
+        }
+        // Prime the track before play() so the first buffer is already queued
+        writeChunk(data);
+        track.play();
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                stream(data);
+            }
+        }, TAG);
+        writer.setPriority(Thread.MAX_PRIORITY);
+        writer.start();
+    }
+
+    private void stream(ByteBuffer data) {
+        while (running) {
+            if (!data.hasRemaining()) {
+                if (!looping) {
+                    break;
+                }
+                data.position(loopStartByte);
+            }
+            if (writeChunk(data) < 0) {
+                Log.e(TAG, "❌ AudioTrack write failed, stopping");
+                running = false;
+                return;
+            }
+        }
+        if (!running) {
+            return;
+        }
+        // Let what is already queued in the track play out
+        try {
+            Thread.sleep(bufferBytes / clip.frameBytes() * 1000L / clip.sampleRate);
+        } catch (InterruptedException e) {
+            return;
+        }
+        if (running) {
+            running = false;
+            Runnable callback = onCompletion;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    private int writeChunk(ByteBuffer data) {
+        int size = Math.min(CHUNK_BYTES, data.remaining());
+        return track.write(data, size, AudioTrack.WRITE_BLOCKING);
+    }
+
+    public synchronized void stop() {
+        running = false;
+        try {
+            // Unblocks a pending blocking write
+            track.pause();
+            track.flush();
+        } catch (IllegalStateException e) {
+            // Already released
+        }
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join(JOIN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+    }
+
+    public synchronized void release() {
+        stop();
+        track.release();
+    }
+}
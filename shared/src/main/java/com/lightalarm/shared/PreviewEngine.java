@@ -0,0 +1,313 @@
+package com.lightalarm.shared;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sound picker previews served from memory.
+ *
+ * The first PREVIEW_MS of each sound is streamed through the decoder into a direct buffer, or
+ * copied from PcmCache when the alarm path already decoded it there, and those buffers are kept in
+ * an LRU bounded by MAX_WARM_BYTES. Previews never write to the PCM cache, so browsing the picker
+ * cannot evict an alarm's decoded sound. Pickers call prefetch() with the rows on screen as the
+ * list scrolls; the loader works through the visible rows and then their neighbours, and a newer
+ * request replaces whatever was still queued, so a fling does not leave a backlog of rows that
+ * are gone. A tap on a warm row hands a PcmPlayer its clip with no file or codec work at all.
+ */
+public final class PreviewEngine {
+    private static final String TAG = "PreviewEngine";
+
+    public static final long PREVIEW_MS = 10_000;
+    // About nine 10 s stereo previews at 44.1 kHz
+    private static final long MAX_WARM_BYTES = 16L * 1024 * 1024;
+    // Rows past either edge of the screen that are loaded too
+    static final int NEIGHBOURS = 3;
+
+    private static PreviewEngine instance;
+
+    private final PcmCache cache;
+    private final Lru warm = new Lru(MAX_WARM_BYTES);
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final ArrayDeque<Integer> wanted = new ArrayDeque<>();
+    private boolean draining = false;
+
+    private PreviewEngine(PcmCache cache) {
+        this.cache = cache;
+    }
+
+    public static synchronized PreviewEngine getInstance(PcmCache cache) {
+        if (instance == null) {
+            instance = new PreviewEngine(cache);
+        }
+        return instance;
+    }
+
+    /**
+     * The preview clip for a sound: from memory if warm, else mapped from the PCM cache; null if
+     * the sound has not been decoded yet, in which case it is queued for loading
+     */
+    public PcmCache.Clip clip(int resourceId) {
+        PcmCache.Clip clip = warm.get(resourceId);
+        if (clip != null) {
+            return clip;
+        }
+        load(resourceId);
+        PcmCache.Clip mapped = cache.open(resourceId);
+        return mapped != null ? window(mapped) : null;
+    }
+
+    /**
+     * Load the rows first..last of a list of resource ids plus their neighbours, replacing any
+     * earlier request still queued
+     */
+    public void prefetch(List<Integer> resourceIds, int first, int last) {
+        List<Integer> order = prefetchOrder(first, last, resourceIds.size(), NEIGHBOURS);
+        synchronized (wanted) {
+            wanted.clear();
+            for (int position : order) {
+                int resourceId = resourceIds.get(position);
+                if (resourceId != 0 && !warm.contains(resourceId)) {
+                    wanted.add(resourceId);
+                }
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Drop all warm previews, e.g. when the picker closes or memory is low
+     */
+    public void trim() {
+        synchronized (wanted) {
+            wanted.clear();
+        }
+        warm.clear();
+    }
+
+    private void load(int resourceId) {
+        if (resourceId == 0) {
+            return;
+        }
+        synchronized (wanted) {
+            // A tapped row goes ahead of anything prefetched
+            wanted.remove(resourceId);
+            wanted.addFirst(resourceId);
+        }
+        drain();
+    }
+
+    private void drain() {
+        synchronized (wanted) {
+            if (draining || wanted.isEmpty()) {
+                return;
+            }
+            draining = true;
+        }
+        loader.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    Integer next;
+                    synchronized (wanted) {
+                        next = wanted.poll();
+                        if (next == null) {
+                            draining = false;
+                            return;
+                        }
+                    }
+                    if (!warm.contains(next)) {
+                        warmUp(next);
+                    }
+                }
+            }
+        });
+    }
+
+    private void warmUp(int resourceId) {
+        PcmCache.Clip preview;
+        PcmCache.Clip mapped = cache.open(resourceId);
+        if (mapped != null) {
+            Window window = new Window(PREVIEW_MS);
+            window.format(mapped.sampleRate, mapped.channelCount);
+            window.write(mapped.data.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+            preview = window.clip();
+        } else {
+            preview = streamPreview(resourceId);
+        }
+        if (preview == null) {
+            return;
+        }
+        warm.put(resourceId, preview);
+        Log.d(TAG, "🔥 Preview " + resourceId + " warm" + (mapped != null ? " from PCM cache" : "")
+            + " (" + warm.size() + " held, " + warm.bytes() / 1024 + " KB)");
+    }
+
+    // Decode only as far as the preview window reaches, straight into memory
+    private PcmCache.Clip streamPreview(int resourceId) {
+        Window window = new Window(PREVIEW_MS);
+        try {
+            // The window stopping the decoder is a success; anything else short of the end is not
+            if (!cache.stream(resourceId, window) && !window.isFull()) {
+                return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "❌ Failed to decode preview of resource " + resourceId, e);
+            return null;
+        }
+        return window.clip();
+    }
+
+    // The first PREVIEW_MS of a clip, as a view on the same memory
+    private static PcmCache.Clip window(PcmCache.Clip clip) {
+        long frames = clip.sampleRate * PREVIEW_MS / 1000;
+        int bytes = (int) Math.min(clip.data.remaining(), frames * clip.frameBytes());
+        ByteBuffer data = clip.data.duplicate();
+        data.limit(data.position() + bytes);
+        return new PcmCache.Clip(clip.sampleRate, clip.channelCount, data.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * Collects the first maxMs of decoded PCM into a direct buffer, then stops the decoder
+     */
+    static final class Window implements PcmCache.Sink {
+        private final long maxMs;
+        private ByteBuffer buffer;
+        private int sampleRate;
+        private int channelCount;
+
+        Window(long maxMs) {
+            this.maxMs = maxMs;
+        }
+
+        @Override
+        public void format(int sampleRate, int channelCount) {
+            if (buffer != null && buffer.position() > 0) {
+                // Samples already taken are in the old format; keep them and stop there
+                buffer.limit(buffer.position());
+                return;
+            }
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            long frames = sampleRate * maxMs / 1000;
+            buffer = ByteBuffer.allocateDirect((int) (frames * 2 * channelCount)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override
+        public boolean write(ByteBuffer pcm) {
+            int bytes = Math.min(pcm.remaining(), buffer.remaining());
+            ByteBuffer part = pcm.duplicate();
+            part.limit(part.position() + bytes);
+            buffer.put(part);
+            pcm.position(pcm.position() + bytes);
+            return buffer.hasRemaining();
+        }
+
+        boolean isFull() {
+            return buffer != null && !buffer.hasRemaining();
+        }
+
+        /**
+         * What was collected, or null if nothing was
+         */
+        PcmCache.Clip clip() {
+            if (buffer == null || buffer.position() == 0) {
+                return null;
+            }
+            ByteBuffer data = buffer.duplicate();
+            data.flip();
+            if (data.limit() < data.capacity()) {
+                // A sound shorter than the window should not hold on to the whole allocation
+                ByteBuffer exact = ByteBuffer.allocateDirect(data.remaining());
+                exact.put(data);
+                exact.flip();
+                data = exact;
+            }
+            return new PcmCache.Clip(sampleRate, channelCount, data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * Positions to load for visible rows first..last of count: the visible rows top down, then
+     * neighbours alternating below and above, nearest first
+     */
+    static List<Integer> prefetchOrder(int first, int last, int count, int neighbours) {
+        List<Integer> order = new ArrayList<>();
+        if (count == 0) {
+            return order;
+        }
+        first = Math.max(0, Math.min(first, count - 1));
+        last = Math.max(first, Math.min(last, count - 1));
+        for (int position = first; position <= last; position++) {
+            order.add(position);
+        }
+        for (int distance = 1; distance <= neighbours; distance++) {
+            if (last + distance < count) {
+                order.add(last + distance);
+            }
+            if (first - distance >= 0) {
+                order.add(first - distance);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Access-ordered clips, evicted least recently used first once over the byte budget
+     */
+    static final class Lru {
+        private final long maxBytes;
+        private final LinkedHashMap<Integer, PcmCache.Clip> clips = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes = 0;
+
+        Lru(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized PcmCache.Clip get(int resourceId) {
+            return clips.get(resourceId);
+        }
+
+        synchronized boolean contains(int resourceId) {
+            return clips.containsKey(resourceId);
+        }
+
+        synchronized void put(int resourceId, PcmCache.Clip clip) {
+            PcmCache.Clip previous = clips.put(resourceId, clip);
+            if (previous != null) {
+                bytes -= previous.data.capacity();
+            }
+            bytes += clip.data.capacity();
+            Iterator<Map.Entry<Integer, PcmCache.Clip>> eldest = clips.entrySet().iterator();
+            // Always keep the newest clip, even if it alone is over budget
+            while (bytes > maxBytes && clips.size() > 1) {
+                Map.Entry<Integer, PcmCache.Clip> entry = eldest.next();
+                bytes -= entry.getValue().data.capacity();
+                eldest.remove();
+            }
+        }
+
+        synchronized void clear() {
+            clips.clear();
+            bytes = 0;
+        }
+
+        synchronized int size() {
+            return clips.size();
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+    }
+}
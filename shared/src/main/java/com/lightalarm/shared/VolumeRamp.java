@@ -0,0 +1,248 @@
+package com.lightalarm.shared;
+
+import android.annotation.TargetApi;
+import android.media.AudioTrack;
+import android.media.MediaPlayer;
+import android.media.VolumeShaper;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.Locale;
+
+/**
+ * Alarm volume fade-in shared by the Capacitor app and the native app.
+ *
+ * A ramp is a curve, start and end volume and a duration. On API 26+ it is handed to the audio
+ * framework as a VolumeShaper, so the fade is applied per audio buffer with no app wakeups at
+ * all; older devices step the player volume from a Handler, with steps no coarser than
+ * 1/64 of full volume. Works on a MediaPlayer or on the AudioTrack behind a PcmPlayer.
+ * Both apps compile this same source file, and a ramp round-trips through a short text form
+ * ("linear:0.5:1.0:34000") for storage and the JS bridge.
+ */
+public final class VolumeRamp {
+
+    public enum Curve {
+        /** Constant rate in amplitude */
+        LINEAR,
+        /** Slow start, most of the rise at the end; closer to even steps in loudness */
+        EXPONENTIAL,
+        /** Smoothstep: eases in and out of the ramp */
+        S_CURVE
+    }
+
+    /** What the old 1.5%-per-second loop did: 50% to 100% in about 34 s */
+    public static final VolumeRamp DEFAULT = new VolumeRamp(Curve.LINEAR, 0.5f, 1.0f, 34_000L);
+
+    // Points handed to VolumeShaper for non-linear curves; it interpolates between them
+    private static final int SHAPER_POINTS = 17;
+    // Fallback steps are never bigger than this fraction of full volume
+    private static final int FALLBACK_STEPS_PER_UNIT = 64;
+    private static final long MIN_FALLBACK_INTERVAL_MS = 50;
+    // Growth rate of the exponential curve
+    private static final double EXP_K = 5.0;
+
+    public final Curve curve;
+    public final float startVolume;
+    public final float endVolume;
+    public final long durationMs;
+
+    /**
+     * Cancels a running ramp; the player keeps whatever volume it had reached
+     */
+    public interface Handle {
+        void cancel();
+    }
+
+    public VolumeRamp(Curve curve, float startVolume, float endVolume, long durationMs) {
+        if (curve == null || durationMs <= 0 || !inRange(startVolume) || !inRange(endVolume)) {
+            throw new IllegalArgumentException("Invalid volume ramp " + curve + " " + startVolume
+                + ".." + endVolume + " over " + durationMs + " ms");
+        }
+        this.curve = curve;
+        this.startVolume = startVolume;
+        this.endVolume = endVolume;
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * Parse the text form written by toString(); DEFAULT for null or anything malformed
+     */
+    public static VolumeRamp parse(String spec) {
+        if (spec == null) {
+            return DEFAULT;
+        }
+        String[] parts = spec.split(":");
+        if (parts.length != 4) {
+            return DEFAULT;
+        }
+        try {
+            Curve curve = Curve.valueOf(parts[0].trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            return new VolumeRamp(curve, Float.parseFloat(parts[1]), Float.parseFloat(parts[2]),
+                Long.parseLong(parts[3].trim()));
+        } catch (IllegalArgumentException e) {
+            return DEFAULT;
+        }
+    }
+
+    /**
+     * Shape of the curve alone, 0..1 at 0..1 of the duration
+     */
+    public float shapeAt(float fraction) {
+        double x = Math.min(1.0, Math.max(0.0, fraction));
+        switch (curve) {
+            case EXPONENTIAL:
+                return (float) ((Math.exp(EXP_K * x) - 1) / (Math.exp(EXP_K) - 1));
+            case S_CURVE:
+                return (float) (x * x * (3 - 2 * x));
+            case LINEAR:
+            default:
+                return (float) x;
+        }
+    }
+
+    /**
+     * Player volume at the given fraction of the ramp
+     */
+    public float volumeAt(float fraction) {
+        return startVolume + (endVolume - startVolume) * shapeAt(fraction);
+    }
+
+    /**
+     * The same ramp with both ends scaled by a gain in 0..1, e.g. to level a loud sound with the
+     * others; this ramp itself when the gain is 1
+     */
+    public VolumeRamp withGain(float gain) {
+        if (gain == 1f) {
+            return this;
+        }
+        if (!inRange(gain)) {
+            throw new IllegalArgumentException("Invalid gain " + gain);
+        }
+        return new VolumeRamp(curve, startVolume * gain, endVolume * gain, durationMs);
+    }
+
+    /**
+     * Start the ramp on a player. Call just before start() so the first buffer plays at
+     * startVolume; the fallback must be called on a thread with a Looper.
+     */
+    public Handle start(final MediaPlayer player) {
+        return start(new Target() {
+            @Override
+            public void setVolume(float volume) {
+                player.setVolume(volume, volume);
+            }
+
+            @Override
+            @TargetApi(Build.VERSION_CODES.O)
+            public VolumeShaper createVolumeShaper(VolumeShaper.Configuration configuration) {
+                return player.createVolumeShaper(configuration);
+            }
+        });
+    }
+
+    /**
+     * Same as start(MediaPlayer), for an AudioTrack
+     */
+    public Handle start(final AudioTrack track) {
+        return start(new Target() {
+            @Override
+            public void setVolume(float volume) {
+                track.setVolume(volume);
+            }
+
+            @Override
+            @TargetApi(Build.VERSION_CODES.O)
+            public VolumeShaper createVolumeShaper(VolumeShaper.Configuration configuration) {
+                return track.createVolumeShaper(configuration);
+            }
+        });
+    }
+
+    // The two calls a ramp needs, common to MediaPlayer and AudioTrack
+    private interface Target {
+        void setVolume(float volume);
+
+        VolumeShaper createVolumeShaper(VolumeShaper.Configuration configuration);
+    }
+
+    private Handle start(Target target) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return startShaper(target);
+        }
+        return startStepping(target);
+    }
+
+    // Only reached on API 26+, where VolumeShaper exists
+    @TargetApi(Build.VERSION_CODES.O)
+    private Handle startShaper(Target player) {
+        int points = curve == Curve.LINEAR ? 2 : SHAPER_POINTS;
+        float[] times = new float[points];
+        float[] volumes = new float[points];
+        for (int i = 0; i < points; i++) {
+            times[i] = (float) i / (points - 1);
+            volumes[i] = volumeAt(times[i]);
+        }
+        times[points - 1] = 1f;
+
+        VolumeShaper.Configuration configuration = new VolumeShaper.Configuration.Builder()
+            .setCurve(times, volumes)
+            .setInterpolatorType(curve == Curve.LINEAR
+                ? VolumeShaper.Configuration.INTERPOLATOR_TYPE_LINEAR
+                : VolumeShaper.Configuration.INTERPOLATOR_TYPE_CUBIC_MONOTONIC)
+            .setDuration(durationMs)
+            .build();
+        // The shaper scales the player volume, so the player itself plays at full volume
+        player.setVolume(1f);
+        final VolumeShaper shaper = player.createVolumeShaper(configuration);
+        shaper.apply(VolumeShaper.Operation.PLAY);
+        return new Handle() {
+            @Override
+            public void cancel() {
+                // Closing would snap back to full volume, so leave the shaper at its last value
+                // and let it go with the player
+            }
+        };
+    }
+
+    private Handle startStepping(final Target player) {
+        int steps = Math.max(1, (int) Math.ceil(Math.abs(endVolume - startVolume) * FALLBACK_STEPS_PER_UNIT));
+        final long interval = Math.max(MIN_FALLBACK_INTERVAL_MS, durationMs / steps);
+        final Handler handler = new Handler(Looper.myLooper() != null ? Looper.myLooper() : Looper.getMainLooper());
+        final long startedAt = SystemClock.elapsedRealtime();
+        player.setVolume(startVolume);
+        final Runnable step = new Runnable() {
+            @Override
+            public void run() {
+                long elapsed = SystemClock.elapsedRealtime() - startedAt;
+                float volume = volumeAt((float) elapsed / durationMs);
+                try {
+                    player.setVolume(volume);
+                } catch (IllegalStateException e) {
+                    // Player released under us
+                    return;
+                }
+                if (elapsed < durationMs) {
+                    handler.postDelayed(this, interval);
+                }
+            }
+        };
+        handler.postDelayed(step, interval);
+        return new Handle() {
+            @Override
+            public void cancel() {
+                handler.removeCallbacks(step);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return curve.name().toLowerCase(Locale.ROOT) + ":" + startVolume + ":" + endVolume + ":" + durationMs;
+    }
+
+    private static boolean inRange(float volume) {
+        return volume >= 0f && volume <= 1f;
+    }
+}
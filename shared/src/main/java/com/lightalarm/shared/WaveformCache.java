@@ -0,0 +1,273 @@
+package com.lightalarm.shared;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Waveform thumbnails for sound lists: POINTS peak levels per sound, 0..32767.
+ *
+ * Peaks are computed once per sound on a background thread, from the PCM cache when the sound is
+ * already decoded there and otherwise by streaming it through the decoder without caching the PCM,
+ * so scrolling through the catalog does not evict alarm sounds. They are stored as small files keyed
+ * like the PCM cache (resource id and compressed length) and held in memory after that; the whole
+ * catalog's worth is a few hundred KB. Rows ask with peaks() while binding and get null until the
+ * listener reports the sound ready.
+ */
+public final class WaveformCache {
+    private static final String TAG = "WaveformCache";
+
+    public static final int POINTS = 96;
+    private static final String DIR_NAME = "waveforms";
+    private static final int MAGIC = 0x57564631; // "WVF1"
+    private static final int HEADER_BYTES = 8;
+    // Peaks are first taken per block of this length, then merged down to POINTS
+    private static final int BLOCKS_PER_SECOND = 100;
+
+    private static WaveformCache instance;
+
+    private final PcmCache pcmCache;
+    private final File dir;
+    private final Map<Integer, short[]> peaks = Collections.synchronizedMap(new HashMap<Integer, short[]>());
+    // Queued or being computed, or known to fail
+    private final Set<Integer> requested = Collections.synchronizedSet(new HashSet<Integer>());
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Called on the main thread when a sound's peaks become available
+     */
+    public interface Listener {
+        void onWaveformReady(int resourceId, short[] peaks);
+    }
+
+    private WaveformCache(PcmCache pcmCache, File dir) {
+        this.pcmCache = pcmCache;
+        this.dir = dir;
+    }
+
+    public static synchronized WaveformCache getInstance(Context context, PcmCache pcmCache) {
+        if (instance == null) {
+            instance = new WaveformCache(pcmCache, new File(context.getCacheDir(), DIR_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * The sound's peaks if already loaded; otherwise null, and they are loaded in the background
+     */
+    public short[] peaks(final int resourceId) {
+        short[] loaded = peaks.get(resourceId);
+        if (loaded != null || resourceId == 0 || !requested.add(resourceId)) {
+            return loaded;
+        }
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final short[] result = load(resourceId);
+                if (result == null) {
+                    return;
+                }
+                peaks.put(resourceId, result);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Listener listener : listeners) {
+                            listener.onWaveformReady(resourceId, result);
+                        }
+                    }
+                });
+            }
+        });
+        return null;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private short[] load(int resourceId) {
+        String key = pcmCache.keyOf(resourceId);
+        if (key == null) {
+            return null;
+        }
+        File file = new File(dir, key + ".peaks");
+        short[] stored = read(file);
+        if (stored != null) {
+            return stored;
+        }
+
+        long started = System.currentTimeMillis();
+        Accumulator accumulator = new Accumulator();
+        PcmCache.Clip clip = pcmCache.open(resourceId);
+        try {
+            if (clip != null) {
+                accumulator.format(clip.sampleRate, clip.channelCount);
+                accumulator.write(clip.data.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+            } else if (!pcmCache.stream(resourceId, accumulator)) {
+                return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "❌ Failed to read resource " + resourceId + " for its waveform", e);
+            return null;
+        }
+        short[] result = accumulator.peaks(POINTS);
+        write(file, result);
+        Log.d(TAG, "〰️ Waveform for resource " + resourceId + " in " + (System.currentTimeMillis() - started)
+            + " ms" + (clip != null ? " (from PCM cache)" : ""));
+        return result;
+    }
+
+    private static short[] read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            short[] result = null;
+            if (channel.size() == HEADER_BYTES + 2L * POINTS) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                channel.read(buffer, 0);
+                buffer.flip();
+                result = decode(buffer);
+            }
+            if (result == null) {
+                Log.w(TAG, "⚠️ Corrupt waveform file " + file.getName() + ", deleting");
+                file.delete();
+            }
+            return result;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void write(File file, short[] values) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+        File temp = new File(dir, file.getName() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            channel.write(encode(values));
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to write " + file.getName(), e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    static ByteBuffer encode(short[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 2 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(values.length);
+        for (short value : values) {
+            buffer.putShort(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Parse a stored file; null unless it holds exactly POINTS peaks
+     */
+    static short[] decode(ByteBuffer buffer) {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() != HEADER_BYTES + 2 * POINTS
+            || buffer.getInt() != MAGIC || buffer.getInt() != POINTS) {
+            return null;
+        }
+        short[] values = new short[POINTS];
+        buffer.asShortBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Running peak per block of decoded PCM, over all channels, merged down to a fixed number of
+     * points at the end
+     */
+    static final class Accumulator implements PcmCache.Sink {
+        private short[] blocks = new short[256];
+        private int blockCount = 0;
+        private int blockSamples = 1;
+        private int samplesInBlock = 0;
+        private int blockPeak = 0;
+
+        @Override
+        public void format(int sampleRate, int channelCount) {
+            blockSamples = Math.max(1, sampleRate / BLOCKS_PER_SECOND * channelCount);
+        }
+
+        @Override
+        public boolean write(ByteBuffer pcm) {
+            while (pcm.remaining() >= 2) {
+                int sample = Math.abs((int) pcm.getShort());
+                if (sample > blockPeak) {
+                    blockPeak = sample;
+                }
+                if (++samplesInBlock == blockSamples) {
+                    endBlock();
+                }
+            }
+            return true;
+        }
+
+        private void endBlock() {
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            }
+            // -32768 would not fit back in a short
+            blocks[blockCount++] = (short) Math.min(Short.MAX_VALUE, blockPeak);
+            blockPeak = 0;
+            samplesInBlock = 0;
+        }
+
+        /**
+         * Highest block peak in each of points equal spans; a sound with fewer blocks than points
+         * repeats blocks rather than leaving gaps
+         */
+        short[] peaks(int points) {
+            if (samplesInBlock > 0) {
+                endBlock();
+            }
+            short[] result = new short[points];
+            if (blockCount == 0) {
+                return result;
+            }
+            for (int p = 0; p < points; p++) {
+                int from = (int) ((long) p * blockCount / points);
+                int to = Math.max(from + 1, (int) ((long) (p + 1) * blockCount / points));
+                short peak = 0;
+                for (int b = from; b < to; b++) {
+                    peak = (short) Math.max(peak, blocks[b]);
+                }
+                result[p] = peak;
+            }
+            return result;
+        }
+    }
+}
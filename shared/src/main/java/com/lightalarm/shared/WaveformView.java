@@ -0,0 +1,93 @@
+package com.lightalarm.shared;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Draws a WaveformCache thumbnail as a filled shape mirrored about the middle.
+ *
+ * The Path and Paint are allocated once per view and the path is only rebuilt when the peaks or
+ * the size change, so binding a recycled row and drawing it do no allocation and no decoding.
+ */
+public class WaveformView extends View {
+    private static final int DEFAULT_COLOR = 0xFFC08A5B;
+    // Quiet stretches still show as a thin line
+    private static final float MIN_HALF_HEIGHT_PX = 0.5f;
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path path = new Path();
+    private short[] peaks;
+
+    public WaveformView(Context context) {
+        super(context);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(DEFAULT_COLOR);
+    }
+
+    public WaveformView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(DEFAULT_COLOR);
+    }
+
+    /**
+     * Peaks from WaveformCache, or null to draw nothing until they are ready
+     */
+    public void setPeaks(short[] peaks) {
+        if (this.peaks == peaks) {
+            return;
+        }
+        this.peaks = peaks;
+        rebuildPath();
+        invalidate();
+    }
+
+    public void setColor(int color) {
+        paint.setColor(color);
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        rebuildPath();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (peaks != null) {
+            canvas.drawPath(path, paint);
+        }
+    }
+
+    // Along the top edge left to right, then back along the bottom
+    private void rebuildPath() {
+        path.rewind();
+        float left = getPaddingLeft();
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (peaks == null || peaks.length < 2 || width <= 0 || height <= 0) {
+            return;
+        }
+        float middle = getPaddingTop() + height / 2f;
+        float scale = (height / 2f) / Short.MAX_VALUE;
+        float step = width / (peaks.length - 1);
+        path.moveTo(left, middle - halfHeight(0, scale));
+        for (int i = 1; i < peaks.length; i++) {
+            path.lineTo(left + i * step, middle - halfHeight(i, scale));
+        }
+        for (int i = peaks.length - 1; i >= 0; i--) {
+            path.lineTo(left + i * step, middle + halfHeight(i, scale));
+        }
+        path.close();
+    }
+
+    private float halfHeight(int index, float scale) {
+        return Math.max(MIN_HALF_HEIGHT_PX, peaks[index] * scale);
+    }
+}
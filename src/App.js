@@ -365,6 +365,34 @@ const LightAlarm = () => {
   // REMOVED: JavaScript-based alarm execution logic
   // Alarms now handled 100% by native Android services for reliability when phone is locked
 
+  // ========== NATIVE EVENT BUS ==========
+  // Native events arrive in batches and are re-dispatched as window events
+  // (alarmFired, showWakeScreen, sunriseProgress, ...). Native holds them until markEventsReady.
+  useEffect(() => {
+    if (!Capacitor.isNativePlatform() || !AlarmService) return;
+    let handle = null;
+    let cancelled = false;
+
+    const subscribe = async () => {
+      handle = await AlarmService.addListener('nativeEvents', ({ events }) => {
+        (events || []).forEach(({ type, detail }) => {
+          window.dispatchEvent(new CustomEvent(type, { detail }));
+        });
+      });
+      if (cancelled) {
+        handle.remove();
+        return;
+      }
+      await AlarmService.markEventsReady();
+    };
+
+    subscribe().catch(error => console.log('⚠️ Native event bus unavailable:', error));
+    return () => {
+      cancelled = true;
+      if (handle) handle.remove();
+    };
+  }, []);
+
 
 
   // ========== PERMISSION REQUEST ON ALARM ENABLE ==========